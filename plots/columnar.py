@@ -0,0 +1,76 @@
+import struct
+import numpy as np
+import pandas as pd
+
+MAGIC = 0x49524943
+VERSION = 2
+
+INTEGER = 0
+REAL = 1
+CATEGORY = 2
+
+DTYPES = {
+    INTEGER: np.dtype("<i4"),
+    REAL: np.dtype("<f8"),
+    CATEGORY: np.dtype("u1"),
+}
+
+WIDTHS = {
+    1: np.dtype("u1"),
+    2: np.dtype("<u2"),
+    4: np.dtype("<u4"),
+}
+
+
+def read_columnar(file_path):
+    """Reads an output file written with -f columnar into a data frame (see ColumnarTableWriter)."""
+    with open(file_path, "rb") as f:
+        data = f.read()
+
+    magic, version, _, column_count = struct.unpack_from("<iiii", data, 0)
+    if magic != MAGIC or version != VERSION:
+        raise ValueError(file_path + " is not a columnar output of version " + str(VERSION))
+    offset = 16
+
+    def read_string():
+        nonlocal offset
+        (length,) = struct.unpack_from("<i", data, offset)
+        value = data[offset + 4:offset + 4 + length].decode("utf-8")
+        offset += 4 + length
+        return value
+
+    columns = []
+    for _ in range(column_count):
+        name = read_string()
+        column_type = data[offset]
+        (label_count,) = struct.unpack_from("<i", data, offset + 1)
+        offset += 5
+        labels = [read_string() for _ in range(label_count)]
+        columns.append((name, column_type, labels))
+
+    parts = [[] for _ in columns]
+    while offset < len(data):
+        (rows,) = struct.unpack_from("<i", data, offset)
+        offset += 4
+        for i, (_, column_type, _) in enumerate(columns):
+            if column_type == INTEGER:
+                width, base = struct.unpack_from("<Bi", data, offset)
+                offset += 5
+                if width == 0:
+                    values = np.full(rows, base, dtype=np.int64)
+                else:
+                    values = np.frombuffer(data, dtype=WIDTHS[width], count=rows, offset=offset).astype(np.int64) + base
+                    offset += rows * width
+                parts[i].append(values.astype(DTYPES[INTEGER]))
+            else:
+                dtype = DTYPES[column_type]
+                parts[i].append(np.frombuffer(data, dtype=dtype, count=rows, offset=offset))
+                offset += rows * dtype.itemsize
+
+    frame = {}
+    for (name, column_type, labels), values in zip(columns, parts):
+        values = np.concatenate(values) if values else np.empty(0, DTYPES[column_type])
+        if column_type == CATEGORY:
+            values = pd.Categorical.from_codes(values, categories=labels)
+        frame[name] = values
+    return pd.DataFrame(frame)
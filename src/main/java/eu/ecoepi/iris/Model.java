@@ -1,16 +1,34 @@
 package eu.ecoepi.iris;
 
-import com.artemis.BaseSystem;
 import com.artemis.World;
 import com.artemis.WorldConfigurationBuilder;
+import com.opencsv.exceptions.CsvException;
 import eu.ecoepi.iris.components.*;
+import eu.ecoepi.iris.dense.DenseEngine;
+import eu.ecoepi.iris.dense.LockstepEngine;
+import eu.ecoepi.iris.dense.MeanFieldEngine;
+import eu.ecoepi.iris.dense.TiledEngine;
+import eu.ecoepi.iris.distributed.Coordinator;
 import eu.ecoepi.iris.observers.*;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.HabitatMap;
+import eu.ecoepi.iris.resources.ParameterSet;
 import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.Philox;
 import eu.ecoepi.iris.resources.Randomness;
 import eu.ecoepi.iris.resources.SpatialIndex;
 import eu.ecoepi.iris.resources.TimeStep;
+import eu.ecoepi.iris.resources.WeatherData;
+import eu.ecoepi.iris.resources.WeatherRepository;
+import eu.ecoepi.iris.resources.WeatherStream;
 import eu.ecoepi.iris.systems.*;
 import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * IRIS
@@ -29,31 +47,144 @@ public class Model {
         public int initialInfectedRodents = 0;
         public float activationRate = 0.02f;
         public String outputMode = "csv_timeseries_summary";
+        public String outputFormat = "csv";
+        public int outputBuffers = 8;
+        public String engine = "artemis";
+        public String transitions = "rounded";
+        public String generator = "mersenne_twister";
+        public int threads = 1;
+        public int tileSize = 256;
+        public int workers = 2;
+        public int port = 0;
+        public String years;
+        public int days = 0;
+        public int width = Parameters.GRID_WIDTH;
+        public int height = Parameters.GRID_HEIGHT;
+        public String habitat;
+        public ParameterSet parameters = ParameterSet.DEFAULTS;
     }
 
     public static void run(Options options) throws Exception {
-        var rng = new MersenneTwister(options.seed);
+        var outputWriter = createObserver(options);
+
+        switch (options.engine) {
+            case "artemis" -> runArtemis(options, outputWriter, false);
+
+            case "artemis_fused" -> runArtemis(options, outputWriter, true);
+
+            case "dense" -> new DenseEngine(options, outputWriter, false).run();
+
+            case "dense_vectorised" -> new DenseEngine(options, outputWriter, true).run();
+
+            case "mean_field" -> new MeanFieldEngine(options, outputWriter).run();
+
+            case "dense_tiled" -> new TiledEngine(options, outputWriter).run();
 
-        BaseSystem outputWriter = switch(options.outputMode){
+            case "distributed" -> Coordinator.run(options, outputWriter);
+
+            default -> throw new IllegalStateException("Unexpected value: " + options.engine +
+                    ". Possible values are: \n" +
+                    "1) 'artemis' \n" +
+                    "2) 'artemis_fused' \n" +
+                    "3) 'dense' \n" +
+                    "4) 'dense_vectorised' \n" +
+                    "5) 'mean_field' \n" +
+                    "6) 'dense_tiled' \n" +
+                    "7) 'distributed' \n");
+        }
+    }
+
+    /*
+    Weather of a run: the single weather input, or with years set a continuous stream over the
+    consecutive years, whose inputs are given by the weather pattern containing the year (see WeatherStream).
+     */
+    public static WeatherData createWeather(Options options) throws IOException, CsvException {
+        if (options.years != null) {
+            return WeatherStream.of(options.weather, options.years, 1);
+        }
+        return WeatherRepository.shared().get(options.weather);
+    }
+
+    /*
+    Landscape of a run: the habitat raster if given (see HabitatMap.read), whose size then
+    replaces width and height, otherwise the default stripes on a grid of width x height cells.
+     */
+    public static HabitatMap createHabitat(Options options) throws IOException {
+        if (options.habitat != null) {
+            return HabitatMap.read(Paths.get(options.habitat));
+        }
+        return HabitatMap.stripes(options.width, options.height);
+    }
+
+    /*
+    Number of days to simulate: the given number of days, otherwise a single year of TIME_STEPS days
+    or, with years set, all days of these years.
+     */
+    public static int days(Options options, WeatherData weather) {
+        var days = options.days > 0 ? options.days : options.years != null ? weather.getDays() : Parameters.TIME_STEPS;
+        if (days > weather.getDays()) {
+            throw new IllegalStateException("The weather input covers " + weather.getDays() + " days, but " + days + " days were requested");
+        }
+        return days;
+    }
+
+    /*
+    Runs scenarios sharing the same weather input in a single pass (see LockstepEngine),
+    each writing to its own output. The engine option of the scenarios is ignored.
+     */
+    public static void runLockstep(List<Options> scenarios) throws Exception {
+        var outputWriters = new ArrayList<CellObserver>(scenarios.size());
+        for (var options : scenarios) {
+            outputWriters.add(createObserver(options));
+        }
+
+        new LockstepEngine(scenarios, outputWriters).run();
+    }
+
+    /*
+    The observer of a run. Several outputs are given as comma-separated lists of output modes and
+    paths of the same length, e.g. csv_timeseries_summary_habitats,csv_timeseries_infection and
+    habitats.csv,infection.csv, and are written by an ObserverGroup visiting every cell only once.
+     */
+    public static CellObserver createObserver(Options options) throws Exception {
+        var outputModes = options.outputMode.split(",");
+        var outputs = options.output.split(",");
+        if (outputModes.length != outputs.length) {
+            throw new IllegalArgumentException("Got " + outputModes.length + " output modes, but " +
+                    outputs.length + " outputs: " + options.output);
+        }
+        if (outputModes.length == 1) {
+            return createObserver(options, options.outputMode, options.output);
+        }
+
+        var observers = new ArrayList<CellObserver>(outputModes.length);
+        for (int i = 0; i < outputModes.length; ++i) {
+            observers.add(createObserver(options, outputModes[i].trim(), outputs[i].trim()));
+        }
+        return new ObserverGroup(observers);
+    }
+
+    private static CellObserver createObserver(Options options, String outputMode, String output) throws Exception {
+        return switch(outputMode){
             case "csv_timeseries" ->
-                new CsvTimeSeriesWriter(options.output);
+                new CsvTimeSeriesWriter(output, options.outputFormat, options.outputBuffers);
 
             case "csv_timeseries_summary" ->
-                new CsvSummaryTimeSeriesWriter(options.output);
+                new CsvSummaryTimeSeriesWriter(output, options.outputFormat, options.outputBuffers);
 
             case "csv_timeseries_summary_habitats" ->
-                    new CsvSummaryTimeSeriesWriterHabitats(options.output);
+                    new CsvSummaryTimeSeriesWriterHabitats(output, options.outputFormat, options.outputBuffers);
 
             case "csv_timeseries_nymphs" ->
-                    new CsvTimeSeriesWriterNymphs(options.output);
+                    new CsvTimeSeriesWriterNymphs(output, options.outputFormat, options.outputBuffers);
 
             case "csv_timeseries_nymphs_habitats" ->
-                    new CsvTimeSeriesWriterNymphsHabitats(options.output);
+                    new CsvTimeSeriesWriterNymphsHabitats(output, options.outputFormat, options.outputBuffers);
 
             case "csv_timeseries_infection" ->
-                    new CsvTimeSeriesWriterInfection(options.output);
+                    new CsvTimeSeriesWriterInfection(output, options.outputFormat, options.outputBuffers);
 
-            default -> throw new IllegalStateException("Unexpected value: " + options.outputMode +
+            default -> throw new IllegalStateException("Unexpected value: " + outputMode +
                     ". Possible values are: \n" +
                     "1) 'csv_timeseries' \n" +
                     "2) 'csv_timeseries_summary' \n" +
@@ -62,46 +193,70 @@ public class Model {
                     "5) 'csv_timeseries_nymphs_habitats' \n" +
                     "6) 'csv_timeseries_infection' \n");
         };
+    }
+
+    public static RandomGenerator createGenerator(Options options) {
+        return switch (options.generator) {
+            case "mersenne_twister" -> new MersenneTwister(options.seed);
+
+            case "philox" -> new Philox(options.seed);
+
+            default -> throw new IllegalStateException("Unexpected value: " + options.generator +
+                    ". Possible values are: \n" +
+                    "1) 'mersenne_twister' \n" +
+                    "2) 'philox' \n");
+        };
+    }
+
+    public static Randomness createRandomness(RandomGenerator rng, Options options) {
+        return switch (options.transitions) {
+            case "rounded" -> new Randomness(rng, Randomness.Mode.ROUNDED);
+
+            case "binomial" -> new Randomness(rng, Randomness.Mode.BINOMIAL);
+
+            default -> throw new IllegalStateException("Unexpected value: " + options.transitions +
+                    ". Possible values are: \n" +
+                    "1) 'rounded' \n" +
+                    "2) 'binomial' \n");
+        };
+    }
+
+    private static void runArtemis(Options options, CellObserver outputWriter, boolean fused) throws Exception {
+        var randomness = createRandomness(createGenerator(options), options);
+        if (options.threads > 1) {
+            randomness = randomness.shareBetweenThreads();
+        }
+
+        var weather = createWeather(options);
+        var days = days(options, weather);
+        var habitatMap = createHabitat(options);
 
-        var config = new WorldConfigurationBuilder()
-                .with(new Weather(options.weather))
-                .with(new Activity(options.activationRate))
-                .with(new Feeding(rng))
-                .with(new TickLifeCycle())
-                .with(new HostLifeCycle())
+        var builder = new WorldConfigurationBuilder()
+                .with(new Weather(weather, options.threads))
+                .with(new Activity(options.activationRate, options.threads))
+                .with(new Feeding(options.threads))
+                .with(new TickLifeCycle(options.threads))
+                .with(new HostLifeCycle(options.threads));
+
+        if (fused) {
+            builder.with(new FusedDailyUpdate());
+        }
+
+        var config = builder
                 .with(outputWriter)
                 .build()
-                .register(new SpatialIndex())
-                .register(new TimeStep())
-                .register(new Randomness(rng));
+                .register(new SpatialIndex(habitatMap.getWidth(), habitatMap.getHeight()))
+                .register(new TimeStep(weather))
+                .register(options.parameters)
+                .register(new Environment())
+                .register(randomness);
 
         var world = new World(config);
 
         var index = world.getRegistered(SpatialIndex.class);
 
-        for (int x = 0; x < Parameters.GRID_WIDTH; ++x) {
-            Habitat.Type habitatType;
-
-            if (x < Parameters.GRID_WIDTH / 2) {
-                if (x < Parameters.GRID_WIDTH / 6) {
-                    habitatType = Habitat.Type.MEADOW;
-                } else if (x < Parameters.GRID_WIDTH / 3) {
-                    habitatType = Habitat.Type.ECOTONE;
-                } else {
-                    habitatType = Habitat.Type.WOOD;
-                }
-
-            } else {
-                if (x >= Parameters.GRID_WIDTH / 6 * 5) {
-                    habitatType = Habitat.Type.MEADOW;
-                } else if (x >= Parameters.GRID_WIDTH / 3 * 2) {
-                    habitatType = Habitat.Type.ECOTONE;
-                } else {
-                    habitatType = Habitat.Type.WOOD;
-                }
-            }
-
-            for (int y = 0; y < Parameters.GRID_HEIGHT; ++y) {
+        for (int x = 0; x < habitatMap.getWidth(); ++x) {
+            for (int y = 0; y < habitatMap.getHeight(); ++y) {
                 var entityId = world.create();
                 var editor = world.edit(entityId);
 
@@ -124,7 +279,7 @@ public class Model {
                 );
                 editor.add(hostAbundance);
 
-                var habitat = new Habitat(habitatType);
+                var habitat = new Habitat(habitatMap.get(x, y));
                 editor.add(habitat);
 
                 var temperature = new Temperature();
@@ -138,10 +293,15 @@ public class Model {
 
         // Main loop
 
-        for (var timeStep = world.getRegistered(TimeStep.class); timeStep.getCurrent() < Parameters.TIME_STEPS; timeStep.increment()) {
-            world.process();
+        /*
+        Disposing the world closes the observer, so its output is complete up to a failure.
+         */
+        try {
+            for (var timeStep = world.getRegistered(TimeStep.class); timeStep.getCurrent() < days; timeStep.increment()) {
+                world.process();
+            }
+        } finally {
+            world.dispose();
         }
-        
-        world.dispose();
     }
 }
@@ -1,7 +1,6 @@
 package eu.ecoepi.iris.components;
 
 import com.artemis.Component;
-import eu.ecoepi.iris.resources.Parameters;
 
 import java.util.Objects;
 
@@ -26,14 +25,17 @@ public class Position extends Component {
         return y;
     }
 
-    public Position moveBy(int dx, int dy) {
-        var x = (this.x + dx) % Parameters.GRID_WIDTH;
-        var y = (this.y + dy) % Parameters.GRID_HEIGHT;
+    /*
+    Position displaced by (dx, dy), wrapping around the edges of a grid of width x height cells.
+     */
+    public Position moveBy(int dx, int dy, int width, int height) {
+        var x = (this.x + dx) % width;
+        var y = (this.y + dy) % height;
         if (x < 0) {
-            x += Parameters.GRID_WIDTH;
+            x += width;
         }
         if (y < 0) {
-            y += Parameters.GRID_HEIGHT;
+            y += height;
         }
         return new Position(x, y);
     }
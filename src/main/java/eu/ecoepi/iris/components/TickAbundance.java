@@ -4,14 +4,19 @@ import com.artemis.Component;
 import eu.ecoepi.iris.CohortStateTicks;
 import eu.ecoepi.iris.resources.Randomness;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.Arrays;
 
 public class TickAbundance extends Component {
 
-    final Map<CohortStateTicks, Integer> abundance = new HashMap<>();
-    final Map<CohortStateTicks, Integer> feeding = new HashMap<>();
+    /*
+    Cohort counts are stored in plain arrays indexed by CohortStateTicks.ordinal().
+    The accessors below are called for every cohort of every cell on every day,
+    so they must neither box nor allocate.
+     */
+    public static final int COHORTS = CohortStateTicks.values().length;
+
+    final int[] abundance = new int[COHORTS];
+    final int[] feeding = new int[COHORTS];
 
     /*
     The following two variables are mainly helper variables for observation to distinguish
@@ -30,30 +35,11 @@ public class TickAbundance extends Component {
                          int infectedInactiveLarvae,
                          int infectedInactiveNymphs
                          ) {
-        abundance.put(CohortStateTicks.LARVAE_INACTIVE, inactiveLarvae);
-        abundance.put(CohortStateTicks.NYMPHS_INACTIVE, inactiveNymphs);
-        abundance.put(CohortStateTicks.ADULTS_INACTIVE, inactiveAdults);
-        abundance.put(CohortStateTicks.LARVAE_INACTIVE_INFECTED, infectedInactiveLarvae);
-        abundance.put(CohortStateTicks.NYMPHS_INACTIVE_INFECTED, infectedInactiveNymphs);
-        abundance.put(CohortStateTicks.LARVAE_QUESTING, 0);
-        abundance.put(CohortStateTicks.NYMPHS_QUESTING, 0);
-        abundance.put(CohortStateTicks.ADULTS_QUESTING, 0);
-        abundance.put(CohortStateTicks.LARVAE_QUESTING_INFECTED, 0);
-        abundance.put(CohortStateTicks.NYMPHS_QUESTING_INFECTED, 0);
-        abundance.put(CohortStateTicks.LARVAE_ENGORGED, 0);
-        abundance.put(CohortStateTicks.NYMPHS_ENGORGED, 0);
-        abundance.put(CohortStateTicks.ADULTS_ENGORGED, 0);
-        abundance.put(CohortStateTicks.LARVAE_ENGORGED_INFECTED, 0);
-        abundance.put(CohortStateTicks.NYMPHS_ENGORGED_INFECTED, 0);
-        abundance.put(CohortStateTicks.LARVAE_LATE_ENGORGED, 0);
-        abundance.put(CohortStateTicks.NYMPHS_LATE_ENGORGED, 0);
-        abundance.put(CohortStateTicks.LARVAE_LATE_ENGORGED_INFECTED, 0);
-        abundance.put(CohortStateTicks.NYMPHS_LATE_ENGORGED_INFECTED, 0);
-        feeding.put(CohortStateTicks.LARVAE_QUESTING, 0);
-        feeding.put(CohortStateTicks.LARVAE_QUESTING_INFECTED, 0);
-        feeding.put(CohortStateTicks.NYMPHS_QUESTING, 0);
-        feeding.put(CohortStateTicks.NYMPHS_QUESTING_INFECTED, 0);
-        feeding.put(CohortStateTicks.ADULTS_QUESTING, 0);
+        abundance[CohortStateTicks.LARVAE_INACTIVE.ordinal()] = inactiveLarvae;
+        abundance[CohortStateTicks.NYMPHS_INACTIVE.ordinal()] = inactiveNymphs;
+        abundance[CohortStateTicks.ADULTS_INACTIVE.ordinal()] = inactiveAdults;
+        abundance[CohortStateTicks.LARVAE_INACTIVE_INFECTED.ordinal()] = infectedInactiveLarvae;
+        abundance[CohortStateTicks.NYMPHS_INACTIVE_INFECTED.ordinal()] = infectedInactiveNymphs;
     }
 
     @Override
@@ -61,12 +47,12 @@ public class TickAbundance extends Component {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         TickAbundance that = (TickAbundance) o;
-        return Objects.equals(abundance, that.abundance);
+        return Arrays.equals(abundance, that.abundance);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(abundance);
+        return Arrays.hashCode(abundance);
     }
 
     public void addFeedingEventNewInfectedLarvae(int event) {
@@ -86,27 +72,48 @@ public class TickAbundance extends Component {
     }
 
     public void addFeedingEvents(CohortStateTicks stage, int number) {
-        feeding.compute(stage, (_stage, count) -> count + number);
+        feeding[stage.ordinal()] += number;
     }
 
     public int getFeedingEvents(CohortStateTicks stage) {
-        return feeding.get(stage);
+        return feeding[stage.ordinal()];
     }
 
     public int getStage(CohortStateTicks stage) {
-        return abundance.get(stage);
+        return abundance[stage.ordinal()];
     }
 
     public int removeFromStage(CohortStateTicks stage, float rate, Randomness randomness) {
-        var old = abundance.get(stage);
-        var removed = randomness.roundRandom(old * rate);
-        abundance.put(stage, old - removed);
+        var index = stage.ordinal();
+        var old = abundance[index];
+        var removed = randomness.transition(old, old * rate);
+        abundance[index] = old - removed;
 
         return removed;
     }
 
     public void addToStage(CohortStateTicks stage, int number) {
-        abundance.compute(stage, (_stage, count) -> count + number);
+        abundance[stage.ordinal()] += number;
+    }
+
+    /*
+    Bulk accessors copy all cohorts at once, indexed by CohortStateTicks.ordinal().
+    The destination and source arrays must hold at least COHORTS elements.
+     */
+    public void getStages(int[] destination) {
+        System.arraycopy(abundance, 0, destination, 0, COHORTS);
+    }
+
+    public void setStages(int[] source) {
+        System.arraycopy(source, 0, abundance, 0, COHORTS);
+    }
+
+    public void getFeedingEvents(int[] destination) {
+        System.arraycopy(feeding, 0, destination, 0, COHORTS);
+    }
+
+    public void setFeedingEvents(int[] source) {
+        System.arraycopy(source, 0, feeding, 0, COHORTS);
     }
 
 }
@@ -0,0 +1,95 @@
+package eu.ecoepi.iris.dense;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.observers.CellView;
+
+/*
+Presents one cell of a DenseGrid to the observers. The same instance is moved from cell to cell.
+The coordinates are shifted by the origin of the grid in the landscape, which is non-zero for tiles.
+For a grid with several lanes, the view shows the counts of a single lane.
+ */
+class DenseCellView implements CellView {
+
+    final DenseGrid grid;
+    final int originX;
+    final int originY;
+    final int lane;
+    int cell;
+
+    DenseCellView(DenseGrid grid, int originX, int originY) {
+        this(grid, originX, originY, 0);
+    }
+
+    DenseCellView(DenseGrid grid, int originX, int originY, int lane) {
+        this.grid = grid;
+        this.originX = originX;
+        this.originY = originY;
+        this.lane = lane;
+    }
+
+    @Override
+    public int getX() {
+        return originX + grid.getX(cell);
+    }
+
+    @Override
+    public int getY() {
+        return originY + grid.getY(cell);
+    }
+
+    @Override
+    public Habitat.Type getHabitat() {
+        return grid.getHabitat(cell);
+    }
+
+    @Override
+    public int getStage(CohortStateTicks stage) {
+        return grid.stage(stage)[grid.lane(cell, lane)];
+    }
+
+    @Override
+    public int getFeedingEvents(CohortStateTicks stage) {
+        return grid.feedingEvents(stage)[grid.lane(cell, lane)];
+    }
+
+    @Override
+    public int getFeedingEventsNewInfectedLarvae() {
+        return grid.feedingEventsNewInfectedLarvae[grid.lane(cell, lane)];
+    }
+
+    @Override
+    public int getFeedingEventsNewInfectedNymphs() {
+        return grid.feedingEventsNewInfectedNymphs[grid.lane(cell, lane)];
+    }
+
+    @Override
+    public int getRodentsSusceptible() {
+        return grid.rodentsSusceptible[grid.lane(cell, lane)];
+    }
+
+    @Override
+    public int getRodentsInfected() {
+        return grid.rodentsInfected[grid.lane(cell, lane)];
+    }
+
+    @Override
+    public double getMeanTemperature() {
+        return grid.meanTemperature[cell];
+    }
+
+    @Override
+    public double getMinTemperature() {
+        return grid.minTemperature[cell];
+    }
+
+    @Override
+    public double getMaxTemperature() {
+        return grid.maxTemperature[cell];
+    }
+
+    @Override
+    public double getRelativeHumidity() {
+        return grid.humidity[cell];
+    }
+}
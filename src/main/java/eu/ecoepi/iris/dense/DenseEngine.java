@@ -0,0 +1,425 @@
+package eu.ecoepi.iris.dense;
+
+import com.opencsv.exceptions.CsvException;
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.observers.CellObserver;
+import eu.ecoepi.iris.resources.DispersalKernel;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.HabitatMap;
+import eu.ecoepi.iris.resources.ParameterSet;
+import eu.ecoepi.iris.resources.Randomness;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.io.IOException;
+
+import static eu.ecoepi.iris.CohortStateTicks.*;
+
+/*
+Runs the model on a DenseGrid instead of an Artemis world.
+
+Every process is a loop over all cells operating directly on the per-cohort arrays.
+The processes are executed in the same order as the systems in Model and draw their random
+numbers in the same order, so for the same seed both engines produce identical results.
+ */
+public class DenseEngine {
+
+    /*
+    The freezing cohorts are listed in the order in which TickLifeCycle draws them.
+     */
+    static final CohortStateTicks[] FREEZING_COHORTS = {
+            LARVAE_INACTIVE, NYMPHS_INACTIVE, ADULTS_INACTIVE,
+            LARVAE_QUESTING, NYMPHS_QUESTING, ADULTS_QUESTING,
+            LARVAE_INACTIVE_INFECTED, NYMPHS_INACTIVE_INFECTED,
+            LARVAE_QUESTING_INFECTED, NYMPHS_QUESTING_INFECTED
+    };
+
+    final DenseGrid grid;
+    final Tile tile;
+    final WeatherData weather;
+    final ParameterSet parameters;
+    final Environment environment = new Environment();
+    final int days;
+    final Randomness randomness;
+    final DispersalKernel dispersal = new DispersalKernel();
+    final float activationRate;
+
+    final float[] desiccationRate = new float[DenseGrid.HABITATS.length];
+    final float[] freezingRate = new float[FREEZING_COHORTS.length];
+    final int[] frozen = new int[FREEZING_COHORTS.length];
+
+    final CellObserver observer;
+    final DenseCellView view;
+
+    final DenseKernels kernels;
+
+    public DenseEngine(Model.Options options, CellObserver observer, boolean vectorised) throws IOException, CsvException {
+        this(options, Model.createWeather(options), Model.createHabitat(options), observer, vectorised);
+    }
+
+    public DenseEngine(Model.Options options, WeatherData weather, int width, int height, CellObserver observer, boolean vectorised) {
+        this(options, weather, HabitatMap.stripes(width, height), observer, vectorised);
+    }
+
+    /*
+    With vectorised set, the cell-local processes run as DenseKernels over blocks of cells.
+    Otherwise every cell is processed on its own exactly like in the Artemis systems.
+     */
+    public DenseEngine(Model.Options options, WeatherData weather, HabitatMap habitat, CellObserver observer, boolean vectorised) {
+        this(options, weather, habitat.getWidth(), habitat.getHeight(), null, habitat, observer, vectorised);
+    }
+
+    /*
+    Engine for a single tile of the given landscape, see TiledEngine.
+     */
+    public DenseEngine(Model.Options options, WeatherData weather, Tile tile, HabitatMap habitat, CellObserver observer) {
+        this(options, weather, tile.width, tile.height, tile, habitat, observer, false);
+    }
+
+    private DenseEngine(Model.Options options, WeatherData weather, int width, int height, Tile tile, HabitatMap habitat, CellObserver observer, boolean vectorised) {
+        var rng = Model.createGenerator(options);
+
+        this.grid = new DenseGrid(width, height);
+        this.tile = tile;
+        this.weather = weather;
+        this.parameters = options.parameters;
+        this.days = Model.days(options, weather);
+        this.randomness = Model.createRandomness(rng, options);
+        this.activationRate = options.activationRate;
+        this.observer = observer;
+        this.view = tile == null ? new DenseCellView(grid, 0, 0) : new DenseCellView(grid, tile.originX, tile.originY);
+
+        for (var type : DenseGrid.HABITATS) {
+            desiccationRate[type.ordinal()] = parameters.getDesiccationRate(type);
+        }
+        for (int i = 0; i < FREEZING_COHORTS.length; ++i) {
+            freezingRate[i] = parameters.getFreezingRate(FREEZING_COHORTS[i]);
+        }
+
+        this.kernels = vectorised ? new DenseKernels(this) : null;
+
+        var originX = tile == null ? 0 : tile.originX;
+        var originY = tile == null ? 0 : tile.originY;
+
+        for (int x = 0; x < grid.width; ++x) {
+            for (int y = 0; y < grid.height; ++y) {
+                var cell = grid.cell(x, y);
+
+                grid.stage(LARVAE_INACTIVE)[cell] = options.initialInactiveLarvae;
+                grid.stage(NYMPHS_INACTIVE)[cell] = options.initialInactiveNymphs;
+                grid.stage(ADULTS_INACTIVE)[cell] = options.initialInactiveAdults;
+                grid.stage(LARVAE_INACTIVE_INFECTED)[cell] = options.initialInfectedInactiveLarvae;
+                grid.stage(NYMPHS_INACTIVE_INFECTED)[cell] = options.initialInfectedInactiveNymphs;
+
+                grid.setRodents(cell, options.initialRodents, options.initialInfectedRodents);
+                grid.setHabitat(cell, habitat.get(originX + x, originY + y));
+            }
+        }
+    }
+
+    public DenseGrid getGrid() {
+        return grid;
+    }
+
+    /*
+    Random stream of the given cell, which is the index of the cell in the whole landscape.
+     */
+    private int stream(int cell) {
+        return tile == null ? cell : tile.globalCell(cell);
+    }
+
+    /*
+    Array receiving the engorged ticks of the given cohort dropped off during feeding.
+    For a tile these are its deposits, otherwise the cohort itself.
+     */
+    private int[] depositTarget(CohortStateTicks stage) {
+        return tile == null ? grid.stage(stage) : tile.deposits(stage);
+    }
+
+    private int depositCell(int cell, int dx, int dy) {
+        return tile == null ? grid.neighbour(cell, dx, dy) : tile.paddedNeighbour(cell, dx, dy);
+    }
+
+    public void run() {
+        try {
+            for (int timeStep = 0; timeStep < days; ++timeStep) {
+                step(timeStep);
+            }
+        } finally {
+            observer.close();
+        }
+    }
+
+    public void step(int timeStep) {
+        weather(timeStep);
+        activity(timeStep);
+        feeding(timeStep);
+        tickLifeCycle(timeStep);
+        hostLifeCycle(timeStep);
+        observe(timeStep);
+    }
+
+    public void weather(int timeStep) {
+        environment.update(parameters, weather, timeStep);
+        assignWeather(environment, grid.habitat, grid.meanTemperature, grid.minTemperature, grid.maxTemperature, grid.humidity);
+    }
+
+    /*
+    Local weather of every cell on the current day of the environment, i.e. that of its habitat as in Weather.
+     */
+    static void assignWeather(Environment environment, byte[] habitat, float[] mean, float[] min, float[] max, float[] humidity) {
+        for (int cell = 0; cell < habitat.length; ++cell) {
+            var row = habitat[cell];
+            mean[cell] = environment.getMeanTemperature(row);
+            min[cell] = environment.getMinTemperature(row);
+            max[cell] = environment.getMaxTemperature(row);
+            humidity[cell] = environment.getHumidity(row);
+        }
+    }
+
+    public void activity(int timeStep) {
+        if (kernels != null) {
+            kernels.activity(timeStep);
+            return;
+        }
+
+        var larvaeQuesting = grid.stage(LARVAE_QUESTING);
+        var nymphsQuesting = grid.stage(NYMPHS_QUESTING);
+        var adultsQuesting = grid.stage(ADULTS_QUESTING);
+        var larvaeQuestingInfected = grid.stage(LARVAE_QUESTING_INFECTED);
+        var nymphsQuestingInfected = grid.stage(NYMPHS_QUESTING_INFECTED);
+        var larvaeInactive = grid.stage(LARVAE_INACTIVE);
+        var nymphsInactive = grid.stage(NYMPHS_INACTIVE);
+        var adultsInactive = grid.stage(ADULTS_INACTIVE);
+        var larvaeInactiveInfected = grid.stage(LARVAE_INACTIVE_INFECTED);
+        var nymphsInactiveInfected = grid.stage(NYMPHS_INACTIVE_INFECTED);
+
+        var larvaeQuestingSeason = weather.getDayOfYear(timeStep) > parameters.day(ParameterSet.Day.START_LARVAE_QUESTING);
+
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            randomness.seek(timeStep, stream(cell), Randomness.Process.ACTIVITY);
+
+            var shareOfActivationRate = environment.getShareOfActivationRate(grid.habitat[cell]);
+
+            var newQuestingLarvae = 0;
+            var newInfectedQuestingLarvae = 0;
+            if (larvaeQuestingSeason) {
+                newQuestingLarvae = randomness.transition(larvaeInactive[cell], larvaeInactive[cell] * activationRate * shareOfActivationRate);
+                newInfectedQuestingLarvae = randomness.transition(larvaeInactiveInfected[cell], larvaeInactiveInfected[cell] * activationRate * shareOfActivationRate);
+            }
+            var newQuestingNymphs = randomness.transition(nymphsInactive[cell], nymphsInactive[cell] * activationRate * shareOfActivationRate);
+            var newQuestingAdults = randomness.transition(adultsInactive[cell], adultsInactive[cell] * activationRate * shareOfActivationRate);
+            var newInactiveLarvae = randomness.transition(larvaeQuesting[cell], larvaeQuesting[cell] * activationRate * (1 - shareOfActivationRate));
+            var newInactiveNymphs = randomness.transition(nymphsQuesting[cell], nymphsQuesting[cell] * activationRate * (1 - shareOfActivationRate));
+            var newInactiveAdults = randomness.transition(adultsQuesting[cell], adultsQuesting[cell] * activationRate * (1 - shareOfActivationRate));
+
+            var newInfectedQuestingNymphs = randomness.transition(nymphsInactiveInfected[cell], nymphsInactiveInfected[cell] * activationRate * shareOfActivationRate);
+            var newInfectedInactiveLarvae = randomness.transition(larvaeQuestingInfected[cell], larvaeQuestingInfected[cell] * activationRate * (1 - shareOfActivationRate));
+            var newInfectedInactiveNymphs = randomness.transition(nymphsQuestingInfected[cell], nymphsQuestingInfected[cell] * activationRate * (1 - shareOfActivationRate));
+
+            larvaeQuesting[cell] += newQuestingLarvae - newInactiveLarvae;
+            nymphsQuesting[cell] += newQuestingNymphs - newInactiveNymphs;
+            adultsQuesting[cell] += newQuestingAdults - newInactiveAdults;
+            larvaeInactive[cell] += newInactiveLarvae - newQuestingLarvae;
+            nymphsInactive[cell] += newInactiveNymphs - newQuestingNymphs;
+            adultsInactive[cell] += newInactiveAdults - newQuestingAdults;
+
+            larvaeQuestingInfected[cell] += newInfectedQuestingLarvae - newInfectedInactiveLarvae;
+            nymphsQuestingInfected[cell] += newInfectedQuestingNymphs - newInfectedInactiveNymphs;
+            larvaeQuestingInfected[cell] += newInfectedInactiveLarvae - newInfectedQuestingLarvae;
+            nymphsInactiveInfected[cell] += newInfectedInactiveNymphs - newInfectedQuestingNymphs;
+        }
+    }
+
+    public void feeding(int timeStep) {
+        var larvaeQuesting = grid.stage(LARVAE_QUESTING);
+        var larvaeQuestingInfected = grid.stage(LARVAE_QUESTING_INFECTED);
+        var nymphsQuesting = grid.stage(NYMPHS_QUESTING);
+        var nymphsQuestingInfected = grid.stage(NYMPHS_QUESTING_INFECTED);
+        var adultsQuesting = grid.stage(ADULTS_QUESTING);
+
+        var lateFeeding = weather.getDayOfYear(timeStep) >= parameters.day(ParameterSet.Day.LATE_FEEDING_TIME);
+        var larvaeEngorged = depositTarget(lateFeeding ? LARVAE_LATE_ENGORGED : LARVAE_ENGORGED);
+        var larvaeEngorgedInfected = depositTarget(lateFeeding ? LARVAE_LATE_ENGORGED_INFECTED : LARVAE_ENGORGED_INFECTED);
+        var nymphsEngorged = depositTarget(lateFeeding ? NYMPHS_LATE_ENGORGED : NYMPHS_ENGORGED);
+        var nymphsEngorgedInfected = depositTarget(lateFeeding ? NYMPHS_LATE_ENGORGED_INFECTED : NYMPHS_ENGORGED_INFECTED);
+        var adultsEngorged = depositTarget(ADULTS_ENGORGED);
+
+        var larvaeFeedingRate = parameters.getFeedingRate(LARVAE_QUESTING);
+        var larvaeInfectedFeedingRate = parameters.getFeedingRate(LARVAE_QUESTING_INFECTED);
+        var nymphsFeedingRate = parameters.getFeedingRate(NYMPHS_QUESTING);
+        var nymphsInfectedFeedingRate = parameters.getFeedingRate(NYMPHS_QUESTING_INFECTED);
+        var adultsFeedingRate = parameters.getFeedingRate(ADULTS_QUESTING);
+
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            randomness.seek(timeStep, stream(cell), Randomness.Process.FEEDING);
+
+            var rodentPrevalence = grid.rodentsInfected[cell] / (float) (grid.rodentsSusceptible[cell] + grid.rodentsInfected[cell]);
+
+            {
+                var displacement = dispersal.sample(randomness);
+                var target = depositCell(cell, dispersal.getX(displacement), dispersal.getY(displacement));
+
+                var feedingLarvae = remove(larvaeQuesting, cell, larvaeFeedingRate);
+                var feedingInfectedLarvae = remove(larvaeQuestingInfected, cell, larvaeInfectedFeedingRate);
+                var newInfectedLarvae = randomness.transition(feedingLarvae, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingLarvae * rodentPrevalence);
+
+                feedingLarvae -= newInfectedLarvae;
+                feedingInfectedLarvae += newInfectedLarvae;
+
+                larvaeEngorged[target] += feedingLarvae;
+                larvaeEngorgedInfected[target] += feedingInfectedLarvae;
+                grid.feedingEvents(LARVAE_QUESTING)[cell] += feedingLarvae;
+                grid.feedingEvents(LARVAE_QUESTING_INFECTED)[cell] += feedingInfectedLarvae;
+                grid.feedingEventsNewInfectedLarvae[cell] += newInfectedLarvae;
+            }
+
+            {
+                var displacement = dispersal.sample(randomness);
+                var target = depositCell(cell, dispersal.getX(displacement), dispersal.getY(displacement));
+
+                var feedingNymphs = remove(nymphsQuesting, cell, nymphsFeedingRate);
+                var feedingInfectedNymphs = remove(nymphsQuestingInfected, cell, nymphsInfectedFeedingRate);
+                var newInfectedNymphs = randomness.transition(feedingNymphs, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingNymphs * rodentPrevalence);
+
+                feedingNymphs -= newInfectedNymphs;
+                feedingInfectedNymphs += newInfectedNymphs;
+
+                nymphsEngorged[target] += feedingNymphs;
+                nymphsEngorgedInfected[target] += feedingInfectedNymphs;
+                grid.feedingEvents(NYMPHS_QUESTING)[cell] += feedingNymphs;
+                grid.feedingEvents(NYMPHS_QUESTING_INFECTED)[cell] += feedingInfectedNymphs;
+                grid.feedingEventsNewInfectedNymphs[cell] += newInfectedNymphs;
+
+                var newInfectedRodents = randomness.transition(feedingInfectedNymphs, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingInfectedNymphs * (1.0f - rodentPrevalence));
+                grid.rodentsSusceptible[cell] -= newInfectedRodents;
+                grid.rodentsInfected[cell] += newInfectedRodents;
+            }
+
+            {
+                var displacement = dispersal.sample(randomness);
+                var target = depositCell(cell, dispersal.getX(displacement), dispersal.getY(displacement));
+                var feedingAdults = randomness.transition(adultsQuesting[cell], adultsQuesting[cell] * adultsFeedingRate);
+
+                adultsQuesting[cell] -= feedingAdults;
+                adultsEngorged[target] += feedingAdults;
+                grid.feedingEvents(ADULTS_QUESTING)[cell] += feedingAdults;
+            }
+        }
+    }
+
+    public void tickLifeCycle(int timeStep) {
+        if (kernels != null) {
+            kernels.tickLifeCycle(timeStep);
+            return;
+        }
+
+        var dayOfYear = weather.getDayOfYear(timeStep);
+
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            randomness.seek(timeStep, stream(cell), Randomness.Process.TICK_LIFE_CYCLE);
+
+            development(dayOfYear, cell);
+            desiccation(cell);
+            freezing(cell);
+        }
+    }
+
+    private void development(int dayOfYear, int cell) {
+        if (dayOfYear < parameters.day(ParameterSet.Day.BEGIN_OF_DEVELOPMENT)) {
+            return;
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS) - dayOfYear;
+            var nextStageNymphs = randomness.transition(grid.stage(LARVAE_ENGORGED)[cell], (float) grid.stage(LARVAE_ENGORGED)[cell] / (float) remainingDays);
+            var nextStageInfectedNymphs = randomness.transition(grid.stage(LARVAE_ENGORGED_INFECTED)[cell], (float) grid.stage(LARVAE_ENGORGED_INFECTED)[cell] / (float) remainingDays);
+            grid.stage(NYMPHS_INACTIVE)[cell] += nextStageNymphs;
+            grid.stage(LARVAE_ENGORGED)[cell] -= nextStageNymphs;
+            grid.stage(NYMPHS_INACTIVE_INFECTED)[cell] += nextStageInfectedNymphs;
+            grid.stage(LARVAE_ENGORGED_INFECTED)[cell] -= nextStageInfectedNymphs;
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS) - dayOfYear;
+            var nextStageAdults = randomness.transition(grid.stage(NYMPHS_ENGORGED)[cell], (float) grid.stage(NYMPHS_ENGORGED)[cell] / (float) remainingDays);
+            var nextStageAdultsFromInfectedEngorgedNymphs =
+                    randomness.transition(grid.stage(NYMPHS_ENGORGED_INFECTED)[cell], (float) grid.stage(NYMPHS_ENGORGED_INFECTED)[cell] / (float) remainingDays);
+            grid.stage(ADULTS_INACTIVE)[cell] += nextStageAdults + nextStageAdultsFromInfectedEngorgedNymphs;
+            grid.stage(NYMPHS_ENGORGED)[cell] -= nextStageAdults;
+            grid.stage(NYMPHS_ENGORGED_INFECTED)[cell] -= nextStageAdultsFromInfectedEngorgedNymphs;
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE) - dayOfYear;
+            var nextStageLarvae = randomness.transition(grid.stage(ADULTS_ENGORGED)[cell], (float) grid.stage(ADULTS_ENGORGED)[cell] / (float) remainingDays);
+            grid.stage(LARVAE_INACTIVE)[cell] += nextStageLarvae;
+            grid.stage(ADULTS_ENGORGED)[cell] -= nextStageLarvae;
+        }
+    }
+
+    private void desiccation(int cell) {
+        if (!environment.isDesiccating(grid.habitat[cell])) {
+            return;
+        }
+
+        var rate = desiccationRate[grid.habitat[cell]];
+
+        var desiccatedLarvae = randomness.transition(grid.stage(LARVAE_QUESTING)[cell], (float) grid.stage(LARVAE_QUESTING)[cell] * rate);
+        var desiccatedNymphs = randomness.transition(grid.stage(NYMPHS_QUESTING)[cell], (float) grid.stage(NYMPHS_QUESTING)[cell] * rate);
+        var desiccatedAdults = randomness.transition(grid.stage(ADULTS_QUESTING)[cell], (float) grid.stage(ADULTS_QUESTING)[cell] * rate);
+        var desiccatedInfectedLarvae = randomness.transition(grid.stage(LARVAE_QUESTING_INFECTED)[cell], (float) grid.stage(LARVAE_QUESTING_INFECTED)[cell] * rate);
+        var desiccatedInfectedNymphs = randomness.transition(grid.stage(NYMPHS_QUESTING_INFECTED)[cell], (float) grid.stage(NYMPHS_QUESTING_INFECTED)[cell] * rate);
+
+        grid.stage(LARVAE_QUESTING)[cell] -= desiccatedLarvae;
+        grid.stage(NYMPHS_QUESTING)[cell] -= desiccatedNymphs;
+        grid.stage(ADULTS_QUESTING)[cell] -= desiccatedAdults;
+        grid.stage(LARVAE_QUESTING_INFECTED)[cell] -= desiccatedInfectedLarvae;
+        grid.stage(NYMPHS_QUESTING_INFECTED)[cell] -= desiccatedInfectedNymphs;
+    }
+
+    private void freezing(int cell) {
+        if (!environment.isFreezing(grid.habitat[cell])) {
+            return;
+        }
+
+        for (int i = 0; i < FREEZING_COHORTS.length; ++i) {
+            frozen[i] = randomness.transition(grid.stage(FREEZING_COHORTS[i])[cell], (float) grid.stage(FREEZING_COHORTS[i])[cell] * freezingRate[i]);
+        }
+        for (int i = 0; i < FREEZING_COHORTS.length; ++i) {
+            grid.stage(FREEZING_COHORTS[i])[cell] -= frozen[i];
+        }
+    }
+
+    public void hostLifeCycle(int timeStep) {
+        if (kernels != null) {
+            kernels.hostLifeCycle(timeStep);
+            return;
+        }
+
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            randomness.seek(timeStep, stream(cell), Randomness.Process.HOST_LIFE_CYCLE);
+
+            var replacedInfectedRodents = randomness.transition(grid.rodentsInfected[cell], (float) grid.rodentsInfected[cell] * parameters.value(ParameterSet.Value.REPLACEMENT_RATE_RODENTS));
+
+            grid.rodentsSusceptible[cell] += replacedInfectedRodents;
+            grid.rodentsInfected[cell] -= replacedInfectedRodents;
+        }
+    }
+
+    public void observe(int timeStep) {
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            view.cell = cell;
+            observer.observe(timeStep, view);
+        }
+        observer.endTimeStep(timeStep);
+    }
+
+    private int remove(int[] stage, int cell, float rate) {
+        var old = stage[cell];
+        var removed = randomness.transition(old, old * rate);
+        stage[cell] = old - removed;
+
+        return removed;
+    }
+}
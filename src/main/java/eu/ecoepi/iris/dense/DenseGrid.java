@@ -0,0 +1,127 @@
+package eu.ecoepi.iris.dense;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.components.TickAbundance;
+
+/*
+Structure-of-arrays storage of the whole landscape: every cell property is kept in a flat array
+indexed by cell, tick cohorts and feeding events additionally by CohortStateTicks.ordinal().
+Cells are numbered column by column, i.e. in the same order in which Model creates its entities.
+
+A grid can hold several scenarios side by side (see LockstepEngine). The tick and host counts then
+have one lane per scenario and are indexed by lane(cell, lane), i.e. the lanes of a cell are adjacent.
+Habitat and weather are shared by all lanes and always indexed by cell.
+ */
+public class DenseGrid {
+
+    static final Habitat.Type[] HABITATS = Habitat.Type.values();
+
+    final int width;
+    final int height;
+    final int cells;
+    final int lanes;
+
+    final int[][] abundance;
+    final int[][] feedingEvents;
+    final int[] feedingEventsNewInfectedLarvae;
+    final int[] feedingEventsNewInfectedNymphs;
+
+    final int[] rodentsSusceptible;
+    final int[] rodentsInfected;
+
+    final byte[] habitat;
+
+    final float[] meanTemperature;
+    final float[] minTemperature;
+    final float[] maxTemperature;
+    final float[] humidity;
+
+    public DenseGrid(int width, int height) {
+        this(width, height, 1);
+    }
+
+    public DenseGrid(int width, int height, int lanes) {
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+        this.lanes = lanes;
+
+        abundance = new int[TickAbundance.COHORTS][cells * lanes];
+        feedingEvents = new int[TickAbundance.COHORTS][cells * lanes];
+        feedingEventsNewInfectedLarvae = new int[cells * lanes];
+        feedingEventsNewInfectedNymphs = new int[cells * lanes];
+
+        rodentsSusceptible = new int[cells * lanes];
+        rodentsInfected = new int[cells * lanes];
+
+        habitat = new byte[cells];
+
+        meanTemperature = new float[cells];
+        minTemperature = new float[cells];
+        maxTemperature = new float[cells];
+        humidity = new float[cells];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getCells() {
+        return cells;
+    }
+
+    public int getLanes() {
+        return lanes;
+    }
+
+    public int lane(int cell, int lane) {
+        return cell * lanes + lane;
+    }
+
+    public int cell(int x, int y) {
+        return x * height + y;
+    }
+
+    public int getX(int cell) {
+        return cell / height;
+    }
+
+    public int getY(int cell) {
+        return cell % height;
+    }
+
+    /*
+    The landscape is a torus, so neighbours wrap around at the edges.
+     */
+    public int neighbour(int cell, int dx, int dy) {
+        var x = Math.floorMod(getX(cell) + dx, width);
+        var y = Math.floorMod(getY(cell) + dy, height);
+        return cell(x, y);
+    }
+
+    public int[] stage(CohortStateTicks stage) {
+        return abundance[stage.ordinal()];
+    }
+
+    public int[] feedingEvents(CohortStateTicks stage) {
+        return feedingEvents[stage.ordinal()];
+    }
+
+    public Habitat.Type getHabitat(int cell) {
+        return HABITATS[habitat[cell]];
+    }
+
+    public void setHabitat(int cell, Habitat.Type type) {
+        habitat[cell] = (byte) type.ordinal();
+    }
+
+    public void setRodents(int cell, int susceptible, int infected) {
+        rodentsSusceptible[cell] = susceptible;
+        rodentsInfected[cell] = infected;
+    }
+}
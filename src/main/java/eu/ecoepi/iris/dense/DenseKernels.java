@@ -0,0 +1,269 @@
+package eu.ecoepi.iris.dense;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.ParameterSet;
+import eu.ecoepi.iris.resources.Randomness;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.util.Arrays;
+
+import static eu.ecoepi.iris.CohortStateTicks.*;
+
+/*
+Block-wise implementation of the cell-local processes (activation, development, desiccation,
+freezing and host replacement) of a DenseEngine.
+
+Instead of visiting one cell after the other, every transition is computed for a block of cells
+at a time by a few small kernels: the expected number of moving ticks is the product of a cohort
+count and a rate, it is turned into a number of ticks by the batch version of
+Randomness.transition and finally the ticks are moved between the cohort arrays. Apart from the
+sampling, the kernels are straight loops over contiguous arrays without branches, which HotSpot
+compiles to SIMD instructions, and the blocks are small enough for the scratch arrays to stay in
+the first level cache.
+
+The transitions follow the same rules as the per-cell processes, but the random numbers are drawn
+cohort by cohort instead of cell by cell, so the results for a given seed differ from the
+per-cell processes.
+
+With a counter-based generator, the stream is selected only once per block and process, keyed on
+the first cell of the block, and the cells of the block draw from it one cohort after the other.
+The numbers a cell gets therefore depend on its position in the block and on the counts of the
+cells before it, so dense_vectorised is not reproducible per cell. It is not covered by the
+guarantee that the results with 'philox' do not depend on the order or distribution of the cells,
+which holds for the per-cell processes only (see DenseEngineTest).
+ */
+class DenseKernels {
+
+    static final int BLOCK = 1024;
+
+    static final CohortStateTicks[] DESICCATING_COHORTS = {
+            LARVAE_QUESTING, NYMPHS_QUESTING, ADULTS_QUESTING,
+            LARVAE_QUESTING_INFECTED, NYMPHS_QUESTING_INFECTED
+    };
+
+    final DenseGrid grid;
+    final WeatherData weather;
+    final ParameterSet parameters;
+    final Environment environment;
+    final Randomness randomness;
+    final float activationRate;
+    final float[] desiccationRate;
+    final float[] freezingRate;
+
+    final float[] ones = new float[BLOCK];
+    final float[] share = new float[BLOCK];
+    final float[] inverseShare = new float[BLOCK];
+    final float[] rate = new float[BLOCK];
+
+    final float[] values = new float[BLOCK];
+
+    final int[][] transitions = new int[DenseEngine.FREEZING_COHORTS.length][BLOCK];
+
+    DenseKernels(DenseEngine engine) {
+        this.grid = engine.grid;
+        this.weather = engine.weather;
+        this.parameters = engine.parameters;
+        this.environment = engine.environment;
+        this.randomness = engine.randomness;
+        this.activationRate = engine.activationRate;
+        this.desiccationRate = engine.desiccationRate;
+        this.freezingRate = engine.freezingRate;
+
+        Arrays.fill(ones, 1f);
+    }
+
+    void activity(int timeStep) {
+        var larvaeQuestingSeason = weather.getDayOfYear(timeStep) > parameters.day(ParameterSet.Day.START_LARVAE_QUESTING);
+
+        var newQuestingLarvae = transitions[0];
+        var newInfectedQuestingLarvae = transitions[1];
+        var newQuestingNymphs = transitions[2];
+        var newQuestingAdults = transitions[3];
+        var newInactiveLarvae = transitions[4];
+        var newInactiveNymphs = transitions[5];
+        var newInactiveAdults = transitions[6];
+        var newInfectedQuestingNymphs = transitions[7];
+        var newInfectedInactiveLarvae = transitions[8];
+        var newInfectedInactiveNymphs = transitions[9];
+
+        for (int from = 0; from < grid.cells; from += BLOCK) {
+            var length = Math.min(BLOCK, grid.cells - from);
+            randomness.seek(timeStep, from, Randomness.Process.ACTIVITY);
+
+            for (int i = 0; i < length; ++i) {
+                var cell = from + i;
+                share[i] = environment.getShareOfActivationRate(grid.habitat[cell]);
+                inverseShare[i] = 1 - share[i];
+            }
+
+            if (larvaeQuestingSeason) {
+                draw(LARVAE_INACTIVE, from, activationRate, share, newQuestingLarvae, length);
+                draw(LARVAE_INACTIVE_INFECTED, from, activationRate, share, newInfectedQuestingLarvae, length);
+            } else {
+                Arrays.fill(newQuestingLarvae, 0, length, 0);
+                Arrays.fill(newInfectedQuestingLarvae, 0, length, 0);
+            }
+            draw(NYMPHS_INACTIVE, from, activationRate, share, newQuestingNymphs, length);
+            draw(ADULTS_INACTIVE, from, activationRate, share, newQuestingAdults, length);
+            draw(LARVAE_QUESTING, from, activationRate, inverseShare, newInactiveLarvae, length);
+            draw(NYMPHS_QUESTING, from, activationRate, inverseShare, newInactiveNymphs, length);
+            draw(ADULTS_QUESTING, from, activationRate, inverseShare, newInactiveAdults, length);
+
+            draw(NYMPHS_INACTIVE_INFECTED, from, activationRate, share, newInfectedQuestingNymphs, length);
+            draw(LARVAE_QUESTING_INFECTED, from, activationRate, inverseShare, newInfectedInactiveLarvae, length);
+            draw(NYMPHS_QUESTING_INFECTED, from, activationRate, inverseShare, newInfectedInactiveNymphs, length);
+
+            move(grid.stage(LARVAE_INACTIVE), grid.stage(LARVAE_QUESTING), from, newQuestingLarvae, newInactiveLarvae, length);
+            move(grid.stage(NYMPHS_INACTIVE), grid.stage(NYMPHS_QUESTING), from, newQuestingNymphs, newInactiveNymphs, length);
+            move(grid.stage(ADULTS_INACTIVE), grid.stage(ADULTS_QUESTING), from, newQuestingAdults, newInactiveAdults, length);
+
+            add(grid.stage(LARVAE_QUESTING_INFECTED), from, newInfectedQuestingLarvae, newInfectedInactiveLarvae, length);
+            add(grid.stage(NYMPHS_QUESTING_INFECTED), from, newInfectedQuestingNymphs, newInfectedInactiveNymphs, length);
+            add(grid.stage(LARVAE_QUESTING_INFECTED), from, newInfectedInactiveLarvae, newInfectedQuestingLarvae, length);
+            add(grid.stage(NYMPHS_INACTIVE_INFECTED), from, newInfectedInactiveNymphs, newInfectedQuestingNymphs, length);
+        }
+    }
+
+    void tickLifeCycle(int timeStep) {
+        var dayOfYear = weather.getDayOfYear(timeStep);
+
+        for (int from = 0; from < grid.cells; from += BLOCK) {
+            var length = Math.min(BLOCK, grid.cells - from);
+            randomness.seek(timeStep, from, Randomness.Process.TICK_LIFE_CYCLE);
+
+            development(dayOfYear, from, length);
+            desiccation(from, length);
+            freezing(from, length);
+        }
+    }
+
+    private void development(int dayOfYear, int from, int length) {
+        if (dayOfYear < parameters.day(ParameterSet.Day.BEGIN_OF_DEVELOPMENT)) {
+            return;
+        }
+
+        var developed = transitions[0];
+        var developedInfected = transitions[1];
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS)) {
+            var perDay = 1f / (parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS) - dayOfYear);
+            draw(LARVAE_ENGORGED, from, perDay, ones, developed, length);
+            draw(LARVAE_ENGORGED_INFECTED, from, perDay, ones, developedInfected, length);
+            move(grid.stage(LARVAE_ENGORGED), grid.stage(NYMPHS_INACTIVE), from, developed, length);
+            move(grid.stage(LARVAE_ENGORGED_INFECTED), grid.stage(NYMPHS_INACTIVE_INFECTED), from, developedInfected, length);
+        }
+
+        /*
+        As in TickLifeCycle, infected engorged nymphs develop into ordinary adults.
+        */
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS)) {
+            var perDay = 1f / (parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS) - dayOfYear);
+            draw(NYMPHS_ENGORGED, from, perDay, ones, developed, length);
+            draw(NYMPHS_ENGORGED_INFECTED, from, perDay, ones, developedInfected, length);
+            move(grid.stage(NYMPHS_ENGORGED), grid.stage(ADULTS_INACTIVE), from, developed, length);
+            move(grid.stage(NYMPHS_ENGORGED_INFECTED), grid.stage(ADULTS_INACTIVE), from, developedInfected, length);
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE)) {
+            var perDay = 1f / (parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE) - dayOfYear);
+            draw(ADULTS_ENGORGED, from, perDay, ones, developed, length);
+            move(grid.stage(ADULTS_ENGORGED), grid.stage(LARVAE_INACTIVE), from, developed, length);
+        }
+    }
+
+    private void desiccation(int from, int length) {
+        var any = false;
+        for (int i = 0; i < length; ++i) {
+            var cell = from + i;
+            var desiccating = environment.isDesiccating(grid.habitat[cell]);
+            rate[i] = desiccating ? desiccationRate[grid.habitat[cell]] : 0f;
+            any |= desiccating;
+        }
+        if (!any) {
+            return;
+        }
+
+        var desiccated = transitions[0];
+        for (var stage : DESICCATING_COHORTS) {
+            draw(stage, from, 1f, rate, desiccated, length);
+            remove(grid.stage(stage), from, desiccated, length);
+        }
+    }
+
+    private void freezing(int from, int length) {
+        var any = false;
+        for (int i = 0; i < length; ++i) {
+            var freezing = environment.isFreezing(grid.habitat[from + i]);
+            rate[i] = freezing ? 1f : 0f;
+            any |= freezing;
+        }
+        if (!any) {
+            return;
+        }
+
+        var frozen = transitions[0];
+        for (int c = 0; c < DenseEngine.FREEZING_COHORTS.length; ++c) {
+            var stage = DenseEngine.FREEZING_COHORTS[c];
+            draw(stage, from, freezingRate[c], rate, frozen, length);
+            remove(grid.stage(stage), from, frozen, length);
+        }
+    }
+
+    void hostLifeCycle(int timeStep) {
+        var replaced = transitions[0];
+
+        for (int from = 0; from < grid.cells; from += BLOCK) {
+            var length = Math.min(BLOCK, grid.cells - from);
+            randomness.seek(timeStep, from, Randomness.Process.HOST_LIFE_CYCLE);
+
+            multiply(grid.rodentsInfected, from, parameters.value(ParameterSet.Value.REPLACEMENT_RATE_RODENTS), ones, values, length);
+            randomness.transition(grid.rodentsInfected, from, values, replaced, length);
+            move(grid.rodentsInfected, grid.rodentsSusceptible, from, replaced, length);
+        }
+    }
+
+    /*
+    Number of ticks leaving a cohort: count * factor * rate, rounded stochastically.
+     */
+    private void draw(CohortStateTicks stage, int from, float factor, float[] rates, int[] out, int length) {
+        multiply(grid.stage(stage), from, factor, rates, values, length);
+        randomness.transition(grid.stage(stage), from, values, out, length);
+    }
+
+    static void multiply(int[] counts, int from, float factor, float[] rates, float[] out, int length) {
+        for (int i = 0; i < length; ++i) {
+            out[i] = counts[from + i] * factor * rates[i];
+        }
+    }
+
+    static void move(int[] source, int[] target, int from, int[] amount, int length) {
+        for (int i = 0; i < length; ++i) {
+            source[from + i] -= amount[i];
+            target[from + i] += amount[i];
+        }
+    }
+
+    /*
+    Exchange between two cohorts: forward leaves the source for the target, backward the other way round.
+     */
+    static void move(int[] source, int[] target, int from, int[] forward, int[] backward, int length) {
+        for (int i = 0; i < length; ++i) {
+            var net = forward[i] - backward[i];
+            source[from + i] -= net;
+            target[from + i] += net;
+        }
+    }
+
+    static void add(int[] target, int from, int[] increase, int[] decrease, int length) {
+        for (int i = 0; i < length; ++i) {
+            target[from + i] += increase[i] - decrease[i];
+        }
+    }
+
+    static void remove(int[] target, int from, int[] amount, int length) {
+        for (int i = 0; i < length; ++i) {
+            target[from + i] -= amount[i];
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package eu.ecoepi.iris.dense;
+
+import com.opencsv.exceptions.CsvException;
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.observers.CellObserver;
+import eu.ecoepi.iris.resources.DispersalKernel;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.HabitatMap;
+import eu.ecoepi.iris.resources.ParameterSet;
+import eu.ecoepi.iris.resources.Randomness;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+
+import static eu.ecoepi.iris.CohortStateTicks.*;
+
+/*
+Runs several scenarios on the same landscape and weather in lockstep, e.g. the runs of a sweep
+which only differ in the initial numbers of ticks or the activation rate.
+
+The scenarios are the lanes of a single DenseGrid, so the counts of all scenarios in a cell are
+adjacent. Every process computes the weather and everything else that only depends on the cell
+once per cell and then updates all lanes in an inner loop. Every scenario writes to its own observer.
+
+Every lane draws from its own generator created from the options of its scenario, in the same order
+as a DenseEngine would, so the result of every scenario is identical to that of a DenseEngine run
+with the same options.
+ */
+public class LockstepEngine {
+
+    final DenseGrid grid;
+    final int lanes;
+    final WeatherData weather;
+    final ParameterSet parameters;
+    final Environment environment = new Environment();
+    final int days;
+    final Randomness[] randomness;
+    final float[] activationRate;
+    final DispersalKernel dispersal = new DispersalKernel();
+
+    final float[] desiccationRate = new float[DenseGrid.HABITATS.length];
+    final float[] freezingRate = new float[DenseEngine.FREEZING_COHORTS.length];
+    final int[] frozen = new int[DenseEngine.FREEZING_COHORTS.length];
+
+    final CellObserver[] observers;
+    final DenseCellView[] views;
+
+    public LockstepEngine(List<Model.Options> scenarios, List<CellObserver> observers) throws IOException, CsvException {
+        this(scenarios, Model.createWeather(requireShared(scenarios)), Model.createHabitat(scenarios.get(0)), observers);
+    }
+
+    public LockstepEngine(List<Model.Options> scenarios, WeatherData weather, int width, int height, List<CellObserver> observers) {
+        this(scenarios, weather, HabitatMap.stripes(width, height), observers);
+    }
+
+    public LockstepEngine(List<Model.Options> scenarios, WeatherData weather, HabitatMap habitat, List<CellObserver> observers) {
+        if (scenarios.isEmpty() || scenarios.size() != observers.size()) {
+            throw new IllegalArgumentException("Every scenario needs exactly one observer");
+        }
+
+        this.lanes = scenarios.size();
+        this.grid = new DenseGrid(habitat.getWidth(), habitat.getHeight(), lanes);
+        this.weather = weather;
+        this.parameters = scenarios.get(0).parameters;
+        this.days = Model.days(scenarios.get(0), weather);
+        this.randomness = new Randomness[lanes];
+        this.activationRate = new float[lanes];
+        this.observers = observers.toArray(new CellObserver[0]);
+        this.views = new DenseCellView[lanes];
+
+        for (int lane = 0; lane < lanes; ++lane) {
+            var options = scenarios.get(lane);
+            randomness[lane] = Model.createRandomness(Model.createGenerator(options), options);
+            activationRate[lane] = options.activationRate;
+            views[lane] = new DenseCellView(grid, 0, 0, lane);
+        }
+
+        for (var type : DenseGrid.HABITATS) {
+            desiccationRate[type.ordinal()] = parameters.getDesiccationRate(type);
+        }
+        for (int i = 0; i < DenseEngine.FREEZING_COHORTS.length; ++i) {
+            freezingRate[i] = parameters.getFreezingRate(DenseEngine.FREEZING_COHORTS[i]);
+        }
+
+        for (int x = 0; x < grid.width; ++x) {
+            for (int y = 0; y < grid.height; ++y) {
+                var cell = grid.cell(x, y);
+                grid.setHabitat(cell, habitat.get(x, y));
+
+                for (int lane = 0; lane < lanes; ++lane) {
+                    var options = scenarios.get(lane);
+                    var i = grid.lane(cell, lane);
+
+                    grid.stage(LARVAE_INACTIVE)[i] = options.initialInactiveLarvae;
+                    grid.stage(NYMPHS_INACTIVE)[i] = options.initialInactiveNymphs;
+                    grid.stage(ADULTS_INACTIVE)[i] = options.initialInactiveAdults;
+                    grid.stage(LARVAE_INACTIVE_INFECTED)[i] = options.initialInfectedInactiveLarvae;
+                    grid.stage(NYMPHS_INACTIVE_INFECTED)[i] = options.initialInfectedInactiveNymphs;
+
+                    grid.rodentsSusceptible[i] = options.initialRodents;
+                    grid.rodentsInfected[i] = options.initialInfectedRodents;
+                }
+            }
+        }
+    }
+
+    /*
+    The scenarios share a single pass over the weather on a single landscape, so they must all use the
+    same weather input, days, landscape and parameters.
+     */
+    static Model.Options requireShared(List<Model.Options> scenarios) {
+        var first = scenarios.get(0);
+        for (var options : scenarios) {
+            if (!canShare(first, options)) {
+                throw new IllegalArgumentException("Scenarios run in lockstep have to share the weather input, days, landscape and parameters, but got "
+                        + first.weather + " and " + options.weather);
+            }
+        }
+        return first;
+    }
+
+    public static boolean canShare(Model.Options first, Model.Options second) {
+        return Objects.equals(first.weather, second.weather) && Objects.equals(first.years, second.years) && first.days == second.days
+                && Objects.equals(first.habitat, second.habitat) && first.parameters.equals(second.parameters) && first.width == second.width && first.height == second.height;
+    }
+
+    public DenseGrid getGrid() {
+        return grid;
+    }
+
+    public void run() {
+        try {
+            for (int timeStep = 0; timeStep < days; ++timeStep) {
+                step(timeStep);
+            }
+        } finally {
+            for (var observer : observers) {
+                observer.close();
+            }
+        }
+    }
+
+    public void step(int timeStep) {
+        environment.update(parameters, weather, timeStep);
+        DenseEngine.assignWeather(environment, grid.habitat, grid.meanTemperature, grid.minTemperature, grid.maxTemperature, grid.humidity);
+        activity(timeStep);
+        feeding(timeStep);
+        tickLifeCycle(timeStep);
+        hostLifeCycle(timeStep);
+        observe(timeStep);
+    }
+
+    public void activity(int timeStep) {
+        var larvaeQuesting = grid.stage(LARVAE_QUESTING);
+        var nymphsQuesting = grid.stage(NYMPHS_QUESTING);
+        var adultsQuesting = grid.stage(ADULTS_QUESTING);
+        var larvaeQuestingInfected = grid.stage(LARVAE_QUESTING_INFECTED);
+        var nymphsQuestingInfected = grid.stage(NYMPHS_QUESTING_INFECTED);
+        var larvaeInactive = grid.stage(LARVAE_INACTIVE);
+        var nymphsInactive = grid.stage(NYMPHS_INACTIVE);
+        var adultsInactive = grid.stage(ADULTS_INACTIVE);
+        var larvaeInactiveInfected = grid.stage(LARVAE_INACTIVE_INFECTED);
+        var nymphsInactiveInfected = grid.stage(NYMPHS_INACTIVE_INFECTED);
+
+        var larvaeQuestingSeason = weather.getDayOfYear(timeStep) > parameters.day(ParameterSet.Day.START_LARVAE_QUESTING);
+
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            var shareOfActivationRate = environment.getShareOfActivationRate(grid.habitat[cell]);
+
+            for (int lane = 0, i = grid.lane(cell, 0); lane < lanes; ++lane, ++i) {
+                var random = randomness[lane];
+                var rate = activationRate[lane];
+                random.seek(timeStep, cell, Randomness.Process.ACTIVITY);
+
+                var newQuestingLarvae = 0;
+                var newInfectedQuestingLarvae = 0;
+                if (larvaeQuestingSeason) {
+                    newQuestingLarvae = random.transition(larvaeInactive[i], larvaeInactive[i] * rate * shareOfActivationRate);
+                    newInfectedQuestingLarvae = random.transition(larvaeInactiveInfected[i], larvaeInactiveInfected[i] * rate * shareOfActivationRate);
+                }
+                var newQuestingNymphs = random.transition(nymphsInactive[i], nymphsInactive[i] * rate * shareOfActivationRate);
+                var newQuestingAdults = random.transition(adultsInactive[i], adultsInactive[i] * rate * shareOfActivationRate);
+                var newInactiveLarvae = random.transition(larvaeQuesting[i], larvaeQuesting[i] * rate * (1 - shareOfActivationRate));
+                var newInactiveNymphs = random.transition(nymphsQuesting[i], nymphsQuesting[i] * rate * (1 - shareOfActivationRate));
+                var newInactiveAdults = random.transition(adultsQuesting[i], adultsQuesting[i] * rate * (1 - shareOfActivationRate));
+
+                var newInfectedQuestingNymphs = random.transition(nymphsInactiveInfected[i], nymphsInactiveInfected[i] * rate * shareOfActivationRate);
+                var newInfectedInactiveLarvae = random.transition(larvaeQuestingInfected[i], larvaeQuestingInfected[i] * rate * (1 - shareOfActivationRate));
+                var newInfectedInactiveNymphs = random.transition(nymphsQuestingInfected[i], nymphsQuestingInfected[i] * rate * (1 - shareOfActivationRate));
+
+                larvaeQuesting[i] += newQuestingLarvae - newInactiveLarvae;
+                nymphsQuesting[i] += newQuestingNymphs - newInactiveNymphs;
+                adultsQuesting[i] += newQuestingAdults - newInactiveAdults;
+                larvaeInactive[i] += newInactiveLarvae - newQuestingLarvae;
+                nymphsInactive[i] += newInactiveNymphs - newQuestingNymphs;
+                adultsInactive[i] += newInactiveAdults - newQuestingAdults;
+
+                larvaeQuestingInfected[i] += newInfectedQuestingLarvae - newInfectedInactiveLarvae;
+                nymphsQuestingInfected[i] += newInfectedQuestingNymphs - newInfectedInactiveNymphs;
+                larvaeQuestingInfected[i] += newInfectedInactiveLarvae - newInfectedQuestingLarvae;
+                nymphsInactiveInfected[i] += newInfectedInactiveNymphs - newInfectedQuestingNymphs;
+            }
+        }
+    }
+
+    public void feeding(int timeStep) {
+        var larvaeQuesting = grid.stage(LARVAE_QUESTING);
+        var larvaeQuestingInfected = grid.stage(LARVAE_QUESTING_INFECTED);
+        var nymphsQuesting = grid.stage(NYMPHS_QUESTING);
+        var nymphsQuestingInfected = grid.stage(NYMPHS_QUESTING_INFECTED);
+        var adultsQuesting = grid.stage(ADULTS_QUESTING);
+
+        var lateFeeding = weather.getDayOfYear(timeStep) >= parameters.day(ParameterSet.Day.LATE_FEEDING_TIME);
+        var larvaeEngorged = grid.stage(lateFeeding ? LARVAE_LATE_ENGORGED : LARVAE_ENGORGED);
+        var larvaeEngorgedInfected = grid.stage(lateFeeding ? LARVAE_LATE_ENGORGED_INFECTED : LARVAE_ENGORGED_INFECTED);
+        var nymphsEngorged = grid.stage(lateFeeding ? NYMPHS_LATE_ENGORGED : NYMPHS_ENGORGED);
+        var nymphsEngorgedInfected = grid.stage(lateFeeding ? NYMPHS_LATE_ENGORGED_INFECTED : NYMPHS_ENGORGED_INFECTED);
+        var adultsEngorged = grid.stage(ADULTS_ENGORGED);
+
+        var larvaeFeedingEvents = grid.feedingEvents(LARVAE_QUESTING);
+        var larvaeInfectedFeedingEvents = grid.feedingEvents(LARVAE_QUESTING_INFECTED);
+        var nymphsFeedingEvents = grid.feedingEvents(NYMPHS_QUESTING);
+        var nymphsInfectedFeedingEvents = grid.feedingEvents(NYMPHS_QUESTING_INFECTED);
+        var adultsFeedingEvents = grid.feedingEvents(ADULTS_QUESTING);
+
+        var larvaeFeedingRate = parameters.getFeedingRate(LARVAE_QUESTING);
+        var larvaeInfectedFeedingRate = parameters.getFeedingRate(LARVAE_QUESTING_INFECTED);
+        var nymphsFeedingRate = parameters.getFeedingRate(NYMPHS_QUESTING);
+        var nymphsInfectedFeedingRate = parameters.getFeedingRate(NYMPHS_QUESTING_INFECTED);
+        var adultsFeedingRate = parameters.getFeedingRate(ADULTS_QUESTING);
+
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            for (int lane = 0, i = grid.lane(cell, 0); lane < lanes; ++lane, ++i) {
+                var random = randomness[lane];
+                random.seek(timeStep, cell, Randomness.Process.FEEDING);
+
+                var rodentPrevalence = grid.rodentsInfected[i] / (float) (grid.rodentsSusceptible[i] + grid.rodentsInfected[i]);
+
+                {
+                    var target = target(cell, lane, random);
+
+                    var feedingLarvae = remove(larvaeQuesting, i, larvaeFeedingRate, random);
+                    var feedingInfectedLarvae = remove(larvaeQuestingInfected, i, larvaeInfectedFeedingRate, random);
+                    var newInfectedLarvae = random.transition(feedingLarvae, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingLarvae * rodentPrevalence);
+
+                    feedingLarvae -= newInfectedLarvae;
+                    feedingInfectedLarvae += newInfectedLarvae;
+
+                    larvaeEngorged[target] += feedingLarvae;
+                    larvaeEngorgedInfected[target] += feedingInfectedLarvae;
+                    larvaeFeedingEvents[i] += feedingLarvae;
+                    larvaeInfectedFeedingEvents[i] += feedingInfectedLarvae;
+                    grid.feedingEventsNewInfectedLarvae[i] += newInfectedLarvae;
+                }
+
+                {
+                    var target = target(cell, lane, random);
+
+                    var feedingNymphs = remove(nymphsQuesting, i, nymphsFeedingRate, random);
+                    var feedingInfectedNymphs = remove(nymphsQuestingInfected, i, nymphsInfectedFeedingRate, random);
+                    var newInfectedNymphs = random.transition(feedingNymphs, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingNymphs * rodentPrevalence);
+
+                    feedingNymphs -= newInfectedNymphs;
+                    feedingInfectedNymphs += newInfectedNymphs;
+
+                    nymphsEngorged[target] += feedingNymphs;
+                    nymphsEngorgedInfected[target] += feedingInfectedNymphs;
+                    nymphsFeedingEvents[i] += feedingNymphs;
+                    nymphsInfectedFeedingEvents[i] += feedingInfectedNymphs;
+                    grid.feedingEventsNewInfectedNymphs[i] += newInfectedNymphs;
+
+                    var newInfectedRodents = random.transition(feedingInfectedNymphs, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingInfectedNymphs * (1.0f - rodentPrevalence));
+                    grid.rodentsSusceptible[i] -= newInfectedRodents;
+                    grid.rodentsInfected[i] += newInfectedRodents;
+                }
+
+                {
+                    var target = target(cell, lane, random);
+                    var feedingAdults = random.transition(adultsQuesting[i], adultsQuesting[i] * adultsFeedingRate);
+
+                    adultsQuesting[i] -= feedingAdults;
+                    adultsEngorged[target] += feedingAdults;
+                    adultsFeedingEvents[i] += feedingAdults;
+                }
+            }
+        }
+    }
+
+    /*
+    Lane of the cell in which engorged ticks dropped off by the hosts of the given cell end up.
+     */
+    private int target(int cell, int lane, Randomness random) {
+        var displacement = dispersal.sample(random);
+        return grid.lane(grid.neighbour(cell, dispersal.getX(displacement), dispersal.getY(displacement)), lane);
+    }
+
+    public void tickLifeCycle(int timeStep) {
+        var dayOfYear = weather.getDayOfYear(timeStep);
+
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            var desiccating = environment.isDesiccating(grid.habitat[cell]);
+            var freezing = environment.isFreezing(grid.habitat[cell]);
+            var rate = desiccationRate[grid.habitat[cell]];
+
+            for (int lane = 0, i = grid.lane(cell, 0); lane < lanes; ++lane, ++i) {
+                var random = randomness[lane];
+                random.seek(timeStep, cell, Randomness.Process.TICK_LIFE_CYCLE);
+
+                development(dayOfYear, i, random);
+                if (desiccating) {
+                    desiccation(i, rate, random);
+                }
+                if (freezing) {
+                    freezing(i, random);
+                }
+            }
+        }
+    }
+
+    private void development(int dayOfYear, int i, Randomness random) {
+        if (dayOfYear < parameters.day(ParameterSet.Day.BEGIN_OF_DEVELOPMENT)) {
+            return;
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS) - dayOfYear;
+            var nextStageNymphs = random.transition(grid.stage(LARVAE_ENGORGED)[i], (float) grid.stage(LARVAE_ENGORGED)[i] / (float) remainingDays);
+            var nextStageInfectedNymphs = random.transition(grid.stage(LARVAE_ENGORGED_INFECTED)[i], (float) grid.stage(LARVAE_ENGORGED_INFECTED)[i] / (float) remainingDays);
+            grid.stage(NYMPHS_INACTIVE)[i] += nextStageNymphs;
+            grid.stage(LARVAE_ENGORGED)[i] -= nextStageNymphs;
+            grid.stage(NYMPHS_INACTIVE_INFECTED)[i] += nextStageInfectedNymphs;
+            grid.stage(LARVAE_ENGORGED_INFECTED)[i] -= nextStageInfectedNymphs;
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS) - dayOfYear;
+            var nextStageAdults = random.transition(grid.stage(NYMPHS_ENGORGED)[i], (float) grid.stage(NYMPHS_ENGORGED)[i] / (float) remainingDays);
+            var nextStageAdultsFromInfectedEngorgedNymphs =
+                    random.transition(grid.stage(NYMPHS_ENGORGED_INFECTED)[i], (float) grid.stage(NYMPHS_ENGORGED_INFECTED)[i] / (float) remainingDays);
+            grid.stage(ADULTS_INACTIVE)[i] += nextStageAdults + nextStageAdultsFromInfectedEngorgedNymphs;
+            grid.stage(NYMPHS_ENGORGED)[i] -= nextStageAdults;
+            grid.stage(NYMPHS_ENGORGED_INFECTED)[i] -= nextStageAdultsFromInfectedEngorgedNymphs;
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE) - dayOfYear;
+            var nextStageLarvae = random.transition(grid.stage(ADULTS_ENGORGED)[i], (float) grid.stage(ADULTS_ENGORGED)[i] / (float) remainingDays);
+            grid.stage(LARVAE_INACTIVE)[i] += nextStageLarvae;
+            grid.stage(ADULTS_ENGORGED)[i] -= nextStageLarvae;
+        }
+    }
+
+    private void desiccation(int i, float rate, Randomness random) {
+        var desiccatedLarvae = random.transition(grid.stage(LARVAE_QUESTING)[i], (float) grid.stage(LARVAE_QUESTING)[i] * rate);
+        var desiccatedNymphs = random.transition(grid.stage(NYMPHS_QUESTING)[i], (float) grid.stage(NYMPHS_QUESTING)[i] * rate);
+        var desiccatedAdults = random.transition(grid.stage(ADULTS_QUESTING)[i], (float) grid.stage(ADULTS_QUESTING)[i] * rate);
+        var desiccatedInfectedLarvae = random.transition(grid.stage(LARVAE_QUESTING_INFECTED)[i], (float) grid.stage(LARVAE_QUESTING_INFECTED)[i] * rate);
+        var desiccatedInfectedNymphs = random.transition(grid.stage(NYMPHS_QUESTING_INFECTED)[i], (float) grid.stage(NYMPHS_QUESTING_INFECTED)[i] * rate);
+
+        grid.stage(LARVAE_QUESTING)[i] -= desiccatedLarvae;
+        grid.stage(NYMPHS_QUESTING)[i] -= desiccatedNymphs;
+        grid.stage(ADULTS_QUESTING)[i] -= desiccatedAdults;
+        grid.stage(LARVAE_QUESTING_INFECTED)[i] -= desiccatedInfectedLarvae;
+        grid.stage(NYMPHS_QUESTING_INFECTED)[i] -= desiccatedInfectedNymphs;
+    }
+
+    private void freezing(int i, Randomness random) {
+        var cohorts = DenseEngine.FREEZING_COHORTS;
+
+        for (int c = 0; c < cohorts.length; ++c) {
+            frozen[c] = random.transition(grid.stage(cohorts[c])[i], (float) grid.stage(cohorts[c])[i] * freezingRate[c]);
+        }
+        for (int c = 0; c < cohorts.length; ++c) {
+            grid.stage(cohorts[c])[i] -= frozen[c];
+        }
+    }
+
+    public void hostLifeCycle(int timeStep) {
+        for (int cell = 0; cell < grid.cells; ++cell) {
+            for (int lane = 0, i = grid.lane(cell, 0); lane < lanes; ++lane, ++i) {
+                var random = randomness[lane];
+                random.seek(timeStep, cell, Randomness.Process.HOST_LIFE_CYCLE);
+
+                var replacedInfectedRodents = random.transition(grid.rodentsInfected[i], (float) grid.rodentsInfected[i] * parameters.value(ParameterSet.Value.REPLACEMENT_RATE_RODENTS));
+
+                grid.rodentsSusceptible[i] += replacedInfectedRodents;
+                grid.rodentsInfected[i] -= replacedInfectedRodents;
+            }
+        }
+    }
+
+    public void observe(int timeStep) {
+        for (int lane = 0; lane < lanes; ++lane) {
+            var observer = observers[lane];
+            var view = views[lane];
+
+            for (int cell = 0; cell < grid.cells; ++cell) {
+                view.cell = cell;
+                observer.observe(timeStep, view);
+            }
+            observer.endTimeStep(timeStep);
+        }
+    }
+
+    private static int remove(int[] stage, int i, float rate, Randomness random) {
+        var old = stage[i];
+        var removed = random.transition(old, old * rate);
+        stage[i] = old - removed;
+
+        return removed;
+    }
+}
@@ -0,0 +1,114 @@
+package eu.ecoepi.iris.dense;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.observers.CellView;
+
+/*
+Presents one cell of a MeanFieldEngine to the observers. The same instance is moved from cell to cell.
+The integer getters round the expected values to the nearest count.
+ */
+class MeanFieldCellView implements CellView {
+
+    final MeanFieldEngine engine;
+    int cell;
+
+    MeanFieldCellView(MeanFieldEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public int getX() {
+        return cell / engine.height;
+    }
+
+    @Override
+    public int getY() {
+        return cell % engine.height;
+    }
+
+    @Override
+    public Habitat.Type getHabitat() {
+        return DenseGrid.HABITATS[engine.habitat[cell]];
+    }
+
+    @Override
+    public int getStage(CohortStateTicks stage) {
+        return (int) Math.round(getStageValue(stage));
+    }
+
+    @Override
+    public int getFeedingEvents(CohortStateTicks stage) {
+        return (int) Math.round(getFeedingEventsValue(stage));
+    }
+
+    @Override
+    public int getFeedingEventsNewInfectedLarvae() {
+        return (int) Math.round(getFeedingEventsNewInfectedLarvaeValue());
+    }
+
+    @Override
+    public int getFeedingEventsNewInfectedNymphs() {
+        return (int) Math.round(getFeedingEventsNewInfectedNymphsValue());
+    }
+
+    @Override
+    public int getRodentsSusceptible() {
+        return (int) Math.round(getRodentsSusceptibleValue());
+    }
+
+    @Override
+    public int getRodentsInfected() {
+        return (int) Math.round(getRodentsInfectedValue());
+    }
+
+    @Override
+    public double getStageValue(CohortStateTicks stage) {
+        return engine.abundance[stage.ordinal()][cell];
+    }
+
+    @Override
+    public double getFeedingEventsValue(CohortStateTicks stage) {
+        return engine.feedingEvents[stage.ordinal()][cell];
+    }
+
+    @Override
+    public double getFeedingEventsNewInfectedLarvaeValue() {
+        return engine.feedingEventsNewInfectedLarvae[cell];
+    }
+
+    @Override
+    public double getFeedingEventsNewInfectedNymphsValue() {
+        return engine.feedingEventsNewInfectedNymphs[cell];
+    }
+
+    @Override
+    public double getRodentsSusceptibleValue() {
+        return engine.rodentsSusceptible[cell];
+    }
+
+    @Override
+    public double getRodentsInfectedValue() {
+        return engine.rodentsInfected[cell];
+    }
+
+    @Override
+    public double getMeanTemperature() {
+        return engine.meanTemperature[cell];
+    }
+
+    @Override
+    public double getMinTemperature() {
+        return engine.minTemperature[cell];
+    }
+
+    @Override
+    public double getMaxTemperature() {
+        return engine.maxTemperature[cell];
+    }
+
+    @Override
+    public double getRelativeHumidity() {
+        return engine.humidity[cell];
+    }
+}
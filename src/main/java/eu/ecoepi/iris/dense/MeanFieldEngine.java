@@ -0,0 +1,396 @@
+package eu.ecoepi.iris.dense;
+
+import com.opencsv.exceptions.CsvException;
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.components.TickAbundance;
+import eu.ecoepi.iris.observers.CellObserver;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.HabitatMap;
+import eu.ecoepi.iris.resources.ParameterSet;
+import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static eu.ecoepi.iris.CohortStateTicks.*;
+
+/*
+Deterministic expected-value (mean-field) version of the model.
+
+Abundances are real numbers and every transition moves exactly its expected number of ticks or
+hosts, i.e. count times rate instead of a random draw. Engorged ticks are not dropped off at a
+single random neighbour but spread over all neighbours according to the dispersal distribution
+of Feeding. Apart from that the processes are the same as in the Weather, Activity, Feeding,
+TickLifeCycle and HostLifeCycle systems and run in the same order, so a single run gives the
+expected trajectory without any replicates.
+
+Cells are laid out as in DenseGrid.
+ */
+public class MeanFieldEngine {
+
+    final int width;
+    final int height;
+    final int cells;
+
+    final double[][] abundance;
+    final double[][] feedingEvents;
+    final double[] feedingEventsNewInfectedLarvae;
+    final double[] feedingEventsNewInfectedNymphs;
+
+    final double[] rodentsSusceptible;
+    final double[] rodentsInfected;
+
+    final byte[] habitat;
+
+    final float[] meanTemperature;
+    final float[] minTemperature;
+    final float[] maxTemperature;
+    final float[] humidity;
+
+    final WeatherData weather;
+    final ParameterSet parameters;
+    final Environment environment = new Environment();
+    final int days;
+    final float activationRate;
+
+    /*
+    Probability of a displacement of d cells along one axis is dispersal[d + MAX_DISTANCE].
+     */
+    final double[] dispersal;
+
+    /*
+    Scratch arrays for the ticks leaving each cell to feed, the infected ones among them, the share
+    of infected rodents and the partially dispersed deposits. They are overwritten every day.
+     */
+    final double[] leaving;
+    final double[] feedingInfected;
+    final double[] rodentPrevalence;
+    final double[] dispersedAlongY;
+
+    final CellObserver observer;
+    final MeanFieldCellView view;
+
+    static final int MAX_DISTANCE = Parameters.DISTANCE_PROB.length;
+
+    public MeanFieldEngine(Model.Options options, CellObserver observer) throws IOException, CsvException {
+        this(options, Model.createWeather(options), Model.createHabitat(options), observer);
+    }
+
+    public MeanFieldEngine(Model.Options options, WeatherData weather, int width, int height, CellObserver observer) {
+        this(options, weather, HabitatMap.stripes(width, height), observer);
+    }
+
+    public MeanFieldEngine(Model.Options options, WeatherData weather, HabitatMap habitatMap, CellObserver observer) {
+        this.width = habitatMap.getWidth();
+        this.height = habitatMap.getHeight();
+        this.cells = width * height;
+
+        abundance = new double[TickAbundance.COHORTS][cells];
+        feedingEvents = new double[TickAbundance.COHORTS][cells];
+        feedingEventsNewInfectedLarvae = new double[cells];
+        feedingEventsNewInfectedNymphs = new double[cells];
+
+        rodentsSusceptible = new double[cells];
+        rodentsInfected = new double[cells];
+
+        habitat = new byte[cells];
+
+        meanTemperature = new float[cells];
+        minTemperature = new float[cells];
+        maxTemperature = new float[cells];
+        humidity = new float[cells];
+
+        leaving = new double[cells];
+        feedingInfected = new double[cells];
+        rodentPrevalence = new double[cells];
+        dispersedAlongY = new double[cells];
+
+        this.weather = weather;
+        this.parameters = options.parameters;
+        this.days = Model.days(options, weather);
+        this.activationRate = options.activationRate;
+        this.observer = observer;
+        this.view = new MeanFieldCellView(this);
+
+        var total = 0.0;
+        for (var probability : Parameters.DISTANCE_PROB) {
+            total += 2 * probability;
+        }
+        dispersal = new double[2 * MAX_DISTANCE + 1];
+        for (int i = 0; i < MAX_DISTANCE; ++i) {
+            dispersal[MAX_DISTANCE + i + 1] = Parameters.DISTANCE_PROB[i] / total;
+            dispersal[MAX_DISTANCE - i - 1] = Parameters.DISTANCE_PROB[i] / total;
+        }
+
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                var cell = x * height + y;
+
+                stage(LARVAE_INACTIVE)[cell] = options.initialInactiveLarvae;
+                stage(NYMPHS_INACTIVE)[cell] = options.initialInactiveNymphs;
+                stage(ADULTS_INACTIVE)[cell] = options.initialInactiveAdults;
+                stage(LARVAE_INACTIVE_INFECTED)[cell] = options.initialInfectedInactiveLarvae;
+                stage(NYMPHS_INACTIVE_INFECTED)[cell] = options.initialInfectedInactiveNymphs;
+
+                rodentsSusceptible[cell] = options.initialRodents;
+                rodentsInfected[cell] = options.initialInfectedRodents;
+                habitat[cell] = (byte) habitatMap.get(x, y).ordinal();
+            }
+        }
+    }
+
+    double[] stage(CohortStateTicks stage) {
+        return abundance[stage.ordinal()];
+    }
+
+    public double getStage(CohortStateTicks stage, int x, int y) {
+        return stage(stage)[x * height + y];
+    }
+
+    public void run() {
+        try {
+            for (int timeStep = 0; timeStep < days; ++timeStep) {
+                step(timeStep);
+            }
+        } finally {
+            observer.close();
+        }
+    }
+
+    public void step(int timeStep) {
+        environment.update(parameters, weather, timeStep);
+        DenseEngine.assignWeather(environment, habitat, meanTemperature, minTemperature, maxTemperature, humidity);
+        activity(timeStep);
+        feeding(timeStep);
+        tickLifeCycle(timeStep);
+        hostLifeCycle();
+        observe(timeStep);
+    }
+
+    void activity(int timeStep) {
+        var larvaeQuesting = stage(LARVAE_QUESTING);
+        var nymphsQuesting = stage(NYMPHS_QUESTING);
+        var adultsQuesting = stage(ADULTS_QUESTING);
+        var larvaeQuestingInfected = stage(LARVAE_QUESTING_INFECTED);
+        var nymphsQuestingInfected = stage(NYMPHS_QUESTING_INFECTED);
+        var larvaeInactive = stage(LARVAE_INACTIVE);
+        var nymphsInactive = stage(NYMPHS_INACTIVE);
+        var adultsInactive = stage(ADULTS_INACTIVE);
+        var larvaeInactiveInfected = stage(LARVAE_INACTIVE_INFECTED);
+        var nymphsInactiveInfected = stage(NYMPHS_INACTIVE_INFECTED);
+
+        var larvaeQuestingSeason = weather.getDayOfYear(timeStep) > parameters.day(ParameterSet.Day.START_LARVAE_QUESTING);
+
+        for (int cell = 0; cell < cells; ++cell) {
+            double share = environment.getShareOfActivationRate(habitat[cell]);
+            var activation = activationRate * share;
+            var inactivation = activationRate * (1 - share);
+
+            var newQuestingLarvae = larvaeQuestingSeason ? larvaeInactive[cell] * activation : 0.0;
+            var newInfectedQuestingLarvae = larvaeQuestingSeason ? larvaeInactiveInfected[cell] * activation : 0.0;
+            var newQuestingNymphs = nymphsInactive[cell] * activation;
+            var newQuestingAdults = adultsInactive[cell] * activation;
+            var newInactiveLarvae = larvaeQuesting[cell] * inactivation;
+            var newInactiveNymphs = nymphsQuesting[cell] * inactivation;
+            var newInactiveAdults = adultsQuesting[cell] * inactivation;
+
+            var newInfectedQuestingNymphs = nymphsInactiveInfected[cell] * activation;
+            var newInfectedInactiveLarvae = larvaeQuestingInfected[cell] * inactivation;
+            var newInfectedInactiveNymphs = nymphsQuestingInfected[cell] * inactivation;
+
+            larvaeQuesting[cell] += newQuestingLarvae - newInactiveLarvae;
+            nymphsQuesting[cell] += newQuestingNymphs - newInactiveNymphs;
+            adultsQuesting[cell] += newQuestingAdults - newInactiveAdults;
+            larvaeInactive[cell] += newInactiveLarvae - newQuestingLarvae;
+            nymphsInactive[cell] += newInactiveNymphs - newQuestingNymphs;
+            adultsInactive[cell] += newInactiveAdults - newQuestingAdults;
+
+            // As in Activity, infected larvae becoming inactive stay with the questing ones
+            larvaeQuestingInfected[cell] += newInfectedQuestingLarvae - newInfectedInactiveLarvae;
+            nymphsQuestingInfected[cell] += newInfectedQuestingNymphs - newInfectedInactiveNymphs;
+            larvaeQuestingInfected[cell] += newInfectedInactiveLarvae - newInfectedQuestingLarvae;
+            nymphsInactiveInfected[cell] += newInfectedInactiveNymphs - newInfectedQuestingNymphs;
+        }
+    }
+
+    void feeding(int timeStep) {
+        var lateFeeding = weather.getDayOfYear(timeStep) >= parameters.day(ParameterSet.Day.LATE_FEEDING_TIME);
+
+        for (int cell = 0; cell < cells; ++cell) {
+            var rodents = rodentsSusceptible[cell] + rodentsInfected[cell];
+            rodentPrevalence[cell] = rodents > 0 ? rodentsInfected[cell] / rodents : 0.0;
+        }
+
+        feed(LARVAE_QUESTING, LARVAE_QUESTING_INFECTED,
+                lateFeeding ? LARVAE_LATE_ENGORGED : LARVAE_ENGORGED,
+                lateFeeding ? LARVAE_LATE_ENGORGED_INFECTED : LARVAE_ENGORGED_INFECTED,
+                feedingEventsNewInfectedLarvae, false);
+
+        feed(NYMPHS_QUESTING, NYMPHS_QUESTING_INFECTED,
+                lateFeeding ? NYMPHS_LATE_ENGORGED : NYMPHS_ENGORGED,
+                lateFeeding ? NYMPHS_LATE_ENGORGED_INFECTED : NYMPHS_ENGORGED_INFECTED,
+                feedingEventsNewInfectedNymphs, true);
+
+        var adultsQuesting = stage(ADULTS_QUESTING);
+        var adultsFeedingRate = parameters.getFeedingRate(ADULTS_QUESTING);
+        for (int cell = 0; cell < cells; ++cell) {
+            var feedingAdults = adultsQuesting[cell] * adultsFeedingRate;
+            adultsQuesting[cell] -= feedingAdults;
+            feedingEvents[ADULTS_QUESTING.ordinal()][cell] += feedingAdults;
+            leaving[cell] = feedingAdults;
+        }
+        disperse(leaving, stage(ADULTS_ENGORGED));
+    }
+
+    /*
+    Feeding of the susceptible and infected questing ticks of one stage, including the infection of
+    ticks by infected rodents and, if infectRodents is set, of rodents by infected ticks.
+     */
+    private void feed(CohortStateTicks questing, CohortStateTicks questingInfected,
+                      CohortStateTicks engorged, CohortStateTicks engorgedInfected,
+                      double[] newInfectedEvents, boolean infectRodents) {
+        var susceptible = stage(questing);
+        var infected = stage(questingInfected);
+        var feedingRate = parameters.getFeedingRate(questing);
+        var infectedFeedingRate = parameters.getFeedingRate(questingInfected);
+
+        for (int cell = 0; cell < cells; ++cell) {
+            var feedingSusceptible = susceptible[cell] * feedingRate;
+            var feedingAlreadyInfected = infected[cell] * infectedFeedingRate;
+            susceptible[cell] -= feedingSusceptible;
+            infected[cell] -= feedingAlreadyInfected;
+
+            var newInfected = parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingSusceptible * rodentPrevalence[cell];
+
+            leaving[cell] = feedingSusceptible - newInfected;
+            feedingInfected[cell] = feedingAlreadyInfected + newInfected;
+
+            feedingEvents[questing.ordinal()][cell] += leaving[cell];
+            feedingEvents[questingInfected.ordinal()][cell] += feedingInfected[cell];
+            newInfectedEvents[cell] += newInfected;
+
+            if (infectRodents) {
+                var newInfectedRodents = parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingInfected[cell] * (1.0 - rodentPrevalence[cell]);
+                rodentsSusceptible[cell] -= newInfectedRodents;
+                rodentsInfected[cell] += newInfectedRodents;
+            }
+        }
+
+        disperse(leaving, stage(engorged));
+        disperse(feedingInfected, stage(engorgedInfected));
+    }
+
+    /*
+    Adds the expected deposits of ticks leaving each cell to the target cohort, where a tick is
+    displaced independently along both axes. The two axes are therefore handled one after the other.
+     */
+    private void disperse(double[] source, double[] target) {
+        Arrays.fill(dispersedAlongY, 0.0);
+
+        for (int x = 0; x < width; ++x) {
+            for (int y = 0; y < height; ++y) {
+                var amount = source[x * height + y];
+                if (amount == 0) {
+                    continue;
+                }
+                for (int d = -MAX_DISTANCE; d <= MAX_DISTANCE; ++d) {
+                    dispersedAlongY[x * height + Math.floorMod(y + d, height)] += amount * dispersal[d + MAX_DISTANCE];
+                }
+            }
+        }
+
+        for (int x = 0; x < width; ++x) {
+            for (int d = -MAX_DISTANCE; d <= MAX_DISTANCE; ++d) {
+                var probability = dispersal[d + MAX_DISTANCE];
+                if (probability == 0) {
+                    continue;
+                }
+                var from = x * height;
+                var to = Math.floorMod(x + d, width) * height;
+                for (int y = 0; y < height; ++y) {
+                    target[to + y] += dispersedAlongY[from + y] * probability;
+                }
+            }
+        }
+    }
+
+    void tickLifeCycle(int timeStep) {
+        var dayOfYear = weather.getDayOfYear(timeStep);
+
+        for (int cell = 0; cell < cells; ++cell) {
+            development(dayOfYear, cell);
+            desiccation(cell);
+            freezing(cell);
+        }
+    }
+
+    private void development(int dayOfYear, int cell) {
+        if (dayOfYear < parameters.day(ParameterSet.Day.BEGIN_OF_DEVELOPMENT)) {
+            return;
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS) - dayOfYear;
+            develop(LARVAE_ENGORGED, NYMPHS_INACTIVE, cell, remainingDays);
+            develop(LARVAE_ENGORGED_INFECTED, NYMPHS_INACTIVE_INFECTED, cell, remainingDays);
+        }
+
+        // As in TickLifeCycle, infected engorged nymphs develop into ordinary adults
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS) - dayOfYear;
+            develop(NYMPHS_ENGORGED, ADULTS_INACTIVE, cell, remainingDays);
+            develop(NYMPHS_ENGORGED_INFECTED, ADULTS_INACTIVE, cell, remainingDays);
+        }
+
+        if (dayOfYear < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE)) {
+            var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE) - dayOfYear;
+            develop(ADULTS_ENGORGED, LARVAE_INACTIVE, cell, remainingDays);
+        }
+    }
+
+    private void develop(CohortStateTicks from, CohortStateTicks to, int cell, int remainingDays) {
+        var developed = stage(from)[cell] / remainingDays;
+        stage(from)[cell] -= developed;
+        stage(to)[cell] += developed;
+    }
+
+    private void desiccation(int cell) {
+        if (!environment.isDesiccating(habitat[cell])) {
+            return;
+        }
+
+        var rate = parameters.getDesiccationRate(DenseGrid.HABITATS[habitat[cell]]);
+        for (var stage : DenseKernels.DESICCATING_COHORTS) {
+            stage(stage)[cell] -= stage(stage)[cell] * rate;
+        }
+    }
+
+    private void freezing(int cell) {
+        if (!environment.isFreezing(habitat[cell])) {
+            return;
+        }
+
+        for (var stage : DenseEngine.FREEZING_COHORTS) {
+            stage(stage)[cell] -= stage(stage)[cell] * parameters.getFreezingRate(stage);
+        }
+    }
+
+    void hostLifeCycle() {
+        for (int cell = 0; cell < cells; ++cell) {
+            var replacedInfectedRodents = rodentsInfected[cell] * parameters.value(ParameterSet.Value.REPLACEMENT_RATE_RODENTS);
+
+            rodentsSusceptible[cell] += replacedInfectedRodents;
+            rodentsInfected[cell] -= replacedInfectedRodents;
+        }
+    }
+
+    void observe(int timeStep) {
+        for (int cell = 0; cell < cells; ++cell) {
+            view.cell = cell;
+            observer.observe(timeStep, view);
+        }
+        observer.endTimeStep(timeStep);
+    }
+}
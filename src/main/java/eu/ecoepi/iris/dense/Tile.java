@@ -0,0 +1,110 @@
+package eu.ecoepi.iris.dense;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.TickAbundance;
+import eu.ecoepi.iris.resources.Parameters;
+
+import static eu.ecoepi.iris.CohortStateTicks.*;
+
+/*
+Rectangular part of the landscape owned by a single DenseEngine.
+
+The tile's own cells are those with global coordinates originX <= x < originX + width and
+originY <= y < originY + height. They are numbered column by column like the cells of a DenseGrid.
+
+Engorged ticks dropped off during feeding are not added to the cells directly but collected in
+deposit arrays covering the tile plus a halo of HALO cells on every side, which is as wide as the
+largest dispersal distance. Hence feeding never touches another tile. Afterwards the deposits are
+handed to the tiles owning the cells (see TiledEngine), which for deposits in the halo are the
+neighbouring tiles. The deposits are addressed by global coordinates only, so the tiles do not
+have to live in the same process.
+ */
+public class Tile {
+
+    public static final int HALO = Parameters.DISTANCE_PROB.length;
+
+    static final CohortStateTicks[] DEPOSITED_COHORTS = {
+            LARVAE_ENGORGED, LARVAE_ENGORGED_INFECTED,
+            LARVAE_LATE_ENGORGED, LARVAE_LATE_ENGORGED_INFECTED,
+            NYMPHS_ENGORGED, NYMPHS_ENGORGED_INFECTED,
+            NYMPHS_LATE_ENGORGED, NYMPHS_LATE_ENGORGED_INFECTED,
+            ADULTS_ENGORGED
+    };
+
+    final int originX;
+    final int originY;
+    final int width;
+    final int height;
+
+    final int globalWidth;
+    final int globalHeight;
+
+    final int paddedHeight;
+    final int paddedCells;
+
+    /*
+    Deposits per cohort, indexed by padded cell (x + HALO) * paddedHeight + (y + HALO)
+    for local coordinates -HALO <= x < width + HALO and -HALO <= y < height + HALO.
+    Only the arrays of DEPOSITED_COHORTS are allocated.
+     */
+    final int[][] deposits = new int[TickAbundance.COHORTS][];
+
+    public Tile(int originX, int originY, int width, int height, int globalWidth, int globalHeight) {
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        this.globalWidth = globalWidth;
+        this.globalHeight = globalHeight;
+
+        this.paddedHeight = height + 2 * HALO;
+        this.paddedCells = (width + 2 * HALO) * paddedHeight;
+
+        for (var stage : DEPOSITED_COHORTS) {
+            deposits[stage.ordinal()] = new int[paddedCells];
+        }
+    }
+
+    public int getOriginX() {
+        return originX;
+    }
+
+    public int getOriginY() {
+        return originY;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    int[] deposits(CohortStateTicks stage) {
+        return deposits[stage.ordinal()];
+    }
+
+    /*
+    Index of the global cell, i.e. of the cell in a DenseGrid of the whole landscape.
+     */
+    int globalCell(int cell) {
+        return (originX + cell / height) * globalHeight + originY + cell % height;
+    }
+
+    /*
+    Padded cell displaced by (dx, dy) from the given cell of the tile, where |dx|, |dy| <= HALO.
+     */
+    int paddedNeighbour(int cell, int dx, int dy) {
+        return (cell / height + HALO + dx) * paddedHeight + cell % height + HALO + dy;
+    }
+
+    /*
+    Global cell of the given padded cell, wrapping around the edges of the landscape.
+     */
+    int globalCellOfPadded(int padded) {
+        var x = Math.floorMod(originX + padded / paddedHeight - HALO, globalWidth);
+        var y = Math.floorMod(originY + padded % paddedHeight - HALO, globalHeight);
+        return x * globalHeight + y;
+    }
+}
@@ -0,0 +1,359 @@
+package eu.ecoepi.iris.dense;
+
+import com.opencsv.exceptions.CsvException;
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.observers.CellObserver;
+import eu.ecoepi.iris.observers.CellView;
+import eu.ecoepi.iris.resources.HabitatMap;
+import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/*
+Runs the model on a landscape split into rectangular tiles of at most tileSize x tileSize cells,
+each simulated by its own DenseEngine (see Tile).
+
+Every day the tiles first update their weather, activity and feeding independently of each other.
+Then the engorged ticks each tile has collected in its deposits, including its halo, are added to
+the tiles owning the cells. Finally the life cycles are processed, again tile by tile, and all cells
+are observed in the same order as in a DenseEngine of the whole landscape. The tiles are processed
+concurrently by the given number of threads.
+
+An engine can also own only the tiles in a range of tile columns, e.g. one part of a landscape
+distributed over several processes. Its cells are then a contiguous range of global cells, and the
+deposits for cells of other engines are handed out by takeOutgoingDeposits and received by deposit.
+
+Every cell draws from its own random streams, so with the counter-based generator the results are
+identical to those of a DenseEngine of the whole landscape, independent of tile size and threads.
+ */
+public class TiledEngine {
+
+    final int width;
+    final int height;
+    final int tileSize;
+    final int tilesY;
+
+    /*
+    The engine owns the tiles in the tile columns firstColumn up to endColumn (exclusive).
+     */
+    final int firstColumn;
+    final int endColumn;
+
+    final Tile[] tiles;
+    final DenseEngine[] engines;
+
+    /*
+    Deposits received by every tile from tiles of this engine: the i-th entry of tile t moves the
+    deposits of the padded cell incomingPadded[t][i] of tile incomingSource[t][i] to the cell
+    incomingCell[t][i] of tile t.
+     */
+    final int[][] incomingSource;
+    final int[][] incomingPadded;
+    final int[][] incomingCell;
+
+    /*
+    Deposits for cells of other engines: the padded cell outgoingPadded[i] of tile outgoingSource[i]
+    belongs to the global cell outgoingCell[i].
+     */
+    final int[] outgoingSource;
+    final int[] outgoingPadded;
+    final int[] outgoingCell;
+
+    final int days;
+
+    final CellObserver observer;
+    final ForkJoinPool pool;
+
+    public TiledEngine(Model.Options options, CellObserver observer) throws IOException, CsvException {
+        this(options, Model.createWeather(options), Model.createHabitat(options), options.tileSize, observer);
+    }
+
+    public TiledEngine(Model.Options options, WeatherData weather, int width, int height, int tileSize, CellObserver observer) {
+        this(options, weather, HabitatMap.stripes(width, height), tileSize, observer);
+    }
+
+    public TiledEngine(Model.Options options, WeatherData weather, HabitatMap habitat, int tileSize, CellObserver observer) {
+        this(options, weather, habitat, tileSize, observer, 0, tileColumns(habitat.getWidth(), tileSize));
+    }
+
+    public TiledEngine(Model.Options options, WeatherData weather, HabitatMap habitat, int tileSize, CellObserver observer,
+                       int firstColumn, int endColumn) {
+        this.width = habitat.getWidth();
+        this.height = habitat.getHeight();
+        this.tileSize = tileSize;
+        this.tilesY = (height + tileSize - 1) / tileSize;
+        this.firstColumn = firstColumn;
+        this.endColumn = endColumn;
+        this.observer = observer;
+        this.days = Model.days(options, weather);
+
+        requireCounterBasedGenerator(options, width, height, tileSize);
+
+        tiles = new Tile[(endColumn - firstColumn) * tilesY];
+        engines = new DenseEngine[tiles.length];
+
+        for (int tx = firstColumn; tx < endColumn; ++tx) {
+            for (int ty = 0; ty < tilesY; ++ty) {
+                var index = (tx - firstColumn) * tilesY + ty;
+                var originX = tx * tileSize;
+                var originY = ty * tileSize;
+
+                var tile = new Tile(originX, originY,
+                        Math.min(tileSize, width - originX), Math.min(tileSize, height - originY),
+                        width, height);
+                tiles[index] = tile;
+                engines[index] = new DenseEngine(options, weather, tile, habitat, observer);
+            }
+        }
+
+        var counts = new int[tiles.length];
+        var outgoing = 0;
+        for (var tile : tiles) {
+            for (int padded = 0; padded < tile.paddedCells; ++padded) {
+                var global = tile.globalCellOfPadded(padded);
+                if (owns(global)) {
+                    counts[localTile(global)]++;
+                } else {
+                    outgoing++;
+                }
+            }
+        }
+
+        incomingSource = new int[tiles.length][];
+        incomingPadded = new int[tiles.length][];
+        incomingCell = new int[tiles.length][];
+        for (int i = 0; i < tiles.length; ++i) {
+            incomingSource[i] = new int[counts[i]];
+            incomingPadded[i] = new int[counts[i]];
+            incomingCell[i] = new int[counts[i]];
+            counts[i] = 0;
+        }
+
+        outgoingSource = new int[outgoing];
+        outgoingPadded = new int[outgoing];
+        outgoingCell = new int[outgoing];
+        outgoing = 0;
+
+        for (int source = 0; source < tiles.length; ++source) {
+            var tile = tiles[source];
+            for (int padded = 0; padded < tile.paddedCells; ++padded) {
+                var global = tile.globalCellOfPadded(padded);
+
+                if (owns(global)) {
+                    var target = localTile(global);
+                    var entry = counts[target]++;
+
+                    incomingSource[target][entry] = source;
+                    incomingPadded[target][entry] = padded;
+                    incomingCell[target][entry] = cellInTile(global);
+                } else {
+                    outgoingSource[outgoing] = source;
+                    outgoingPadded[outgoing] = padded;
+                    outgoingCell[outgoing] = global;
+                    outgoing++;
+                }
+            }
+        }
+
+        pool = options.threads > 1 ? new ForkJoinPool(options.threads) : null;
+    }
+
+    public static int tileColumns(int width, int tileSize) {
+        return (width + tileSize - 1) / tileSize;
+    }
+
+    /*
+    The tiles draw from the streams of their cells independently, which is only possible with the
+    counter-based generator.
+     */
+    public static void requireCounterBasedGenerator(Model.Options options, int width, int height, int tileSize) {
+        var tiles = tileColumns(width, tileSize) * tileColumns(height, tileSize);
+        if (tiles > 1 && !options.generator.equals("philox")) {
+            throw new IllegalStateException("Multiple tiles require the counter-based generator 'philox'");
+        }
+    }
+
+    public int getTiles() {
+        return tiles.length;
+    }
+
+    /*
+    Global cells owned by this engine are firstCell() up to endCell() (exclusive).
+     */
+    public int firstCell() {
+        return Math.min(firstColumn * tileSize, width) * height;
+    }
+
+    public int endCell() {
+        return Math.min(endColumn * tileSize, width) * height;
+    }
+
+    boolean owns(int global) {
+        var column = global / height / tileSize;
+        return column >= firstColumn && column < endColumn;
+    }
+
+    private int localTile(int global) {
+        return (global / height / tileSize - firstColumn) * tilesY + global % height / tileSize;
+    }
+
+    private int cellInTile(int global) {
+        var tile = tiles[localTile(global)];
+        return (global / height - tile.originX) * tile.height + global % height - tile.originY;
+    }
+
+    /*
+    View of the given global cell owned by this engine. It is only valid until the next call.
+     */
+    public CellView view(int global) {
+        var view = engines[localTile(global)].view;
+        view.cell = cellInTile(global);
+        return view;
+    }
+
+    public void run() {
+        try {
+            for (int timeStep = 0; timeStep < days; ++timeStep) {
+                step(timeStep);
+            }
+        } finally {
+            close();
+            observer.close();
+        }
+    }
+
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    public void step(int timeStep) {
+        feedingPhase(timeStep);
+        collectDeposits();
+        lifeCyclePhase(timeStep);
+        observe(timeStep);
+    }
+
+    public void feedingPhase(int timeStep) {
+        forEachTile(tile -> {
+            var engine = engines[tile];
+            engine.weather(timeStep);
+            engine.activity(timeStep);
+            engine.feeding(timeStep);
+        });
+    }
+
+    public void collectDeposits() {
+        forEachTile(this::collectDeposits);
+    }
+
+    public void lifeCyclePhase(int timeStep) {
+        forEachTile(tile -> {
+            var engine = engines[tile];
+            engine.tickLifeCycle(timeStep);
+            engine.hostLifeCycle(timeStep);
+        });
+    }
+
+    /*
+    Adds the deposits of the tiles of this engine falling into the cells of the given tile to these cells.
+    Every padded cell belongs to exactly one tile, so the tiles can do this concurrently.
+     */
+    private void collectDeposits(int tile) {
+        var grid = engines[tile].grid;
+        var sources = incomingSource[tile];
+        var paddedCells = incomingPadded[tile];
+        var targetCells = incomingCell[tile];
+
+        for (var stage : Tile.DEPOSITED_COHORTS) {
+            var target = grid.stage(stage);
+
+            for (int i = 0; i < sources.length; ++i) {
+                var deposits = tiles[sources[i]].deposits(stage);
+                var number = deposits[paddedCells[i]];
+                if (number != 0) {
+                    target[targetCells[i]] += number;
+                    deposits[paddedCells[i]] = 0;
+                }
+            }
+        }
+    }
+
+    /*
+    Removes the deposits for cells of other engines and returns them as consecutive triples of
+    global cell, CohortStateTicks.ordinal() and number of ticks.
+     */
+    public int[] takeOutgoingDeposits() {
+        var result = new int[3 * 64];
+        var size = 0;
+
+        for (var stage : Tile.DEPOSITED_COHORTS) {
+            for (int i = 0; i < outgoingSource.length; ++i) {
+                var deposits = tiles[outgoingSource[i]].deposits(stage);
+                var number = deposits[outgoingPadded[i]];
+                if (number == 0) {
+                    continue;
+                }
+                deposits[outgoingPadded[i]] = 0;
+
+                if (size + 3 > result.length) {
+                    result = Arrays.copyOf(result, 2 * result.length);
+                }
+                result[size++] = outgoingCell[i];
+                result[size++] = stage.ordinal();
+                result[size++] = number;
+            }
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+
+    /*
+    Adds engorged ticks dropped off by another engine to a cell of this engine.
+     */
+    public void deposit(int global, CohortStateTicks stage, int number) {
+        engines[localTile(global)].grid.stage(stage)[cellInTile(global)] += number;
+    }
+
+    private void observe(int timeStep) {
+        for (int cell = firstCell(), end = endCell(); cell < end; ++cell) {
+            observer.observe(timeStep, view(cell));
+        }
+        observer.endTimeStep(timeStep);
+    }
+
+    private void forEachTile(IntConsumer action) {
+        if (pool == null) {
+            for (int tile = 0; tile < tiles.length; ++tile) {
+                action.accept(tile);
+            }
+            return;
+        }
+
+        var tasks = new ArrayList<Callable<Void>>(tiles.length);
+        for (int tile = 0; tile < tiles.length; ++tile) {
+            var index = tile;
+            tasks.add(() -> {
+                action.accept(index);
+                return null;
+            });
+        }
+
+        for (var future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Processing of tiles failed", e);
+            }
+        }
+    }
+}
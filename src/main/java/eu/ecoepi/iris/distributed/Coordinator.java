@@ -0,0 +1,215 @@
+package eu.ecoepi.iris.distributed;
+
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.dense.TiledEngine;
+import eu.ecoepi.iris.observers.Aggregate;
+import eu.ecoepi.iris.observers.AggregateObserver;
+import eu.ecoepi.iris.observers.CellObserver;
+import eu.ecoepi.iris.observers.ObserverGroup;
+import eu.ecoepi.iris.resources.HabitatMap;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+Runs the model on a landscape distributed over several Worker processes, which connect via TCP.
+
+The tile columns of the landscape (see TiledEngine) are split into one contiguous range per worker.
+Every day the coordinator collects the engorged ticks each worker has dropped off in cells of other
+workers and forwards them. If the observer only needs the sums over all cells (an AggregateObserver or
+an ObserverGroup of them), every worker sends the sums over its cells, which the coordinator merges,
+so the traffic and the work of the coordinator per day do not depend on the size of the landscape.
+Otherwise, e.g. for csv_timeseries, it receives the state of all cells, about 250 bytes per cell and
+day, and presents them to the observer in the same order as a single engine. With the counter-based
+generator, which is required for more than one tile, the results are identical to those of "dense"
+and "dense_tiled".
+
+With port 0, the workers are started as local processes connecting via loopback. Otherwise the
+coordinator listens on the given port until the given number of workers has connected.
+ */
+public class Coordinator {
+
+    static final int LOCAL_ACCEPT_TIMEOUT = 60_000;
+
+    final Model.Options options;
+    final WeatherData weather;
+    final HabitatMap habitat;
+    final int width;
+    final int height;
+    final CellObserver observer;
+
+    public Coordinator(Model.Options options, WeatherData weather, int width, int height, CellObserver observer) {
+        this(options, weather, HabitatMap.stripes(width, height), observer);
+    }
+
+    public Coordinator(Model.Options options, WeatherData weather, HabitatMap habitat, CellObserver observer) {
+        this.options = options;
+        this.weather = weather;
+        this.habitat = habitat;
+        this.width = habitat.getWidth();
+        this.height = habitat.getHeight();
+        this.observer = observer;
+    }
+
+    public static void run(Model.Options options, CellObserver observer) throws Exception {
+        new Coordinator(options, Model.createWeather(options), Model.createHabitat(options), observer).run();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        if (options.years != null) {
+            throw new IllegalStateException("Continuous runs over several years are not supported by the engine 'distributed'");
+        }
+
+        TiledEngine.requireCounterBasedGenerator(options, width, height, options.tileSize);
+        if (options.workers > 1 && !options.generator.equals("philox")) {
+            throw new IllegalStateException("Multiple workers require the counter-based generator 'philox'");
+        }
+
+        var local = options.port == 0;
+        var processes = new ArrayList<Process>();
+        var sockets = new ArrayList<Socket>();
+
+        try (var server = local
+                ? new ServerSocket(0, options.workers, InetAddress.getLoopbackAddress())
+                : new ServerSocket(options.port, options.workers)) {
+            if (local) {
+                server.setSoTimeout(LOCAL_ACCEPT_TIMEOUT);
+                processes.addAll(launchLocalWorkers(options.workers, server.getLocalPort()));
+            }
+
+            for (int i = 0; i < options.workers; ++i) {
+                var socket = server.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+            }
+
+            simulate(sockets);
+        } finally {
+            for (var socket : sockets) {
+                socket.close();
+            }
+            for (var process : processes) {
+                process.waitFor();
+            }
+            observer.close();
+        }
+    }
+
+    private void simulate(List<Socket> sockets) throws IOException {
+        var workers = sockets.size();
+        var days = Model.days(options, weather);
+        var columns = TiledEngine.tileColumns(width, options.tileSize);
+
+        var in = new DataInputStream[workers];
+        var out = new DataOutputStream[workers];
+        var aggregateObserver = observer instanceof AggregateObserver ? (AggregateObserver) observer : null;
+        var group = observer instanceof ObserverGroup && !((ObserverGroup) observer).observesCells() ? (ObserverGroup) observer : null;
+        var byHabitat = aggregateObserver != null ? aggregateObserver.byHabitat() : group != null && group.byHabitat();
+        var aggregate = aggregateObserver != null || group != null ? new Aggregate(byHabitat) : null;
+
+        var firstCell = new int[workers];
+        var endCell = new int[workers];
+        var workerOfColumn = new int[columns];
+
+        for (int worker = 0; worker < workers; ++worker) {
+            in[worker] = new DataInputStream(new BufferedInputStream(sockets.get(worker).getInputStream(), 1 << 16));
+            out[worker] = new DataOutputStream(new BufferedOutputStream(sockets.get(worker).getOutputStream(), 1 << 16));
+
+            var firstColumn = (int) ((long) columns * worker / workers);
+            var endColumn = (int) ((long) columns * (worker + 1) / workers);
+            for (int column = firstColumn; column < endColumn; ++column) {
+                workerOfColumn[column] = worker;
+            }
+            firstCell[worker] = Math.min(firstColumn * options.tileSize, width) * height;
+            endCell[worker] = Math.min(endColumn * options.tileSize, width) * height;
+
+            Protocol.writeSetup(out[worker], new Protocol.Setup(options, weather, habitat, firstColumn, endColumn,
+                    aggregate != null, byHabitat));
+            out[worker].flush();
+        }
+
+        var view = new RemoteCellView(height);
+        var received = new int[workers][];
+        var forwarded = new int[workers][3 * 64];
+        var forwardedLength = new int[workers];
+
+        for (int timeStep = 0; timeStep < days; ++timeStep) {
+            for (var stream : out) {
+                stream.writeInt(timeStep);
+                stream.flush();
+            }
+
+            for (int worker = 0; worker < workers; ++worker) {
+                received[worker] = Protocol.readDeposits(in[worker]);
+                forwardedLength[worker] = 0;
+            }
+            for (var deposits : received) {
+                for (int i = 0; i < deposits.length; i += 3) {
+                    var target = workerOfColumn[deposits[i] / height / options.tileSize];
+                    if (forwardedLength[target] + 3 > forwarded[target].length) {
+                        forwarded[target] = Arrays.copyOf(forwarded[target], 2 * forwarded[target].length);
+                    }
+                    System.arraycopy(deposits, i, forwarded[target], forwardedLength[target], 3);
+                    forwardedLength[target] += 3;
+                }
+            }
+            for (int worker = 0; worker < workers; ++worker) {
+                Protocol.writeDeposits(out[worker], forwarded[worker], forwardedLength[worker]);
+                out[worker].flush();
+            }
+
+            if (aggregate != null) {
+                for (var stream : in) {
+                    aggregate.merge(stream);
+                }
+                if (aggregateObserver != null) {
+                    aggregateObserver.write(timeStep, aggregate);
+                } else {
+                    group.write(timeStep, aggregate);
+                }
+                aggregate.clear();
+            } else {
+                for (int worker = 0; worker < workers; ++worker) {
+                    for (int cell = firstCell[worker]; cell < endCell[worker]; ++cell) {
+                        view.read(in[worker], cell);
+                        observer.observe(timeStep, view);
+                    }
+                }
+                observer.endTimeStep(timeStep);
+            }
+        }
+
+        for (var stream : out) {
+            stream.writeInt(Protocol.FINISH);
+            stream.flush();
+        }
+    }
+
+    /*
+    Starts the workers as processes of the same Java installation with the same class path.
+     */
+    static List<Process> launchLocalWorkers(int workers, int port) throws IOException {
+        var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        var classPath = System.getProperty("java.class.path");
+        var host = InetAddress.getLoopbackAddress().getHostAddress();
+
+        var processes = new ArrayList<Process>();
+        for (int i = 0; i < workers; ++i) {
+            processes.add(new ProcessBuilder(java, "-cp", classPath, Worker.class.getName(), host, Integer.toString(port))
+                    .inheritIO()
+                    .start());
+        }
+        return processes;
+    }
+}
@@ -0,0 +1,177 @@
+package eu.ecoepi.iris.distributed;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.observers.CellView;
+import eu.ecoepi.iris.resources.HabitatMap;
+import eu.ecoepi.iris.resources.ParameterSet;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/*
+Messages exchanged between the Coordinator and its Workers, written with DataOutputStream.
+
+After connecting, a worker receives its Setup. Then, for every day, the coordinator sends the day,
+the worker replies with the deposits for cells of other workers, the coordinator forwards the
+deposits for the worker's cells and the worker replies with the sums over its cells (see
+Aggregate.write) if the setup asks for aggregates, otherwise with the state of all its cells in
+global order. Instead of a day, FINISH ends the simulation.
+ */
+final class Protocol {
+
+    static final int VERSION = 4;
+    static final int FINISH = -1;
+
+    static final CohortStateTicks[] STAGES = CohortStateTicks.values();
+
+    private Protocol() {
+    }
+
+    /*
+    Everything a worker needs to simulate its part of the landscape.
+     */
+    static class Setup {
+        final Model.Options options;
+        final WeatherData weather;
+        final HabitatMap habitat;
+        final int firstColumn;
+        final int endColumn;
+
+        /*
+        Whether the worker sends the sums over its cells instead of the cells, and whether these
+        sums are also needed per habitat.
+         */
+        final boolean aggregate;
+        final boolean byHabitat;
+
+        Setup(Model.Options options, WeatherData weather, HabitatMap habitat, int firstColumn, int endColumn,
+              boolean aggregate, boolean byHabitat) {
+            this.options = options;
+            this.weather = weather;
+            this.habitat = habitat;
+            this.firstColumn = firstColumn;
+            this.endColumn = endColumn;
+            this.aggregate = aggregate;
+            this.byHabitat = byHabitat;
+        }
+    }
+
+    static void writeSetup(DataOutputStream out, Setup setup) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(setup.firstColumn);
+        out.writeInt(setup.endColumn);
+        out.writeBoolean(setup.aggregate);
+        out.writeBoolean(setup.byHabitat);
+
+        var options = setup.options;
+        out.writeLong(options.seed);
+        out.writeInt(options.initialInactiveLarvae);
+        out.writeInt(options.initialInactiveNymphs);
+        out.writeInt(options.initialInactiveAdults);
+        out.writeInt(options.initialInfectedInactiveLarvae);
+        out.writeInt(options.initialInfectedInactiveNymphs);
+        out.writeInt(options.initialRodents);
+        out.writeInt(options.initialInfectedRodents);
+        out.writeFloat(options.activationRate);
+        out.writeUTF(options.transitions);
+        out.writeUTF(options.generator);
+        out.writeInt(options.threads);
+        out.writeInt(options.tileSize);
+        options.parameters.write(out);
+
+        var weather = setup.weather;
+        out.writeInt(weather.getDays());
+        for (int day = 0; day < weather.getDays(); ++day) {
+            out.writeFloat(weather.getMeanTemperature(day));
+            out.writeFloat(weather.getMinTemperature(day));
+            out.writeFloat(weather.getMaxTemperature(day));
+            out.writeFloat(weather.getHumidity(day));
+        }
+
+        setup.habitat.write(out);
+    }
+
+    static Setup readSetup(DataInputStream in) throws IOException {
+        var version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version + ", expected " + VERSION);
+        }
+
+        var firstColumn = in.readInt();
+        var endColumn = in.readInt();
+        var aggregate = in.readBoolean();
+        var byHabitat = in.readBoolean();
+
+        var options = new Model.Options();
+        options.seed = in.readLong();
+        options.initialInactiveLarvae = in.readInt();
+        options.initialInactiveNymphs = in.readInt();
+        options.initialInactiveAdults = in.readInt();
+        options.initialInfectedInactiveLarvae = in.readInt();
+        options.initialInfectedInactiveNymphs = in.readInt();
+        options.initialRodents = in.readInt();
+        options.initialInfectedRodents = in.readInt();
+        options.activationRate = in.readFloat();
+        options.transitions = in.readUTF();
+        options.generator = in.readUTF();
+        options.threads = in.readInt();
+        options.tileSize = in.readInt();
+        options.parameters = ParameterSet.read(in);
+
+        var days = in.readInt();
+        var meanTemperature = new float[days];
+        var minTemperature = new float[days];
+        var maxTemperature = new float[days];
+        var humidity = new float[days];
+        for (int day = 0; day < days; ++day) {
+            meanTemperature[day] = in.readFloat();
+            minTemperature[day] = in.readFloat();
+            maxTemperature[day] = in.readFloat();
+            humidity[day] = in.readFloat();
+        }
+
+        var weather = new WeatherData(meanTemperature, minTemperature, maxTemperature, humidity);
+        var habitat = HabitatMap.read(in);
+        return new Setup(options, weather, habitat, firstColumn, endColumn, aggregate, byHabitat);
+    }
+
+    /*
+    Deposits as consecutive triples of global cell, CohortStateTicks.ordinal() and number of ticks,
+    see TiledEngine.takeOutgoingDeposits.
+     */
+    static void writeDeposits(DataOutputStream out, int[] deposits, int length) throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; ++i) {
+            out.writeInt(deposits[i]);
+        }
+    }
+
+    static int[] readDeposits(DataInputStream in) throws IOException {
+        var deposits = new int[in.readInt()];
+        for (int i = 0; i < deposits.length; ++i) {
+            deposits[i] = in.readInt();
+        }
+        return deposits;
+    }
+
+    static void writeCell(DataOutputStream out, CellView cell) throws IOException {
+        out.writeByte(cell.getHabitat().ordinal());
+        for (var stage : STAGES) {
+            out.writeInt(cell.getStage(stage));
+        }
+        for (var stage : STAGES) {
+            out.writeInt(cell.getFeedingEvents(stage));
+        }
+        out.writeInt(cell.getFeedingEventsNewInfectedLarvae());
+        out.writeInt(cell.getFeedingEventsNewInfectedNymphs());
+        out.writeInt(cell.getRodentsSusceptible());
+        out.writeInt(cell.getRodentsInfected());
+        out.writeFloat((float) cell.getMeanTemperature());
+        out.writeFloat((float) cell.getMinTemperature());
+        out.writeFloat((float) cell.getMaxTemperature());
+        out.writeFloat((float) cell.getRelativeHumidity());
+    }
+}
@@ -0,0 +1,125 @@
+package eu.ecoepi.iris.distributed;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.components.TickAbundance;
+import eu.ecoepi.iris.observers.CellView;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/*
+Presents a cell received from a Worker to the observers. The same instance is reused for every cell.
+ */
+class RemoteCellView implements CellView {
+
+    static final Habitat.Type[] HABITATS = Habitat.Type.values();
+
+    final int height;
+
+    int x;
+    int y;
+    Habitat.Type habitat;
+    final int[] stages = new int[TickAbundance.COHORTS];
+    final int[] feedingEvents = new int[TickAbundance.COHORTS];
+    int feedingEventsNewInfectedLarvae;
+    int feedingEventsNewInfectedNymphs;
+    int rodentsSusceptible;
+    int rodentsInfected;
+    float meanTemperature;
+    float minTemperature;
+    float maxTemperature;
+    float humidity;
+
+    RemoteCellView(int height) {
+        this.height = height;
+    }
+
+    /*
+    Reads the cell written by Protocol.writeCell for the given global cell.
+     */
+    void read(DataInputStream in, int cell) throws IOException {
+        x = cell / height;
+        y = cell % height;
+        habitat = HABITATS[in.readByte()];
+        for (int i = 0; i < stages.length; ++i) {
+            stages[i] = in.readInt();
+        }
+        for (int i = 0; i < feedingEvents.length; ++i) {
+            feedingEvents[i] = in.readInt();
+        }
+        feedingEventsNewInfectedLarvae = in.readInt();
+        feedingEventsNewInfectedNymphs = in.readInt();
+        rodentsSusceptible = in.readInt();
+        rodentsInfected = in.readInt();
+        meanTemperature = in.readFloat();
+        minTemperature = in.readFloat();
+        maxTemperature = in.readFloat();
+        humidity = in.readFloat();
+    }
+
+    @Override
+    public int getX() {
+        return x;
+    }
+
+    @Override
+    public int getY() {
+        return y;
+    }
+
+    @Override
+    public Habitat.Type getHabitat() {
+        return habitat;
+    }
+
+    @Override
+    public int getStage(CohortStateTicks stage) {
+        return stages[stage.ordinal()];
+    }
+
+    @Override
+    public int getFeedingEvents(CohortStateTicks stage) {
+        return feedingEvents[stage.ordinal()];
+    }
+
+    @Override
+    public int getFeedingEventsNewInfectedLarvae() {
+        return feedingEventsNewInfectedLarvae;
+    }
+
+    @Override
+    public int getFeedingEventsNewInfectedNymphs() {
+        return feedingEventsNewInfectedNymphs;
+    }
+
+    @Override
+    public int getRodentsSusceptible() {
+        return rodentsSusceptible;
+    }
+
+    @Override
+    public int getRodentsInfected() {
+        return rodentsInfected;
+    }
+
+    @Override
+    public double getMeanTemperature() {
+        return meanTemperature;
+    }
+
+    @Override
+    public double getMinTemperature() {
+        return minTemperature;
+    }
+
+    @Override
+    public double getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    @Override
+    public double getRelativeHumidity() {
+        return humidity;
+    }
+}
@@ -0,0 +1,82 @@
+package eu.ecoepi.iris.distributed;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.dense.TiledEngine;
+import eu.ecoepi.iris.observers.Aggregate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/*
+Simulates the tiles in a range of tile columns of a landscape on behalf of a Coordinator.
+
+Usage: Worker <coordinator host> <coordinator port>
+ */
+public class Worker {
+
+    static final CohortStateTicks[] STAGES = CohortStateTicks.values();
+
+    final DataInputStream in;
+    final DataOutputStream out;
+
+    public Worker(Socket socket) throws IOException {
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: Worker <coordinator host> <coordinator port>");
+            System.exit(1);
+        }
+
+        try (var socket = new Socket(args[0], Integer.parseInt(args[1]))) {
+            new Worker(socket).run();
+        }
+    }
+
+    public void run() throws IOException {
+        var setup = Protocol.readSetup(in);
+        var engine = new TiledEngine(setup.options, setup.weather, setup.habitat, setup.options.tileSize, null,
+                setup.firstColumn, setup.endColumn);
+        var partial = setup.aggregate ? new Aggregate(setup.byHabitat) : null;
+
+        try {
+            for (var day = in.readInt(); day != Protocol.FINISH; day = in.readInt()) {
+                engine.feedingPhase(day);
+
+                var outgoing = engine.takeOutgoingDeposits();
+                Protocol.writeDeposits(out, outgoing, outgoing.length);
+                out.flush();
+
+                var incoming = Protocol.readDeposits(in);
+                for (int i = 0; i < incoming.length; i += 3) {
+                    engine.deposit(incoming[i], STAGES[incoming[i + 1]], incoming[i + 2]);
+                }
+
+                engine.collectDeposits();
+                engine.lifeCyclePhase(day);
+
+                if (partial != null) {
+                    for (int cell = engine.firstCell(), end = engine.endCell(); cell < end; ++cell) {
+                        partial.add(engine.view(cell));
+                    }
+                    partial.write(out);
+                    partial.clear();
+                } else {
+                    for (int cell = engine.firstCell(), end = engine.endCell(); cell < end; ++cell) {
+                        Protocol.writeCell(out, engine.view(cell));
+                    }
+                }
+                out.flush();
+            }
+        } finally {
+            engine.close();
+        }
+    }
+}
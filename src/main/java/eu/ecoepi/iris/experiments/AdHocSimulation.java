@@ -3,6 +3,9 @@ package eu.ecoepi.iris.experiments;
 import org.apache.commons.cli.*;
 
 import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.resources.ParameterSet;
+
+import java.nio.file.Paths;
 import java.util.Locale;
 
 public class AdHocSimulation {
@@ -73,6 +76,81 @@ public class AdHocSimulation {
                 .longOpt("output_mode")
                 .build());
 
+        cmdOptions.addOption(Option.builder("f")
+                .hasArg()
+                .longOpt("output_format")
+                .build());
+
+        cmdOptions.addOption(Option.builder("b")
+                .hasArg()
+                .longOpt("output_buffers")
+                .build());
+
+        cmdOptions.addOption(Option.builder("e")
+                .hasArg()
+                .longOpt("engine")
+                .build());
+
+        cmdOptions.addOption(Option.builder("t")
+                .hasArg()
+                .longOpt("transitions")
+                .build());
+
+        cmdOptions.addOption(Option.builder("g")
+                .hasArg()
+                .longOpt("generator")
+                .build());
+
+        cmdOptions.addOption(Option.builder("p")
+                .hasArg()
+                .longOpt("threads")
+                .build());
+
+        cmdOptions.addOption(Option.builder("k")
+                .hasArg()
+                .longOpt("tile_size")
+                .build());
+
+        cmdOptions.addOption(Option.builder("d")
+                .hasArg()
+                .longOpt("workers")
+                .build());
+
+        cmdOptions.addOption(Option.builder("c")
+                .hasArg()
+                .longOpt("port")
+                .build());
+
+        cmdOptions.addOption(Option.builder("y")
+                .hasArg()
+                .longOpt("years")
+                .build());
+
+        cmdOptions.addOption(Option.builder("x")
+                .hasArg()
+                .longOpt("days")
+                .build());
+
+        cmdOptions.addOption(Option.builder("W")
+                .hasArg()
+                .longOpt("width")
+                .build());
+
+        cmdOptions.addOption(Option.builder("H")
+                .hasArg()
+                .longOpt("height")
+                .build());
+
+        cmdOptions.addOption(Option.builder("P")
+                .hasArg()
+                .longOpt("parameters")
+                .build());
+
+        cmdOptions.addOption(Option.builder("L")
+                .hasArg()
+                .longOpt("habitat")
+                .build());
+
         CommandLineParser parser = new DefaultParser();
         CommandLine cmd = parser.parse(cmdOptions, args);
 
@@ -94,6 +172,23 @@ public class AdHocSimulation {
         options.activationRate = Float.parseFloat(cmd.getOptionValue("r", "0.05"));
         
         options.outputMode = cmd.getOptionValue("m");
+        options.outputFormat = cmd.getOptionValue("f", "csv");
+        options.outputBuffers = Integer.parseInt(cmd.getOptionValue("b", "8"));
+        options.engine = cmd.getOptionValue("e", "artemis");
+        options.transitions = cmd.getOptionValue("t", "rounded");
+        options.generator = cmd.getOptionValue("g", "mersenne_twister");
+        options.threads = Integer.parseInt(cmd.getOptionValue("p", "1"));
+        options.tileSize = Integer.parseInt(cmd.getOptionValue("k", "256"));
+        options.workers = Integer.parseInt(cmd.getOptionValue("d", "2"));
+        options.port = Integer.parseInt(cmd.getOptionValue("c", "0"));
+        options.years = cmd.getOptionValue("y");
+        options.days = Integer.parseInt(cmd.getOptionValue("x", "0"));
+        options.width = Integer.parseInt(cmd.getOptionValue("W", "12"));
+        options.height = Integer.parseInt(cmd.getOptionValue("H", "12"));
+        options.habitat = cmd.getOptionValue("L");
+        if (cmd.hasOption("P")) {
+            options.parameters = ParameterSet.read(Paths.get(cmd.getOptionValue("P")));
+        }
 
         Model.run(options);
     }
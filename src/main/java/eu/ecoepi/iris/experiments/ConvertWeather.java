@@ -0,0 +1,56 @@
+package eu.ecoepi.iris.experiments;
+
+import eu.ecoepi.iris.resources.WeatherArchive;
+import eu.ecoepi.iris.resources.WeatherData;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.stream.Collectors;
+
+/*
+Packs the weather CSV files below the given directories into a single WeatherArchive, e.g.
+
+    ConvertWeather input/weather.iwa input/weather input/climate
+
+The entries are named by the path of the file relative to the parent of its directory without the
+extension, e.g. weather/dwd_regensburg/weather_2009, so a run uses input/weather.iwa#weather/dwd_regensburg/weather_2009
+instead of input/weather/dwd_regensburg/weather_2009.csv.
+ */
+public class ConvertWeather {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ConvertWeather <archive> <directory>...");
+            System.exit(1);
+        }
+
+        var series = new LinkedHashMap<String, WeatherData>();
+
+        for (int i = 1; i < args.length; ++i) {
+            var directory = Paths.get(args[i]).toAbsolutePath().normalize();
+            var root = directory.getParent();
+
+            try (var files = Files.walk(directory)) {
+                for (var file : files.filter(path -> path.toString().endsWith(".csv")).sorted().collect(Collectors.toList())) {
+                    series.put(name(root.relativize(file)), WeatherData.read(file.toString()));
+                }
+            }
+        }
+
+        WeatherArchive.write(Paths.get(args[0]), series);
+
+        System.err.printf("Packed %d weather series into %s.\n", series.size(), args[0]);
+    }
+
+    static String name(Path relative) {
+        var name = new StringBuilder();
+        for (var part : relative) {
+            if (name.length() > 0) {
+                name.append('/');
+            }
+            name.append(part);
+        }
+        return name.substring(0, name.length() - ".csv".length());
+    }
+}
@@ -0,0 +1,100 @@
+package eu.ecoepi.iris.experiments;
+
+import com.artemis.annotations.All;
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.components.TickAbundance;
+import eu.ecoepi.iris.dense.DenseEngine;
+import eu.ecoepi.iris.observers.CellObserver;
+import eu.ecoepi.iris.observers.CellView;
+import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.WeatherData;
+
+/*
+Compares the per-cell and the block-wise (DenseKernels) execution of the dense engine on a large grid.
+
+Usage: KernelBenchmark [width] [height] [days]
+ */
+public class KernelBenchmark {
+    public static void main(String[] args) {
+        var width = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        var height = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        var days = args.length > 2 ? Integer.parseInt(args[2]) : Parameters.TIME_STEPS;
+
+        var weather = syntheticWeather();
+
+        for (int round = 0; round < 3; ++round) {
+            var scalar = measure(weather, width, height, days, false);
+            var vectorised = measure(weather, width, height, days, true);
+
+            System.out.printf("%d x %d cells, ms/day    cell-local processes    whole day\n", width, height);
+            System.out.printf("per cell              %20.1f %12.1f\n", scalar[0], scalar[1]);
+            System.out.printf("vectorised            %20.1f %12.1f\n", vectorised[0], vectorised[1]);
+            System.out.printf("speedup               %20.2f %12.2f\n\n", scalar[0] / vectorised[0], scalar[1] / vectorised[1]);
+        }
+    }
+
+    /*
+    Returns the time per day spent in activation, life cycle and host replacement, and the time per whole day.
+     */
+    static double[] measure(WeatherData weather, int width, int height, int days, boolean vectorised) {
+        var engine = new DenseEngine(new Model.Options(), weather, width, height, new DiscardingObserver(), vectorised);
+
+        var cellLocal = 0L;
+        var total = 0L;
+        for (int timeStep = 0; timeStep < days; ++timeStep) {
+            var start = System.nanoTime();
+            engine.weather(timeStep);
+
+            var beforeActivity = System.nanoTime();
+            engine.activity(timeStep);
+            var afterActivity = System.nanoTime();
+
+            engine.feeding(timeStep);
+
+            var beforeLifeCycle = System.nanoTime();
+            engine.tickLifeCycle(timeStep);
+            engine.hostLifeCycle(timeStep);
+            var afterLifeCycle = System.nanoTime();
+
+            engine.observe(timeStep);
+            var end = System.nanoTime();
+
+            cellLocal += (afterActivity - beforeActivity) + (afterLifeCycle - beforeLifeCycle);
+            total += end - start;
+        }
+
+        return new double[]{cellLocal / 1e6 / days, total / 1e6 / days};
+    }
+
+    /*
+    Seasonal temperature curve with a few frost days, so that all processes are exercised.
+     */
+    static WeatherData syntheticWeather() {
+        var days = Parameters.TIME_STEPS + 1;
+        var meanTemperature = new float[days];
+        var minTemperature = new float[days];
+        var maxTemperature = new float[days];
+        var humidity = new float[days];
+
+        for (int day = 0; day < days; ++day) {
+            var season = (float) Math.sin(2 * Math.PI * (day - 100) / 365.0);
+            meanTemperature[day] = 9f + 11f * season;
+            minTemperature[day] = meanTemperature[day] - 6f - (day % 17 == 0 ? 12f : 0f);
+            maxTemperature[day] = meanTemperature[day] + 6f;
+            humidity[day] = 75f - 20f * season;
+        }
+
+        return new WeatherData(meanTemperature, minTemperature, maxTemperature, humidity);
+    }
+
+    @All({TickAbundance.class})
+    static class DiscardingObserver extends CellObserver {
+        @Override
+        public void observe(int timeStep, CellView cell) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
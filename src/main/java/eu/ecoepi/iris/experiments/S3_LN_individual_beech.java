@@ -1,38 +1,26 @@
 package eu.ecoepi.iris.experiments;
 
-import eu.ecoepi.iris.Model;
 import eu.ecoepi.iris.resources.Parameters;
 
 public class S3_LN_individual_beech {
     public static void main(String[] args) throws Exception {
-        var large = new Large();
-
-        for (int year = 2009; year <= 2018; year++) {
-            var weather = String.format("./input/weather/dwd_regensburg/weather_%d.csv", year);
-            var abundanceReduction = Parameters.abundanceReductionDueToFructificationIndex(year);
-
-            for (int larvae = 0; larvae <= 1000; larvae += 20) {
-                for (int nymphs = 10; nymphs <= 1000; nymphs += 10) {
-                    for (int activationRate = 10; activationRate <= 30; activationRate += 1) {
-                        var options = new Model.Options();
-
-                        var name = String.format("%d_%d_%d_%d", year, larvae, nymphs, activationRate);
-
-                        options.weather = weather;
-                        options.output = String.format("./output/sensitivity_analysis_%s.csv", name);
-
-                        options.initialInactiveLarvae = (int) (abundanceReduction * larvae);
-                        options.initialInactiveNymphs = nymphs;
-                        options.initialInactiveAdults = 150;
-
-                        options.activationRate = activationRate / 1000.0f;
-
-                        large.addTask(name, options);
-                    }
-                }
-            }
-        }
-
-        large.waitForCompletion();
+        var sweep = new Sweep()
+                .range("year", 2009, 2018)
+                .range("larvae", 0, 1000, 20)
+                .range("nymphs", 10, 1000, 10)
+                .range("activationRate", 10, 30)
+                .derive("abundanceReduction", run -> Parameters.abundanceReductionDueToFructificationIndex(run.get("year")))
+                .output("./output/sensitivity_analysis_%s.csv")
+                .configure((run, options) -> {
+                    options.weather = String.format("./input/weather/dwd_regensburg/weather_%d.csv", run.get("year"));
+
+                    options.initialInactiveLarvae = (int) ((float) run.derived("abundanceReduction") * run.get("larvae"));
+                    options.initialInactiveNymphs = run.get("nymphs");
+                    options.initialInactiveAdults = 150;
+
+                    options.activationRate = run.get("activationRate") / 1000.0f;
+                });
+
+        new SweepEngine(21).run(sweep);
     }
-}
\ No newline at end of file
+}
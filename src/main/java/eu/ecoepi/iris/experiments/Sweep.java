@@ -0,0 +1,216 @@
+package eu.ecoepi.iris.experiments;
+
+import eu.ecoepi.iris.Model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.ToDoubleFunction;
+
+/*
+Declarative description of a parameter sweep: the runs are all combinations of the values of the
+integer dimensions, e.g. the years and the numbers of initial ticks, enumerated like nested loops
+in the order the dimensions were added, with the last dimension varying fastest.
+
+Derived values are computed from the dimensions of every run, e.g. the abundance reduction due to
+the fructification index of the year, and the configuration fills the model options of a run from
+both. The combinations are generated lazily while iterating, so even sweeps with millions of runs
+do not occupy any memory up front.
+
+A run is named by its dimension values joined by underscores and writes its results to the output
+pattern formatted with this name.
+ */
+public class Sweep implements Iterable<Sweep.Run> {
+
+    static class Dimension {
+        final String name;
+        final int from;
+        final int to;
+        final int step;
+
+        Dimension(String name, int from, int to, int step) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+            this.step = step;
+        }
+
+        int size() {
+            return (to - from) / step + 1;
+        }
+
+        int value(int index) {
+            return from + index * step;
+        }
+    }
+
+    static class Derived {
+        final String name;
+        final ToDoubleFunction<Run> function;
+
+        Derived(String name, ToDoubleFunction<Run> function) {
+            this.name = name;
+            this.function = function;
+        }
+    }
+
+    public class Run {
+        final int[] values;
+        final double[] derived;
+        int computed = 0;
+
+        Run(int[] values) {
+            this.values = values;
+            this.derived = new double[derivedValues.size()];
+
+            for (; computed < derived.length; ++computed) {
+                derived[computed] = derivedValues.get(computed).function.applyAsDouble(this);
+            }
+        }
+
+        /*
+        Value of the given dimension.
+         */
+        public int get(String name) {
+            for (int i = 0; i < dimensions.size(); ++i) {
+                if (dimensions.get(i).name.equals(name)) {
+                    return values[i];
+                }
+            }
+            throw new IllegalArgumentException("Unknown dimension: " + name);
+        }
+
+        /*
+        Value of the given derived value. Only the derived values added before the one
+        being computed are available, asking for a later one or the one itself is an error.
+         */
+        public double derived(String name) {
+            for (int i = 0; i < derivedValues.size(); ++i) {
+                if (derivedValues.get(i).name.equals(name)) {
+                    if (i >= computed) {
+                        throw new IllegalArgumentException("Derived value " + name + " is not computed yet, "
+                                + "it has to be added before the one using it");
+                    }
+                    return derived[i];
+                }
+            }
+            throw new IllegalArgumentException("Unknown derived value: " + name);
+        }
+
+        public String getName() {
+            var name = new StringBuilder();
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0) {
+                    name.append('_');
+                }
+                name.append(values[i]);
+            }
+            return name.toString();
+        }
+
+        /*
+        The output pattern formatted with the name of the run. A comma-separated list of patterns,
+        one per output mode, gives a list of outputs.
+         */
+        public String getOutput() {
+            var patterns = output.split(",");
+            var outputs = new String[patterns.length];
+            for (int i = 0; i < patterns.length; ++i) {
+                outputs[i] = String.format(patterns[i], getName());
+            }
+            return String.join(",", outputs);
+        }
+
+        public Model.Options options() {
+            var options = new Model.Options();
+            options.output = getOutput();
+            configuration.accept(this, options);
+            return options;
+        }
+    }
+
+    final List<Dimension> dimensions = new ArrayList<>();
+    final List<Derived> derivedValues = new ArrayList<>();
+
+    String output = "./output/%s.csv";
+    BiConsumer<Run, Model.Options> configuration = (run, options) -> {};
+
+    /*
+    Adds a dimension taking the values from, from + step, ... up to and including to.
+     */
+    public Sweep range(String name, int from, int to, int step) {
+        if (step <= 0 || to < from) {
+            throw new IllegalArgumentException("Empty range for dimension " + name + ": " + from + " to " + to + " by " + step);
+        }
+        dimensions.add(new Dimension(name, from, to, step));
+        return this;
+    }
+
+    public Sweep range(String name, int from, int to) {
+        return range(name, from, to, 1);
+    }
+
+    public Sweep derive(String name, ToDoubleFunction<Run> function) {
+        derivedValues.add(new Derived(name, function));
+        return this;
+    }
+
+    public Sweep output(String pattern) {
+        this.output = pattern;
+        return this;
+    }
+
+    public Sweep configure(BiConsumer<Run, Model.Options> configuration) {
+        this.configuration = configuration;
+        return this;
+    }
+
+    public long size() {
+        var size = 1L;
+        for (var dimension : dimensions) {
+            size *= dimension.size();
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<Run> iterator() {
+        return new Iterator<>() {
+            final int[] indices = new int[dimensions.size()];
+            boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                return !exhausted;
+            }
+
+            @Override
+            public Run next() {
+                if (exhausted) {
+                    throw new NoSuchElementException();
+                }
+
+                var values = new int[indices.length];
+                for (int i = 0; i < indices.length; ++i) {
+                    values[i] = dimensions.get(i).value(indices[i]);
+                }
+
+                advance();
+
+                return new Run(values);
+            }
+
+            private void advance() {
+                for (int i = indices.length - 1; i >= 0; --i) {
+                    if (++indices[i] < dimensions.get(i).size()) {
+                        return;
+                    }
+                    indices[i] = 0;
+                }
+                exhausted = true;
+            }
+        };
+    }
+}
@@ -0,0 +1,234 @@
+package eu.ecoepi.iris.experiments;
+
+import eu.ecoepi.iris.Model;
+import eu.ecoepi.iris.dense.LockstepEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Runs all runs of a Sweep on a fixed number of threads.
+
+The runs are taken lazily from the sweep and at most twice as many tasks as there are threads are
+submitted at any time, so the memory needed does not depend on the size of the sweep.
+
+With more than one lane, up to this many consecutive runs sharing the same weather input and landscape are
+combined into a single task and simulated in lockstep (see Model.runLockstep), which ignores the
+engine option of the runs. Otherwise every task is a single run of Model.run.
+
+Every run writes its output to a temporary file next to the final one, which is only renamed to the
+final name once the run completed. Runs whose final outputs all exist already are skipped, so an
+interrupted sweep can simply be started again and continues where it stopped. Failed runs are
+reported and leave no output behind, hence they are repeated when the sweep is started again.
+
+Instead of one line per run, the progress of the whole sweep is reported periodically.
+ */
+public class SweepEngine {
+
+    static final String PARTIAL = ".partial";
+
+    final int threads;
+    final int lanes;
+    final long reportInterval;
+
+    final AtomicLong completed = new AtomicLong();
+    final AtomicLong skipped = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+
+    public SweepEngine() {
+        this(1);
+    }
+
+    public SweepEngine(int lanes) {
+        this(Runtime.getRuntime().availableProcessors(), lanes, TimeUnit.MINUTES.toNanos(1));
+    }
+
+    public SweepEngine(int threads, int lanes, long reportInterval) {
+        this.threads = threads;
+        this.lanes = lanes;
+        this.reportInterval = reportInterval;
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public void run(Sweep sweep) throws InterruptedException {
+        var total = sweep.size();
+        var start = System.nanoTime();
+        var lastReport = start;
+
+        var executor = Executors.newFixedThreadPool(threads);
+        var inFlight = new Semaphore(2 * threads);
+
+        try {
+            var batch = new ArrayList<Task>(lanes);
+
+            for (var run : sweep) {
+                var task = new Task(run);
+                if (task.isCompleted()) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                if (!batch.isEmpty() && !LockstepEngine.canShare(batch.get(0).options, task.options)) {
+                    inFlight.acquire();
+                    submit(executor, inFlight, batch);
+                    batch = new ArrayList<>(lanes);
+                }
+
+                batch.add(task);
+                if (batch.size() == lanes) {
+                    inFlight.acquire();
+                    submit(executor, inFlight, batch);
+                    batch = new ArrayList<>(lanes);
+                }
+
+                var now = System.nanoTime();
+                if (now - lastReport >= reportInterval) {
+                    report(total, start, now);
+                    lastReport = now;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                inFlight.acquire();
+                submit(executor, inFlight, batch);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        while (!executor.awaitTermination(reportInterval, TimeUnit.NANOSECONDS)) {
+            report(total, start, System.nanoTime());
+        }
+        report(total, start, System.nanoTime());
+
+        if (failed.get() > 0) {
+            throw new IllegalStateException(failed.get() + " runs of the sweep failed");
+        }
+    }
+
+    /*
+    A run whose outputs are written to temporary files first. With several outputs (see
+    Model.createObserver), every one of them has its own temporary file.
+     */
+    private static class Task {
+        final Sweep.Run run;
+        final Model.Options options;
+        final List<Path> outputs = new ArrayList<>();
+        final List<Path> partials = new ArrayList<>();
+
+        Task(Sweep.Run run) {
+            this.run = run;
+            this.options = run.options();
+
+            for (var output : options.output.split(",")) {
+                outputs.add(Paths.get(output));
+                partials.add(Paths.get(output + PARTIAL));
+            }
+
+            var partial = new StringBuilder();
+            for (var path : partials) {
+                if (partial.length() > 0) {
+                    partial.append(',');
+                }
+                partial.append(path);
+            }
+            options.output = partial.toString();
+        }
+
+        boolean isCompleted() {
+            for (var output : outputs) {
+                if (!Files.exists(output)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void complete() throws IOException {
+            for (int i = 0; i < outputs.size(); ++i) {
+                Files.move(partials.get(i), outputs.get(i), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        void discard() {
+            for (var partial : partials) {
+                try {
+                    Files.deleteIfExists(partial);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void submit(ExecutorService executor, Semaphore inFlight, List<Task> batch) {
+        executor.execute(() -> {
+            try {
+                if (batch.size() == 1) {
+                    Model.run(batch.get(0).options);
+                } else {
+                    var scenarios = new ArrayList<Model.Options>(batch.size());
+                    for (var task : batch) {
+                        scenarios.add(task.options);
+                    }
+                    Model.runLockstep(scenarios);
+                }
+
+                for (var task : batch) {
+                    task.complete();
+                    completed.incrementAndGet();
+                }
+            } catch (Exception e) {
+                for (var task : batch) {
+                    if (task.isCompleted()) {
+                        continue;
+                    }
+
+                    failed.incrementAndGet();
+                    System.err.printf("Run %s failed: %s\n", task.run.getName(), e);
+
+                    task.discard();
+                }
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void report(long total, long start, long now) {
+        var completed = this.completed.get();
+        var skipped = this.skipped.get();
+        var failed = this.failed.get();
+
+        var seconds = (now - start) / 1e9;
+        var rate = seconds > 0 ? completed / seconds : 0.0;
+        var remaining = total - completed - skipped - failed;
+
+        System.err.printf("%d out of %d runs finished (%d completed, %d skipped, %d failed), %.1f runs/s",
+                completed + skipped + failed, total, completed, skipped, failed, rate);
+        if (rate > 0 && remaining > 0) {
+            System.err.printf(", about %.0f min remaining", remaining / rate / 60);
+        }
+        System.err.println();
+    }
+}
@@ -0,0 +1,220 @@
+package eu.ecoepi.iris.observers;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.Habitat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+Sums over all cells of a time step from which the summary observers derive their rows: the ticks of
+every cohort state, including the infected ones, the feeding events and the rodents, in total and,
+if byHabitat is set, per habitat. The weather is the one of the last cell added.
+
+The cells are added in the order in which the engine visits them, so the sums are the same as if
+every observer summed up the cells on its own. The sums of disjoint ranges of cells can also be
+computed separately, e.g. by the workers of a distributed run, and merged in the order of the ranges,
+which gives the same sums, as they are integral for all engines but the mean-field one.
+ */
+public class Aggregate {
+
+    static final Habitat.Type[] HABITATS = Habitat.Type.values();
+    static final CohortStateTicks[] STAGES = CohortStateTicks.values();
+
+    final boolean byHabitat;
+
+    int count;
+    final double[] stages = new double[STAGES.length];
+    final double[] feedingEvents = new double[STAGES.length];
+    double feedingEventsNewInfectedLarvae;
+    double feedingEventsNewInfectedNymphs;
+    double rodentsSusceptible;
+    double rodentsInfected;
+
+    final double[][] habitatStages;
+    final double[] habitatRodentsSusceptible;
+    final double[] habitatRodentsInfected;
+
+    double meanTemperature;
+    double minTemperature;
+    double maxTemperature;
+    double relativeHumidity;
+
+    public Aggregate(boolean byHabitat) {
+        this.byHabitat = byHabitat;
+        this.habitatStages = new double[byHabitat ? HABITATS.length : 0][STAGES.length];
+        this.habitatRodentsSusceptible = new double[byHabitat ? HABITATS.length : 0];
+        this.habitatRodentsInfected = new double[byHabitat ? HABITATS.length : 0];
+    }
+
+    public void add(CellView cell) {
+        count++;
+
+        for (var stage : STAGES) {
+            stages[stage.ordinal()] += cell.getStageValue(stage);
+            feedingEvents[stage.ordinal()] += cell.getFeedingEventsValue(stage);
+        }
+        feedingEventsNewInfectedLarvae += cell.getFeedingEventsNewInfectedLarvaeValue();
+        feedingEventsNewInfectedNymphs += cell.getFeedingEventsNewInfectedNymphsValue();
+
+        var susceptible = cell.getRodentsSusceptibleValue();
+        var infected = cell.getRodentsInfectedValue();
+        rodentsSusceptible += susceptible;
+        rodentsInfected += infected;
+
+        if (byHabitat) {
+            var habitat = cell.getHabitat().ordinal();
+            var sums = habitatStages[habitat];
+            for (var stage : STAGES) {
+                sums[stage.ordinal()] += cell.getStageValue(stage);
+            }
+            habitatRodentsSusceptible[habitat] += susceptible;
+            habitatRodentsInfected[habitat] += infected;
+        }
+
+        meanTemperature = cell.getMeanTemperature();
+        minTemperature = cell.getMinTemperature();
+        maxTemperature = cell.getMaxTemperature();
+        relativeHumidity = cell.getRelativeHumidity();
+    }
+
+    public void clear() {
+        count = 0;
+
+        Arrays.fill(stages, 0);
+        Arrays.fill(feedingEvents, 0);
+        feedingEventsNewInfectedLarvae = 0;
+        feedingEventsNewInfectedNymphs = 0;
+        rodentsSusceptible = 0;
+        rodentsInfected = 0;
+
+        for (var sums : habitatStages) {
+            Arrays.fill(sums, 0);
+        }
+        Arrays.fill(habitatRodentsSusceptible, 0);
+        Arrays.fill(habitatRodentsInfected, 0);
+    }
+
+    /*
+    Serialises the sums for the Coordinator of a distributed run, see merge.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(count);
+        writeAll(out, stages);
+        writeAll(out, feedingEvents);
+        out.writeDouble(feedingEventsNewInfectedLarvae);
+        out.writeDouble(feedingEventsNewInfectedNymphs);
+        out.writeDouble(rodentsSusceptible);
+        out.writeDouble(rodentsInfected);
+        for (var sums : habitatStages) {
+            writeAll(out, sums);
+        }
+        writeAll(out, habitatRodentsSusceptible);
+        writeAll(out, habitatRodentsInfected);
+        out.writeDouble(meanTemperature);
+        out.writeDouble(minTemperature);
+        out.writeDouble(maxTemperature);
+        out.writeDouble(relativeHumidity);
+    }
+
+    /*
+    Adds the sums written by write() of an Aggregate with the same byHabitat, whose cells come after
+    the ones added so far. Hence the weather is the one of the merged sums, unless they are empty.
+     */
+    public void merge(DataInputStream in) throws IOException {
+        var partialCount = in.readInt();
+        count += partialCount;
+        addAll(in, stages);
+        addAll(in, feedingEvents);
+        feedingEventsNewInfectedLarvae += in.readDouble();
+        feedingEventsNewInfectedNymphs += in.readDouble();
+        rodentsSusceptible += in.readDouble();
+        rodentsInfected += in.readDouble();
+        for (var sums : habitatStages) {
+            addAll(in, sums);
+        }
+        addAll(in, habitatRodentsSusceptible);
+        addAll(in, habitatRodentsInfected);
+
+        var mean = in.readDouble();
+        var min = in.readDouble();
+        var max = in.readDouble();
+        var humidity = in.readDouble();
+        if (partialCount > 0) {
+            meanTemperature = mean;
+            minTemperature = min;
+            maxTemperature = max;
+            relativeHumidity = humidity;
+        }
+    }
+
+    private static void writeAll(DataOutputStream out, double[] values) throws IOException {
+        for (var value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static void addAll(DataInputStream in, double[] values) throws IOException {
+        for (int i = 0; i < values.length; ++i) {
+            values[i] += in.readDouble();
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getStage(CohortStateTicks stage) {
+        return stages[stage.ordinal()];
+    }
+
+    public double getStage(Habitat.Type habitat, CohortStateTicks stage) {
+        return habitatStages[habitat.ordinal()][stage.ordinal()];
+    }
+
+    public double getFeedingEvents(CohortStateTicks stage) {
+        return feedingEvents[stage.ordinal()];
+    }
+
+    public double getFeedingEventsNewInfectedLarvae() {
+        return feedingEventsNewInfectedLarvae;
+    }
+
+    public double getFeedingEventsNewInfectedNymphs() {
+        return feedingEventsNewInfectedNymphs;
+    }
+
+    public double getRodentsSusceptible() {
+        return rodentsSusceptible;
+    }
+
+    public double getRodentsInfected() {
+        return rodentsInfected;
+    }
+
+    public double getRodentsSusceptible(Habitat.Type habitat) {
+        return habitatRodentsSusceptible[habitat.ordinal()];
+    }
+
+    public double getRodentsInfected(Habitat.Type habitat) {
+        return habitatRodentsInfected[habitat.ordinal()];
+    }
+
+    public double getMeanTemperature() {
+        return meanTemperature;
+    }
+
+    public double getMinTemperature() {
+        return minTemperature;
+    }
+
+    public double getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    public double getRelativeHumidity() {
+        return relativeHumidity;
+    }
+}
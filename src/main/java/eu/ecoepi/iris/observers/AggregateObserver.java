@@ -0,0 +1,44 @@
+package eu.ecoepi.iris.observers;
+
+import eu.ecoepi.iris.components.Habitat;
+
+/*
+Observer writing one row per time step, derived from the sums over all cells (see Aggregate).
+On its own it adds every cell to its own Aggregate, within an ObserverGroup the group adds every cell
+once to an Aggregate shared by all its observers.
+ */
+public abstract class AggregateObserver extends CellObserver {
+
+    /*
+    Order of the habitats in the columns of the observers differentiated by habitats.
+     */
+    static final Habitat.Type[] HABITAT_COLUMNS = {Habitat.Type.WOOD, Habitat.Type.MEADOW, Habitat.Type.ECOTONE};
+
+    private final boolean byHabitat;
+    private final Aggregate aggregate;
+
+    /*
+    byHabitat tells whether the rows need the sums per habitat, which are not computed otherwise.
+     */
+    protected AggregateObserver(boolean byHabitat) {
+        this.byHabitat = byHabitat;
+        this.aggregate = new Aggregate(byHabitat);
+    }
+
+    public boolean byHabitat() {
+        return byHabitat;
+    }
+
+    public abstract void write(int timeStep, Aggregate aggregate);
+
+    @Override
+    public void observe(int timeStep, CellView cell) {
+        aggregate.add(cell);
+    }
+
+    @Override
+    public void endTimeStep(int timeStep) {
+        write(timeStep, aggregate);
+        aggregate.clear();
+    }
+}
@@ -0,0 +1,196 @@
+package eu.ecoepi.iris.observers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+Moves the formatting and writing of the rows off the simulation thread.
+
+The rows are collected in batches of up to BATCH rows, which are handed to a dedicated writer thread
+at the end of every time step or when they are full. The writer thread passes them on to the target
+and returns them for reuse. As there are only a fixed number of batches, the simulation thread waits
+only if all of them are waiting to be written, i.e. if the target cannot keep up.
+
+A failure of the target is reported by the next flush() or by close(). Closing it again does nothing.
+ */
+public class AsyncTableWriter implements TableWriter {
+
+    public static final int BATCH = 1024;
+
+    private static class Batch {
+        final int[][] integers;
+        final double[][] reals;
+        int rows;
+
+        Batch(Column[] columns) {
+            integers = new int[columns.length][];
+            reals = new double[columns.length][];
+            for (int i = 0; i < columns.length; ++i) {
+                switch (columns[i].type) {
+                    case INTEGER, CATEGORY -> integers[i] = new int[BATCH];
+                    case REAL -> reals[i] = new double[BATCH];
+                }
+            }
+        }
+    }
+
+    private static final Batch END = new Batch(new Column[0]);
+
+    private final TableWriter target;
+    private final Column[] columns;
+    private final BlockingQueue<Batch> free;
+    private final BlockingQueue<Batch> written;
+    private final Thread writer;
+    private volatile Throwable failure;
+
+    private Batch current;
+    private int column;
+    private boolean closed;
+
+    public AsyncTableWriter(TableWriter target, Column[] columns, int buffers) {
+        if (buffers < 1) {
+            throw new IllegalArgumentException("At least one buffer is required, but got " + buffers);
+        }
+
+        this.target = target;
+        this.columns = columns;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        this.written = new ArrayBlockingQueue<>(buffers + 1);
+        for (int i = 0; i < buffers; ++i) {
+            free.add(new Batch(columns));
+        }
+        this.current = take(free);
+
+        writer = new Thread(this::drain, "output-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void writeInteger(int value) {
+        current.integers[column++][current.rows] = value;
+    }
+
+    @Override
+    public void writeReal(double value) {
+        current.reals[column++][current.rows] = value;
+    }
+
+    @Override
+    public void writeCategory(int ordinal) {
+        current.integers[column++][current.rows] = ordinal;
+    }
+
+    @Override
+    public void endRow() {
+        column = 0;
+        if (++current.rows == BATCH) {
+            publish();
+            current = take(free);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (current.rows != 0) {
+            publish();
+            current = take(free);
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (current.rows != 0) {
+            publish();
+        }
+        put(END);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the output to be written", e);
+        } finally {
+            target.close();
+        }
+        checkFailure();
+    }
+
+    private void publish() {
+        put(current);
+        current = null;
+    }
+
+    private void checkFailure() {
+        var failure = this.failure;
+        if (failure != null) {
+            throw new IllegalStateException("Writing the output failed", failure);
+        }
+    }
+
+    /*
+    Runs on the writer thread. After a failure the batches are only returned, so that the simulation
+    thread never waits for a batch which is not written anymore.
+     */
+    private void drain() {
+        while (true) {
+            var batch = take(written);
+            if (batch == END) {
+                return;
+            }
+
+            if (failure == null) {
+                try {
+                    write(batch);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+            }
+
+            batch.rows = 0;
+            put(free, batch);
+        }
+    }
+
+    private void write(Batch batch) {
+        for (int row = 0; row < batch.rows; ++row) {
+            for (int i = 0; i < columns.length; ++i) {
+                switch (columns[i].type) {
+                    case INTEGER -> target.writeInteger(batch.integers[i][row]);
+                    case REAL -> target.writeReal(batch.reals[i][row]);
+                    case CATEGORY -> target.writeCategory(batch.integers[i][row]);
+                }
+            }
+            target.endRow();
+        }
+        target.flush();
+    }
+
+    private void put(Batch batch) {
+        put(written, batch);
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while passing on the output", e);
+        }
+    }
+
+    private static Batch take(BlockingQueue<Batch> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an output buffer", e);
+        }
+    }
+}
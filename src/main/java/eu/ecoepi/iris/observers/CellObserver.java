@@ -0,0 +1,121 @@
+package eu.ecoepi.iris.observers;
+
+import com.artemis.ComponentMapper;
+import com.artemis.annotations.Wire;
+import com.artemis.systems.IteratingSystem;
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.*;
+import eu.ecoepi.iris.resources.TimeStep;
+
+/*
+Base class of all observers. Within an Artemis world it visits every cell through its components,
+other engines drive it directly via observe(), endTimeStep() and close().
+Subclasses still have to declare the aspect annotation, as Artemis does not inherit it.
+ */
+public abstract class CellObserver extends IteratingSystem {
+
+    ComponentMapper<TickAbundance> abundanceMapper;
+    ComponentMapper<HostAbundance> hostAbundanceMapper;
+    ComponentMapper<Position> positionMapper;
+    ComponentMapper<Habitat> habitatMapper;
+    ComponentMapper<Temperature> temperatureMapper;
+    ComponentMapper<Humidity> humidityMapper;
+
+    @Wire
+    TimeStep timeStep;
+
+    private final ComponentCellView cell = new ComponentCellView();
+
+    public abstract void observe(int timeStep, CellView cell);
+
+    public void endTimeStep(int timeStep) {
+    }
+
+    public abstract void close();
+
+    @Override
+    protected final void process(int entityId) {
+        cell.entityId = entityId;
+        observe(timeStep.getCurrent(), cell);
+    }
+
+    @Override
+    protected final void end() {
+        endTimeStep(timeStep.getCurrent());
+    }
+
+    @Override
+    protected final void dispose() {
+        close();
+    }
+
+    private class ComponentCellView implements CellView {
+
+        int entityId;
+
+        @Override
+        public int getX() {
+            return positionMapper.get(entityId).getX();
+        }
+
+        @Override
+        public int getY() {
+            return positionMapper.get(entityId).getY();
+        }
+
+        @Override
+        public Habitat.Type getHabitat() {
+            return habitatMapper.get(entityId).getType();
+        }
+
+        @Override
+        public int getStage(CohortStateTicks stage) {
+            return abundanceMapper.get(entityId).getStage(stage);
+        }
+
+        @Override
+        public int getFeedingEvents(CohortStateTicks stage) {
+            return abundanceMapper.get(entityId).getFeedingEvents(stage);
+        }
+
+        @Override
+        public int getFeedingEventsNewInfectedLarvae() {
+            return abundanceMapper.get(entityId).getFeedingEventsNewInfectedLarvae();
+        }
+
+        @Override
+        public int getFeedingEventsNewInfectedNymphs() {
+            return abundanceMapper.get(entityId).getFeedingEventsNewInfectedNymphs();
+        }
+
+        @Override
+        public int getRodentsSusceptible() {
+            return hostAbundanceMapper.get(entityId).getRodentsSusceptible();
+        }
+
+        @Override
+        public int getRodentsInfected() {
+            return hostAbundanceMapper.get(entityId).getRodentsInfected();
+        }
+
+        @Override
+        public double getMeanTemperature() {
+            return temperatureMapper.get(entityId).getMeanTemperature();
+        }
+
+        @Override
+        public double getMinTemperature() {
+            return temperatureMapper.get(entityId).getMinTemperature();
+        }
+
+        @Override
+        public double getMaxTemperature() {
+            return temperatureMapper.get(entityId).getMaxTemperature();
+        }
+
+        @Override
+        public double getRelativeHumidity() {
+            return humidityMapper.get(entityId).getRelativeHumidity();
+        }
+    }
+}
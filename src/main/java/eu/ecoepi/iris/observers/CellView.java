@@ -0,0 +1,65 @@
+package eu.ecoepi.iris.observers;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.Habitat;
+
+/*
+Read-only view of a single grid cell as seen by the observers.
+It decouples the observers from the way an engine stores the cell state.
+ */
+public interface CellView {
+
+    int getX();
+
+    int getY();
+
+    Habitat.Type getHabitat();
+
+    int getStage(CohortStateTicks stage);
+
+    int getFeedingEvents(CohortStateTicks stage);
+
+    int getFeedingEventsNewInfectedLarvae();
+
+    int getFeedingEventsNewInfectedNymphs();
+
+    int getRodentsSusceptible();
+
+    int getRodentsInfected();
+
+    /*
+    Real-valued counterparts of the tick and host counts for engines with real-valued abundances
+    (see MeanFieldEngine). For all other engines they are the counts themselves.
+     */
+    default double getStageValue(CohortStateTicks stage) {
+        return getStage(stage);
+    }
+
+    default double getFeedingEventsValue(CohortStateTicks stage) {
+        return getFeedingEvents(stage);
+    }
+
+    default double getFeedingEventsNewInfectedLarvaeValue() {
+        return getFeedingEventsNewInfectedLarvae();
+    }
+
+    default double getFeedingEventsNewInfectedNymphsValue() {
+        return getFeedingEventsNewInfectedNymphs();
+    }
+
+    default double getRodentsSusceptibleValue() {
+        return getRodentsSusceptible();
+    }
+
+    default double getRodentsInfectedValue() {
+        return getRodentsInfected();
+    }
+
+    double getMeanTemperature();
+
+    double getMinTemperature();
+
+    double getMaxTemperature();
+
+    double getRelativeHumidity();
+}
@@ -0,0 +1,74 @@
+package eu.ecoepi.iris.observers;
+
+/*
+A typed column of the table written by an observer, see TableWriter.
+
+Counts are INTEGER columns, means and weather are REAL columns and enumerations like the habitat are
+CATEGORY columns whose values are the ordinals of the labels.
+ */
+public final class Column {
+
+    public enum Type {
+        INTEGER,
+        REAL,
+        CATEGORY
+    }
+
+    final String name;
+    final Type type;
+    final String[] labels;
+
+    private Column(String name, Type type, String[] labels) {
+        this.name = name;
+        this.type = type;
+        this.labels = labels;
+    }
+
+    public static Column integer(String name) {
+        return new Column(name, Type.INTEGER, new String[0]);
+    }
+
+    public static Column real(String name) {
+        return new Column(name, Type.REAL, new String[0]);
+    }
+
+    public static Column category(String name, Enum<?>[] values) {
+        var labels = new String[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            labels[i] = values[i].name();
+        }
+        return new Column(name, Type.CATEGORY, labels);
+    }
+
+    static Column of(String name, Type type, String[] labels) {
+        return new Column(name, type, labels);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getLabel(int ordinal) {
+        return labels[ordinal];
+    }
+
+    public int getLabelCount() {
+        return labels.length;
+    }
+
+    /*
+    The columns of a daily time series: the integer column tick followed by real columns.
+     */
+    static Column[] timeSeries(String... reals) {
+        var columns = new Column[reals.length + 1];
+        columns[0] = integer("tick");
+        for (int i = 0; i < reals.length; ++i) {
+            columns[i + 1] = real(reals[i]);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,156 @@
+package eu.ecoepi.iris.observers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+Reads a file written by ColumnarTableWriter into one array per column. INTEGER and CATEGORY columns
+are read as ints, the latter holding the ordinals of the labels, REAL columns as doubles.
+ */
+public class ColumnarReader {
+
+    final Column[] columns;
+    final int[][] integers;
+    final double[][] reals;
+    final int rows;
+
+    private ColumnarReader(Column[] columns, int[][] integers, double[][] reals, int rows) {
+        this.columns = columns;
+        this.integers = integers;
+        this.reals = reals;
+        this.rows = rows;
+    }
+
+    public static ColumnarReader read(Path path) throws IOException {
+        ByteBuffer file;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        try {
+            if (file.getInt() != ColumnarTableWriter.MAGIC) {
+                throw new IOException("Not a columnar output");
+            }
+            var version = file.getInt();
+            if (version != ColumnarTableWriter.VERSION) {
+                throw new IOException("Unsupported version " + version);
+            }
+            var rowGroup = file.getInt();
+
+            var columns = new Column[file.getInt()];
+            for (int i = 0; i < columns.length; ++i) {
+                var name = readString(file);
+                var type = Column.Type.values()[file.get()];
+                var labels = new String[file.getInt()];
+                for (int label = 0; label < labels.length; ++label) {
+                    labels[label] = readString(file);
+                }
+                columns[i] = Column.of(name, type, labels);
+            }
+
+            var integers = new int[columns.length][];
+            var reals = new double[columns.length][];
+            var capacity = rowGroup;
+            for (int i = 0; i < columns.length; ++i) {
+                switch (columns[i].type) {
+                    case INTEGER, CATEGORY -> integers[i] = new int[capacity];
+                    case REAL -> reals[i] = new double[capacity];
+                }
+            }
+
+            var rows = 0;
+            while (file.hasRemaining()) {
+                var groupRows = file.getInt();
+                if (groupRows <= 0 || groupRows > rowGroup) {
+                    throw new IOException("Invalid row group of " + groupRows + " rows");
+                }
+
+                if (rows + groupRows > capacity) {
+                    capacity = Math.max(2 * capacity, rows + groupRows);
+                    for (int i = 0; i < columns.length; ++i) {
+                        if (integers[i] != null) {
+                            integers[i] = Arrays.copyOf(integers[i], capacity);
+                        } else {
+                            reals[i] = Arrays.copyOf(reals[i], capacity);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < columns.length; ++i) {
+                    switch (columns[i].type) {
+                        case INTEGER -> readIntegers(file, integers[i], rows, groupRows);
+                        case REAL -> {
+                            file.asDoubleBuffer().get(reals[i], rows, groupRows);
+                            file.position(file.position() + groupRows * Double.BYTES);
+                        }
+                        case CATEGORY -> {
+                            for (int row = 0; row < groupRows; ++row) {
+                                integers[i][rows + row] = Byte.toUnsignedInt(file.get());
+                            }
+                        }
+                    }
+                }
+                rows += groupRows;
+            }
+
+            return new ColumnarReader(columns, integers, reals, rows);
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid columnar output " + path + ": " + e, e);
+        }
+    }
+
+    private static void readIntegers(ByteBuffer file, int[] values, int offset, int rows) throws IOException {
+        var width = file.get();
+        var base = file.getInt();
+        for (int row = offset; row < offset + rows; ++row) {
+            values[row] = base + switch (width) {
+                case 0 -> 0;
+                case 1 -> Byte.toUnsignedInt(file.get());
+                case 2 -> Short.toUnsignedInt(file.getShort());
+                case 4 -> file.getInt();
+                default -> throw new IOException("Invalid integer width " + width);
+            };
+        }
+    }
+
+    private static String readString(ByteBuffer file) {
+        var bytes = new byte[file.getInt()];
+        file.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public Column[] getColumns() {
+        return columns.clone();
+    }
+
+    public int indexOf(String name) {
+        for (int i = 0; i < columns.length; ++i) {
+            if (columns[i].name.equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column " + name);
+    }
+
+    public int getInteger(int column, int row) {
+        return integers[column][row];
+    }
+
+    public double getReal(int column, int row) {
+        return reals[column][row];
+    }
+
+    public String getCategory(int column, int row) {
+        return columns[column].getLabel(integers[column][row]);
+    }
+}
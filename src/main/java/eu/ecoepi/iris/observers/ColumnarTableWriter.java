@@ -0,0 +1,203 @@
+package eu.ecoepi.iris.observers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+Writes the rows in groups of at most ROW_GROUP rows, storing the values of every column of a group
+contiguously with a fixed size per value. Integers are stored relative to the smallest value of their
+column in the group with as few bytes as the range of the values requires, so that small counts and
+constant columns like the tick take one byte or none per row.
+
+All values are little-endian. The file starts with the header
+
+    int MAGIC, int VERSION, int ROW_GROUP, int number of columns
+
+followed by one record per column
+
+    int length of the name, UTF-8 bytes of the name, byte ordinal of the Column.Type,
+    int number of labels, for every label its int length and UTF-8 bytes
+
+and the row groups. A row group starts with its int number of rows, followed by the values of the
+first column, the values of the second column and so on. The values of an INTEGER column are
+preceded by the byte width and the int base and are unsigned integers of width bytes (0, 1, 2 or
+4), each value being base plus the stored one. REAL values are doubles, so that they are exactly the
+values passed to writeReal, however large the sums of a day get, and CATEGORY values single bytes
+holding the ordinal of the label. The file ends after the last row group, see ColumnarReader.
+ */
+public class ColumnarTableWriter implements TableWriter {
+
+    public static final int MAGIC = 0x49524943;
+    public static final int VERSION = 2;
+    public static final int ROW_GROUP = 4096;
+
+    private final FileChannel channel;
+    private final Column[] columns;
+    private final int[][] integers;
+    private final double[][] reals;
+    private final ByteBuffer buffer;
+
+    private int rows;
+    private int column;
+
+    public ColumnarTableWriter(String path, Column[] columns) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.columns = columns;
+        this.integers = new int[columns.length][];
+        this.reals = new double[columns.length][];
+
+        var groupSize = Integer.BYTES;
+        for (int i = 0; i < columns.length; ++i) {
+            switch (columns[i].type) {
+                case INTEGER, CATEGORY -> integers[i] = new int[ROW_GROUP];
+                case REAL -> reals[i] = new double[ROW_GROUP];
+            }
+            groupSize += Byte.BYTES + Integer.BYTES + ROW_GROUP * valueSize(columns[i].type);
+        }
+        this.buffer = ByteBuffer.allocateDirect(groupSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        writeHeader();
+    }
+
+    static int valueSize(Column.Type type) {
+        return switch (type) {
+            case INTEGER -> Integer.BYTES;
+            case REAL -> Double.BYTES;
+            case CATEGORY -> Byte.BYTES;
+        };
+    }
+
+    private void writeHeader() throws IOException {
+        var header = new ByteArrayOutputStream();
+        var record = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (var value : new int[]{MAGIC, VERSION, ROW_GROUP, columns.length}) {
+            header.write(record.clear().putInt(value).array());
+        }
+        for (var column : columns) {
+            writeString(header, record, column.name);
+            header.write(column.type.ordinal());
+            header.write(record.clear().putInt(column.labels.length).array());
+            for (var label : column.labels) {
+                writeString(header, record, label);
+            }
+        }
+
+        write(ByteBuffer.wrap(header.toByteArray()));
+    }
+
+    private static void writeString(ByteArrayOutputStream header, ByteBuffer record, String value) throws IOException {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        header.write(record.clear().putInt(bytes.length).array());
+        header.write(bytes);
+    }
+
+    @Override
+    public void writeInteger(int value) {
+        integers[column++][rows] = value;
+    }
+
+    @Override
+    public void writeReal(double value) {
+        reals[column++][rows] = value;
+    }
+
+    @Override
+    public void writeCategory(int ordinal) {
+        integers[column++][rows] = ordinal;
+    }
+
+    @Override
+    public void endRow() {
+        column = 0;
+        if (++rows == ROW_GROUP) {
+            writeRowGroup();
+        }
+    }
+
+    private void writeRowGroup() {
+        buffer.clear();
+        buffer.putInt(rows);
+        for (int i = 0; i < columns.length; ++i) {
+            switch (columns[i].type) {
+                case INTEGER -> putIntegers(integers[i]);
+                case REAL -> {
+                    buffer.asDoubleBuffer().put(reals[i], 0, rows);
+                    buffer.position(buffer.position() + rows * Double.BYTES);
+                }
+                case CATEGORY -> {
+                    for (int row = 0; row < rows; ++row) {
+                        buffer.put((byte) integers[i][row]);
+                    }
+                }
+            }
+        }
+        rows = 0;
+
+        try {
+            write(buffer.flip());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void putIntegers(int[] values) {
+        var min = values[0];
+        var max = values[0];
+        for (int row = 1; row < rows; ++row) {
+            min = Math.min(min, values[row]);
+            max = Math.max(max, values[row]);
+        }
+        var width = width((long) max - min);
+
+        buffer.put((byte) width);
+        buffer.putInt(min);
+        for (int row = 0; row < rows; ++row) {
+            var value = values[row] - min;
+            switch (width) {
+                case 0 -> {
+                }
+                case 1 -> buffer.put((byte) value);
+                case 2 -> buffer.putShort((short) value);
+                default -> buffer.putInt(value);
+            }
+        }
+    }
+
+    static int width(long range) {
+        if (range == 0) {
+            return 0;
+        } else if (range < 1 << 8) {
+            return 1;
+        } else if (range < 1 << 16) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    @Override
+    public void close() {
+        try (channel) {
+            if (rows != 0) {
+                writeRowGroup();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
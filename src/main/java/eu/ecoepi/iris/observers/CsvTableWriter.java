@@ -0,0 +1,64 @@
+package eu.ecoepi.iris.observers;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/*
+Writes the header line of the column names and every row as a line of comma-separated values.
+ */
+class CsvTableWriter implements TableWriter {
+
+    private final PrintWriter csvWriter;
+    private final Column[] columns;
+    private final String format;
+    private final Object[] row;
+    private int column;
+
+    CsvTableWriter(String path, Column[] columns) throws IOException {
+        this.csvWriter = new PrintWriter(path);
+        this.columns = columns;
+        this.row = new Object[columns.length];
+
+        var header = new StringBuilder();
+        var format = new StringBuilder();
+        for (int i = 0; i < columns.length; ++i) {
+            var separator = i + 1 < columns.length ? "," : "\n";
+            header.append(columns[i].name).append(separator);
+            format.append(switch (columns[i].type) {
+                case INTEGER -> "%d";
+                case REAL -> "%f";
+                case CATEGORY -> "%s";
+            }).append(separator);
+        }
+        this.format = format.toString();
+
+        csvWriter.print(header);
+    }
+
+    @Override
+    public void writeInteger(int value) {
+        row[column++] = value;
+    }
+
+    @Override
+    public void writeReal(double value) {
+        row[column++] = value;
+    }
+
+    @Override
+    public void writeCategory(int ordinal) {
+        row[column] = columns[column].labels[ordinal];
+        column++;
+    }
+
+    @Override
+    public void endRow() {
+        csvWriter.format(format, row);
+        column = 0;
+    }
+
+    @Override
+    public void close() {
+        csvWriter.close();
+    }
+}
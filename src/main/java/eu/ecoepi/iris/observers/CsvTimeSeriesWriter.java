@@ -1,116 +1,103 @@
 package eu.ecoepi.iris.observers;
 
-import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
-import com.artemis.annotations.Wire;
-import com.artemis.systems.IteratingSystem;
 import eu.ecoepi.iris.CohortStateTicks;
-import eu.ecoepi.iris.resources.TimeStep;
 import eu.ecoepi.iris.components.*;
 
 import java.io.IOException;
-import java.io.PrintWriter;
 
 @All({TickAbundance.class, HostAbundance.class, Position.class})
-public class CsvTimeSeriesWriter extends IteratingSystem {
+public class CsvTimeSeriesWriter extends CellObserver {
 
-    ComponentMapper<TickAbundance> abundanceMapper;
-    ComponentMapper<HostAbundance> abundanceMapperRodents;
-    ComponentMapper<Position> positionMapper;
-    ComponentMapper<Habitat> habitatMapper;
-    ComponentMapper<Temperature> temperatureMapper;
-    ComponentMapper<Humidity> humidityMapper;
+    static final Column[] COLUMNS = {
+            Column.integer("tick"),
+            Column.integer("x"),
+            Column.integer("y"),
+            Column.category("habitat", Habitat.Type.values()),
+            Column.integer("questing_larvae"),
+            Column.integer("questing_larvae_infected"),
+            Column.integer("questing_nymphs"),
+            Column.integer("questing_nymphs_infected"),
+            Column.integer("questing_adults"),
+            Column.integer("inactive_larvae"),
+            Column.integer("inactive_larvae_infected"),
+            Column.integer("inactive_nymphs"),
+            Column.integer("inactive_nymphs_infected"),
+            Column.integer("inactive_adults"),
+            Column.integer("engorged_larvae"),
+            Column.integer("engorged_larvae_infected"),
+            Column.integer("engorged_nymphs"),
+            Column.integer("engorged_nymphs_infected"),
+            Column.integer("engorged_adults"),
+            Column.integer("late_engorged_larvae"),
+            Column.integer("late_engorged_larvae_infected"),
+            Column.integer("late_engorged_nymphs"),
+            Column.integer("late_engorged_nymphs_infected"),
+            Column.integer("rodents_susceptible"),
+            Column.integer("rodents_infected"),
+            Column.real("t_mean"),
+            Column.real("t_min"),
+            Column.real("t_max"),
+            Column.real("humidity"),
+            Column.integer("feeding_events_larvae"),
+            Column.integer("feeding_events_nymphs"),
+            Column.integer("feeding_events_adults")
+    };
 
-    private final PrintWriter csvWriter;
-
-    @Wire
-    TimeStep timeStep;
+    private final TableWriter table;
 
     public CsvTimeSeriesWriter(String path) throws IOException {
-        csvWriter = new PrintWriter(path);
-        csvWriter.print(
-                "tick," +
-                "x," +
-                "y," +
-                "habitat," +
-                "questing_larvae," +
-                "questing_larvae," +
-                "questing_nymphs," +
-                "questing_nymphs," +
-                "questing_adults," +
-                "inactive_larvae," +
-                "inactive_larvae," +
-                "inactive_nymphs," +
-                "inactive_nymphs," +
-                "inactive_adults," +
-                "engorged_larvae," +
-                "engorged_larvae," +
-                "engorged_nymphs," +
-                "engorged_nymphs," +
-                "engorged_adults," +
-                "late_engorged_larvae," +
-                "late_engorged_larvae," +
-                "late_engorged_nymphs," +
-                "late_engorged_nymphs," +
-                "rodents_susceptible," +
-                "rodents_infected," +
-                "t_mean," +
-                "t_min," +
-                "t_max," +
-                "humidity," +
-                "feeding_events_larvae," +
-                "feeding_events_nymphs," +
-                "feeding_events_adults" +
-                "\n"
-        );
+        this(path, "csv", 0);
+    }
+
+    public CsvTimeSeriesWriter(String path, String format, int buffers) throws IOException {
+        table = TableWriter.open(path, format, buffers, COLUMNS);
     }
 
     @Override
-    protected void process(int entityId) {
-        var abundance = abundanceMapper.get(entityId);
-        var rodentAbundance = abundanceMapperRodents.get(entityId);
-        var position = positionMapper.get(entityId);
-        var habitat = habitatMapper.get(entityId);
-        var temperature = temperatureMapper.get(entityId);
-        var humidity = humidityMapper.get(entityId);
+    public void observe(int timeStep, CellView cell) {
+        table.writeInteger(timeStep);
+        table.writeInteger(cell.getX());
+        table.writeInteger(cell.getY());
+        table.writeCategory(cell.getHabitat().ordinal());
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_QUESTING));
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_QUESTING));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED));
+        table.writeInteger(cell.getStage(CohortStateTicks.ADULTS_QUESTING));
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_INACTIVE));
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_INACTIVE));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED));
+        table.writeInteger(cell.getStage(CohortStateTicks.ADULTS_INACTIVE));
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_ENGORGED));
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_ENGORGED_INFECTED));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_ENGORGED));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_ENGORGED_INFECTED));
+        table.writeInteger(cell.getStage(CohortStateTicks.ADULTS_ENGORGED));
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_LATE_ENGORGED));
+        table.writeInteger(cell.getStage(CohortStateTicks.LARVAE_LATE_ENGORGED_INFECTED));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_LATE_ENGORGED));
+        table.writeInteger(cell.getStage(CohortStateTicks.NYMPHS_LATE_ENGORGED_INFECTED));
+        table.writeInteger(cell.getRodentsSusceptible());
+        table.writeInteger(cell.getRodentsInfected());
+        table.writeReal(cell.getMeanTemperature());
+        table.writeReal(cell.getMinTemperature());
+        table.writeReal(cell.getMaxTemperature());
+        table.writeReal(cell.getRelativeHumidity());
+        table.writeInteger(cell.getFeedingEvents(CohortStateTicks.LARVAE_QUESTING));
+        table.writeInteger(cell.getFeedingEvents(CohortStateTicks.NYMPHS_QUESTING));
+        table.writeInteger(cell.getFeedingEvents(CohortStateTicks.ADULTS_QUESTING));
+        table.endRow();
+    }
 
-        csvWriter.format("%d,%d,%d,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%f,%f,%f,%f,%d,%d,%d\n",
-            timeStep.getCurrent(),
-            position.getX(),
-            position.getY(),
-            habitat.getType(),
-            abundance.getStage(CohortStateTicks.LARVAE_QUESTING),
-            abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED),
-            abundance.getStage(CohortStateTicks.NYMPHS_QUESTING),
-            abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED),
-            abundance.getStage(CohortStateTicks.ADULTS_QUESTING),
-            abundance.getStage(CohortStateTicks.LARVAE_INACTIVE),
-            abundance.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED),
-            abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE),
-            abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED),
-            abundance.getStage(CohortStateTicks.ADULTS_INACTIVE),
-            abundance.getStage(CohortStateTicks.LARVAE_ENGORGED),
-            abundance.getStage(CohortStateTicks.LARVAE_ENGORGED_INFECTED),
-            abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED),
-            abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED_INFECTED),
-            abundance.getStage(CohortStateTicks.ADULTS_ENGORGED),
-            abundance.getStage(CohortStateTicks.LARVAE_LATE_ENGORGED),
-            abundance.getStage(CohortStateTicks.LARVAE_LATE_ENGORGED_INFECTED),
-            abundance.getStage(CohortStateTicks.NYMPHS_LATE_ENGORGED),
-            abundance.getStage(CohortStateTicks.NYMPHS_LATE_ENGORGED_INFECTED),
-            rodentAbundance.getRodentsSusceptible(),
-            rodentAbundance.getRodentsInfected(),
-            temperature.getMeanTemperature(),
-            temperature.getMinTemperature(),
-            temperature.getMaxTemperature(),
-            humidity.getRelativeHumidity(),
-            abundance.getFeedingEvents(CohortStateTicks.LARVAE_QUESTING),
-            abundance.getFeedingEvents(CohortStateTicks.NYMPHS_QUESTING),
-            abundance.getFeedingEvents(CohortStateTicks.ADULTS_QUESTING));
+    @Override
+    public void endTimeStep(int timeStep) {
+        table.flush();
     }
 
     @Override
-    protected void dispose() {
-        csvWriter.flush();
+    public void close() {
+        table.close();
     }
 }
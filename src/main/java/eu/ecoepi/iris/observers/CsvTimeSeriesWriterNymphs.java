@@ -1,110 +1,57 @@
 package eu.ecoepi.iris.observers;
 
-import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
-import com.artemis.annotations.Wire;
-import com.artemis.systems.IteratingSystem;
 import eu.ecoepi.iris.CohortStateTicks;
-import eu.ecoepi.iris.resources.TimeStep;
 import eu.ecoepi.iris.components.*;
 
-import java.io.PrintWriter;
 import java.io.IOException;
 
 @All({TickAbundance.class, Temperature.class, Humidity.class})
-public class CsvTimeSeriesWriterNymphs extends IteratingSystem {
-
-    ComponentMapper<TickAbundance> abundanceMapper;
-    ComponentMapper<HostAbundance> abundanceMapperRodents;
-    ComponentMapper<Temperature> temperatureMapper;
-    ComponentMapper<Humidity> humidityMapper;
-
-    private final PrintWriter csvWriter;
-
-    private int nymphs;
-    private int nymphsInfected;
-    private int nymphsEngorged;
-    private int nymphsLateEngorged;
-    private int feedingEvents;
-
-    private int rodentsSusceptible;
-    private int rodentsInfected;
-
-    private double dailyMeanTemperature;
-    private double dailyMaxTemperature;
-    private double dailyHumidity;
-
-    @Wire
-    TimeStep timeStep;
+public class CsvTimeSeriesWriterNymphs extends AggregateObserver {
+
+    static final Column[] COLUMNS = Column.timeSeries(
+            "questing_nymphs",
+            "questing_nymphs_infected",
+            "nymphs_engorged",
+            "nymphs_late_engorged",
+            "feeding_events",
+            "rodents_susceptible",
+            "rodents_infected",
+            "mean_temperature",
+            "max_temperature",
+            "humidity"
+    );
+
+    private final TableWriter table;
 
     public CsvTimeSeriesWriterNymphs(String path) throws IOException {
-        csvWriter = new PrintWriter(path);
-        csvWriter.print(
-                "tick," +
-                "questing_nymphs," +
-                "questing_nymphs_infected," +
-                "nymphs_engorged," +
-                "nymphs_late_engorged," +
-                "feeding_events," +
-                "rodents_susceptible," +
-                "rodents_infected," +
-                "mean_temperature," +
-                "max_temperature," +
-                "humidity" +
-                "\n"
-        );
+        this(path, "csv", 0);
     }
 
-    @Override
-    protected void process(int entityId) {
-        var abundance = abundanceMapper.get(entityId);
-        var rodentAbundance = abundanceMapperRodents.get(entityId);
-        var temperature = temperatureMapper.get(entityId);
-        var humidity = humidityMapper.get(entityId);
-
-        nymphs += abundance.getStage(CohortStateTicks.NYMPHS_QUESTING);
-        nymphsInfected += abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED);
-        nymphsEngorged += abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED);
-        nymphsLateEngorged += abundance.getStage(CohortStateTicks.NYMPHS_LATE_ENGORGED);
-        feedingEvents += abundance.getFeedingEvents(CohortStateTicks.NYMPHS_QUESTING);
-
-        rodentsSusceptible += rodentAbundance.getRodentsSusceptible();
-        rodentsInfected += rodentAbundance.getRodentsInfected();
-
-        dailyMeanTemperature = temperature.getMeanTemperature();
-        dailyMaxTemperature = temperature.getMaxTemperature();
-        dailyHumidity = humidity.getRelativeHumidity();
+    public CsvTimeSeriesWriterNymphs(String path, String format, int buffers) throws IOException {
+        super(false);
+        table = TableWriter.open(path, format, buffers, COLUMNS);
     }
 
     @Override
-    protected void end() {
-
-        csvWriter.format("%d,%f,%f,%f,%f,%f,%f,%f,%f,%f,%f\n",
-                timeStep.getCurrent(),
-                (double)nymphs,
-                (double)nymphsInfected,
-                (double)nymphsEngorged,
-                (double)nymphsLateEngorged,
-                (double)feedingEvents,
-                (double)rodentsSusceptible,
-                (double)rodentsInfected,
-                dailyMeanTemperature,
-                dailyMaxTemperature,
-                dailyHumidity
-        );
-
-        nymphs = 0;
-        nymphsEngorged = 0;
-        nymphsInfected = 0;
-        nymphsLateEngorged = 0;
-        feedingEvents = 0;
-
-        rodentsSusceptible = 0;
-        rodentsInfected = 0;
+    public void write(int timeStep, Aggregate aggregate) {
+        table.writeInteger(timeStep);
+        table.writeReal(aggregate.getStage(CohortStateTicks.NYMPHS_QUESTING));
+        table.writeReal(aggregate.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED));
+        table.writeReal(aggregate.getStage(CohortStateTicks.NYMPHS_ENGORGED));
+        table.writeReal(aggregate.getStage(CohortStateTicks.NYMPHS_LATE_ENGORGED));
+        table.writeReal(aggregate.getFeedingEvents(CohortStateTicks.NYMPHS_QUESTING));
+        table.writeReal(aggregate.getRodentsSusceptible());
+        table.writeReal(aggregate.getRodentsInfected());
+        table.writeReal(aggregate.getMeanTemperature());
+        table.writeReal(aggregate.getMaxTemperature());
+        table.writeReal(aggregate.getRelativeHumidity());
+        table.endRow();
+        table.flush();
     }
 
     @Override
-    protected void dispose() {
-        csvWriter.flush();
+    public void close() {
+        table.close();
     }
 }
@@ -0,0 +1,105 @@
+package eu.ecoepi.iris.observers;
+
+import com.artemis.annotations.All;
+import eu.ecoepi.iris.components.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Several observers of a single run, which visits every cell only once per time step.
+
+The cells are added to one Aggregate shared by all AggregateObservers, with the sums per habitat
+computed only if one of them needs them, and passed on to all other observers.
+ */
+@All({TickAbundance.class, HostAbundance.class, Position.class, Habitat.class})
+public class ObserverGroup extends CellObserver {
+
+    private final List<AggregateObserver> aggregateObservers = new ArrayList<>();
+    private final List<CellObserver> cellObservers = new ArrayList<>();
+    private final Aggregate aggregate;
+
+    public ObserverGroup(List<CellObserver> observers) {
+        var byHabitat = false;
+        for (var observer : observers) {
+            if (observer instanceof AggregateObserver) {
+                var aggregateObserver = (AggregateObserver) observer;
+                aggregateObservers.add(aggregateObserver);
+                byHabitat |= aggregateObserver.byHabitat();
+            } else {
+                cellObservers.add(observer);
+            }
+        }
+        aggregate = aggregateObservers.isEmpty() ? null : new Aggregate(byHabitat);
+    }
+
+    /*
+    Whether any of the observers needs the individual cells rather than only their sums.
+     */
+    public boolean observesCells() {
+        return !cellObservers.isEmpty();
+    }
+
+    public boolean byHabitat() {
+        return aggregate != null && aggregate.byHabitat;
+    }
+
+    /*
+    Writes the rows of the AggregateObservers from sums computed elsewhere, e.g. by the workers of a
+    distributed run, instead of the cells observed by the group.
+     */
+    public void write(int timeStep, Aggregate aggregate) {
+        for (var observer : aggregateObservers) {
+            observer.write(timeStep, aggregate);
+        }
+    }
+
+    @Override
+    public void observe(int timeStep, CellView cell) {
+        if (aggregate != null) {
+            aggregate.add(cell);
+        }
+        for (var observer : cellObservers) {
+            observer.observe(timeStep, cell);
+        }
+    }
+
+    @Override
+    public void endTimeStep(int timeStep) {
+        if (aggregate != null) {
+            for (var observer : aggregateObservers) {
+                observer.write(timeStep, aggregate);
+            }
+            aggregate.clear();
+        }
+        for (var observer : cellObservers) {
+            observer.endTimeStep(timeStep);
+        }
+    }
+
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for (var observer : aggregateObservers) {
+            failure = close(observer, failure);
+        }
+        for (var observer : cellObservers) {
+            failure = close(observer, failure);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static RuntimeException close(CellObserver observer, RuntimeException failure) {
+        try {
+            observer.close();
+        } catch (RuntimeException e) {
+            if (failure == null) {
+                return e;
+            }
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+}
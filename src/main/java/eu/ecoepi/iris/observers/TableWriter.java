@@ -0,0 +1,46 @@
+package eu.ecoepi.iris.observers;
+
+import java.io.IOException;
+
+/*
+Sink of the rows of an observer. A row is written value by value in the order of the columns
+followed by endRow().
+
+The format is either csv, i.e. text as written by PrintWriter.format with %d, %f and %s, or
+columnar, see ColumnarTableWriter. With buffers > 0 the rows are written by a separate thread, see
+AsyncTableWriter.
+ */
+public interface TableWriter {
+
+    void writeInteger(int value);
+
+    void writeReal(double value);
+
+    void writeCategory(int ordinal);
+
+    void endRow();
+
+    /*
+    Called by the observers at the end of every time step.
+     */
+    default void flush() {
+    }
+
+    void close();
+
+    static TableWriter open(String path, String format, int buffers, Column... columns) throws IOException {
+        var writer = open(path, format, columns);
+        return buffers > 0 ? new AsyncTableWriter(writer, columns, buffers) : writer;
+    }
+
+    static TableWriter open(String path, String format, Column... columns) throws IOException {
+        return switch (format) {
+            case "csv" -> new CsvTableWriter(path, columns);
+            case "columnar" -> new ColumnarTableWriter(path, columns);
+            default -> throw new IllegalStateException("Unexpected value: " + format +
+                    ". Possible values are: \n" +
+                    "1) 'csv' \n" +
+                    "2) 'columnar' \n");
+        };
+    }
+}
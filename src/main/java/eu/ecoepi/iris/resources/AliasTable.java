@@ -0,0 +1,95 @@
+package eu.ecoepi.iris.resources;
+
+/*
+Samples an index from a discrete distribution with a single uniform random number in constant time
+(Walker's alias method, with the construction of Vose 1991).
+
+Every index i owns a bucket of equal width, which returns i with probability[i] and alias[i] otherwise.
+ */
+public class AliasTable {
+
+    final double[] probability;
+    final int[] alias;
+
+    /*
+    The weights need not sum up to one, but must be non-negative with a positive sum.
+     */
+    public AliasTable(double[] weights) {
+        var n = weights.length;
+
+        probability = new double[n];
+        alias = new int[n];
+
+        var total = 0.0;
+        for (var weight : weights) {
+            if (!(weight >= 0)) {
+                throw new IllegalArgumentException("Weights must be non-negative, got " + weight);
+            }
+            total += weight;
+        }
+        if (!(total > 0)) {
+            throw new IllegalArgumentException("Weights must have a positive sum");
+        }
+
+        var scaled = new double[n];
+        var small = new int[n];
+        var large = new int[n];
+        var smallCount = 0;
+        var largeCount = 0;
+
+        for (int i = 0; i < n; ++i) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            var less = small[--smallCount];
+            var more = large[--largeCount];
+
+            probability[less] = scaled[less];
+            alias[less] = more;
+
+            scaled[more] = (scaled[more] + scaled[less]) - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // What remains is one up to rounding errors
+        while (largeCount > 0) {
+            var i = large[--largeCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+        while (smallCount > 0) {
+            var i = small[--smallCount];
+            probability[i] = 1;
+            alias[i] = i;
+        }
+    }
+
+    public int size() {
+        return probability.length;
+    }
+
+    /*
+    Index for the uniform random number u in [0, 1). The integer part of u * size() selects the bucket,
+    the fractional part decides between the bucket and its alias.
+     */
+    public int sample(double u) {
+        var scaled = u * probability.length;
+        var bucket = Math.min((int) scaled, probability.length - 1);
+
+        return scaled - bucket < probability[bucket] ? bucket : alias[bucket];
+    }
+
+    public int sample(Randomness randomness) {
+        return sample(randomness.random());
+    }
+}
@@ -0,0 +1,48 @@
+package eu.ecoepi.iris.resources;
+
+/*
+Displacement, in grid cells along both axes, that an engorged tick is carried by its host before
+dropping off.
+
+The signed distance along each axis is distributed independently according to DISTANCE_PROB.
+The joint distribution of both distances is held in a single AliasTable, so that a displacement
+costs one random number. A sample is an index, which is decoded by getX and getY.
+ */
+public class DispersalKernel {
+
+    final int[] distances;
+    final AliasTable table;
+
+    public DispersalKernel() {
+        var n = Parameters.DISTANCE_PROB.length;
+
+        distances = new int[2 * n];
+        var probabilities = new double[2 * n];
+        for (int i = 0; i < n; ++i) {
+            distances[i] = i + 1;
+            distances[n + i] = -(i + 1);
+            probabilities[i] = Parameters.DISTANCE_PROB[i];
+            probabilities[n + i] = Parameters.DISTANCE_PROB[i];
+        }
+
+        var joint = new double[distances.length * distances.length];
+        for (int x = 0; x < distances.length; ++x) {
+            for (int y = 0; y < distances.length; ++y) {
+                joint[x * distances.length + y] = probabilities[x] * probabilities[y];
+            }
+        }
+        table = new AliasTable(joint);
+    }
+
+    public int sample(Randomness randomness) {
+        return table.sample(randomness);
+    }
+
+    public int getX(int sample) {
+        return distances[sample / distances.length];
+    }
+
+    public int getY(int sample) {
+        return distances[sample % distances.length];
+    }
+}
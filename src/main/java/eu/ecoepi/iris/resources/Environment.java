@@ -0,0 +1,75 @@
+package eu.ecoepi.iris.resources;
+
+import eu.ecoepi.iris.components.Habitat;
+
+/*
+Local weather of every habitat on the current day and everything derived from it alone.
+
+All cells of a habitat share the same local weather, so the microclimate adjustment and the
+thresholds of activation, desiccation and freezing are evaluated once per habitat and day in update
+instead of once per cell. The rows are indexed by Habitat.Type.ordinal().
+ */
+public class Environment {
+
+    static final Habitat.Type[] HABITATS = Habitat.Type.values();
+
+    final float[] meanTemperature = new float[HABITATS.length];
+    final float[] minTemperature = new float[HABITATS.length];
+    final float[] maxTemperature = new float[HABITATS.length];
+    final float[] humidity = new float[HABITATS.length];
+    final float[] shareOfActivationRate = new float[HABITATS.length];
+    final boolean[] desiccating = new boolean[HABITATS.length];
+    final boolean[] freezing = new boolean[HABITATS.length];
+
+    public void update(ParameterSet parameters, WeatherData weather, int timeStep) {
+        var meanTemperature = weather.getMeanTemperature(timeStep);
+        var minTemperature = weather.getMinTemperature(timeStep);
+        var maxTemperature = weather.getMaxTemperature(timeStep);
+        var relativeHumidity = weather.getHumidity(timeStep);
+        var adjustedMinTemperature = 0f;
+        var dayOfYear = weather.getDayOfYear(timeStep);
+
+        for (var type : HABITATS) {
+            var habitat = type.ordinal();
+            var adjustedTemperature = parameters.localTemperatureAdjustment(dayOfYear, type);
+
+            this.meanTemperature[habitat] = meanTemperature + adjustedTemperature;
+            this.minTemperature[habitat] = minTemperature + adjustedMinTemperature;
+            this.maxTemperature[habitat] = maxTemperature + adjustedTemperature;
+            this.humidity[habitat] = parameters.localHumidity(relativeHumidity, type);
+
+            shareOfActivationRate[habitat] = parameters.shareOfActivationRate(
+                    this.maxTemperature[habitat], this.meanTemperature[habitat], this.humidity[habitat]);
+            desiccating[habitat] = parameters.isDesiccating(this.humidity[habitat], this.meanTemperature[habitat]);
+            freezing[habitat] = parameters.isFreezing(this.minTemperature[habitat]);
+        }
+    }
+
+    public float getMeanTemperature(int habitat) {
+        return meanTemperature[habitat];
+    }
+
+    public float getMinTemperature(int habitat) {
+        return minTemperature[habitat];
+    }
+
+    public float getMaxTemperature(int habitat) {
+        return maxTemperature[habitat];
+    }
+
+    public float getHumidity(int habitat) {
+        return humidity[habitat];
+    }
+
+    public float getShareOfActivationRate(int habitat) {
+        return shareOfActivationRate[habitat];
+    }
+
+    public boolean isDesiccating(int habitat) {
+        return desiccating[habitat];
+    }
+
+    public boolean isFreezing(int habitat) {
+        return freezing[habitat];
+    }
+}
@@ -0,0 +1,285 @@
+package eu.ecoepi.iris.resources;
+
+import eu.ecoepi.iris.components.Habitat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+Habitat of every cell of a landscape of width x height cells, stored column-major like the grids,
+i.e. the habitat of the cell at (x, y) is at x * height + y.
+
+A landscape is either the default stripes or read from a raster file in one of two formats, both
+coding the habitats as MEADOW = 1, ECOTONE = 2 and WOOD = 3:
+
+An ESRI ASCII grid (.asc) with the header keys ncols, nrows, xllcorner or xllcenter, yllcorner or
+yllcenter, cellsize and the optional NODATA_value, followed by nrows rows of ncols values each.
+The i-th value of the j-th row is the cell (i, j). Cells without data are not allowed.
+
+A binary raster starting with the int MAGIC, the int width and the int height (big-endian as written
+by DataOutputStream), followed by the code of every cell row by row, one byte per cell.
+
+Both are read in a single pass through a buffered stream without keeping the text in memory.
+ */
+public class HabitatMap {
+
+    public static final int MAGIC = 0x49524948;
+
+    static final Habitat.Type[] TYPES = Habitat.Type.values();
+
+    final int width;
+    final int height;
+    final byte[] types;
+
+    private HabitatMap(int width, int height, byte[] types) {
+        this.width = width;
+        this.height = height;
+        this.types = types;
+    }
+
+    /*
+    The landscape consists of vertical stripes: meadow, ecotone and wood on the left half,
+    mirrored on the right half.
+     */
+    public static HabitatMap stripes(int width, int height) {
+        var types = new byte[width * height];
+        for (int x = 0; x < width; ++x) {
+            var type = (byte) stripe(x, width).ordinal();
+            for (int y = 0; y < height; ++y) {
+                types[x * height + y] = type;
+            }
+        }
+        return new HabitatMap(width, height, types);
+    }
+
+    static Habitat.Type stripe(int x, int width) {
+        if (x < width / 2) {
+            if (x < width / 6) {
+                return Habitat.Type.MEADOW;
+            } else if (x < width / 3) {
+                return Habitat.Type.ECOTONE;
+            } else {
+                return Habitat.Type.WOOD;
+            }
+
+        } else {
+            if (x >= width / 6 * 5) {
+                return Habitat.Type.MEADOW;
+            } else if (x >= width / 3 * 2) {
+                return Habitat.Type.ECOTONE;
+            } else {
+                return Habitat.Type.WOOD;
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public Habitat.Type get(int x, int y) {
+        return TYPES[types[x * height + y]];
+    }
+
+    public static int code(Habitat.Type type) {
+        return switch (type) {
+            case MEADOW -> 1;
+            case ECOTONE -> 2;
+            case WOOD -> 3;
+        };
+    }
+
+    static byte typeOfCode(int code, int x, int y) throws IOException {
+        return switch (code) {
+            case 1 -> (byte) Habitat.Type.MEADOW.ordinal();
+            case 2 -> (byte) Habitat.Type.ECOTONE.ordinal();
+            case 3 -> (byte) Habitat.Type.WOOD.ordinal();
+            default -> throw new IOException("Unexpected habitat code " + code + " of cell (" + x + ", " + y + "). " +
+                    "Possible values are: 1) meadow 2) ecotone 3) wood");
+        };
+    }
+
+    /*
+    Reads a binary raster if the file starts with MAGIC and an ESRI ASCII grid otherwise.
+     */
+    public static HabitatMap read(Path path) throws IOException {
+        try (var in = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+            in.mark(Integer.BYTES);
+            var magic = new DataInputStream(in).readInt();
+            in.reset();
+
+            try {
+                return magic == MAGIC ? readBinary(in) : readAscii(in);
+            } catch (IOException | NumberFormatException e) {
+                throw new IOException("Invalid habitat raster " + path + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static HabitatMap readBinary(InputStream in) throws IOException {
+        var data = new DataInputStream(in);
+        data.readInt();
+        var width = data.readInt();
+        var height = data.readInt();
+        var types = allocate(width, height);
+
+        var row = new byte[width];
+        for (int y = 0; y < height; ++y) {
+            data.readFully(row);
+            for (int x = 0; x < width; ++x) {
+                types[x * height + y] = typeOfCode(row[x], x, y);
+            }
+        }
+
+        return new HabitatMap(width, height, types);
+    }
+
+    private static HabitatMap readAscii(InputStream in) throws IOException {
+        var tokens = new Tokenizer(in);
+
+        var width = -1;
+        var height = -1;
+        var noData = Double.NaN;
+
+        /* The header ends with the first token which is a number instead of a key. */
+        var token = tokens.next();
+        while (token != null && !token.isEmpty() && Character.isLetter(token.charAt(0))) {
+            var value = tokens.next();
+            if (value == null) {
+                throw new EOFException("Missing value of " + token);
+            }
+
+            switch (token.toLowerCase()) {
+                case "ncols" -> width = Integer.parseInt(value);
+                case "nrows" -> height = Integer.parseInt(value);
+                case "nodata_value" -> noData = Double.parseDouble(value);
+                case "xllcorner", "xllcenter", "yllcorner", "yllcenter", "cellsize" -> {
+                }
+                default -> throw new IOException("Unexpected header key " + token);
+            }
+
+            token = tokens.next();
+        }
+
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Missing or invalid ncols or nrows");
+        }
+
+        var types = allocate(width, height);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                if (token == null) {
+                    throw new EOFException("Expected " + width * height + " cells, but found " + (y * width + x));
+                }
+
+                var value = Double.parseDouble(token);
+                if (value == noData) {
+                    throw new IOException("Cell (" + x + ", " + y + ") has no data");
+                }
+                if (value != Math.rint(value)) {
+                    throw new IOException("Unexpected habitat code " + token + " of cell (" + x + ", " + y + ")");
+                }
+                types[x * height + y] = typeOfCode((int) value, x, y);
+
+                token = tokens.next();
+            }
+        }
+
+        if (token != null) {
+            throw new IOException("More than " + width * height + " cells");
+        }
+
+        return new HabitatMap(width, height, types);
+    }
+
+    private static byte[] allocate(int width, int height) throws IOException {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IOException("Invalid raster size " + width + "x" + height);
+        }
+        return new byte[width * height];
+    }
+
+    /*
+    Splits the stream at whitespace, reusing a single buffer for the characters of a token.
+     */
+    private static class Tokenizer {
+        final InputStream in;
+        final StringBuilder token = new StringBuilder();
+
+        Tokenizer(InputStream in) {
+            this.in = in;
+        }
+
+        /*
+        The next token or null at the end of the stream.
+         */
+        String next() throws IOException {
+            int c = in.read();
+            while (c != -1 && Character.isWhitespace(c)) {
+                c = in.read();
+            }
+            if (c == -1) {
+                return null;
+            }
+
+            token.setLength(0);
+            while (c != -1 && !Character.isWhitespace(c)) {
+                token.append((char) c);
+                c = in.read();
+            }
+            return token.toString();
+        }
+    }
+
+    /*
+    Writes the landscape as a binary raster.
+     */
+    public void write(Path path) throws IOException {
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(width);
+            out.writeInt(height);
+
+            var row = new byte[width];
+            for (int y = 0; y < height; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    row[x] = (byte) code(get(x, y));
+                }
+                out.write(row);
+            }
+        }
+    }
+
+    /*
+    Serialises the landscape for a Worker, see Protocol.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(width);
+        out.writeInt(height);
+        out.write(types);
+    }
+
+    public static HabitatMap read(DataInputStream in) throws IOException {
+        var width = in.readInt();
+        var height = in.readInt();
+        var types = allocate(width, height);
+        in.readFully(types);
+        for (var type : types) {
+            if (type < 0 || type >= TYPES.length) {
+                throw new IOException("Unexpected habitat " + type);
+            }
+        }
+        return new HabitatMap(width, height, types);
+    }
+}
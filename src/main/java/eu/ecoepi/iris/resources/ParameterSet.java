@@ -0,0 +1,336 @@
+package eu.ecoepi.iris.resources;
+
+import eu.ecoepi.iris.CohortStateTicks;
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.components.TickAbundance;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+/*
+The rates and thresholds of a run, so that runs with different parameters can share one JVM.
+
+The defaults are the constants in Parameters. The days and values are kept in arrays indexed by
+the ordinals of Day and Value, the tables per habitat and per cohort in arrays indexed by the
+ordinals of Habitat.Type and CohortStateTicks. Cohorts without a rate have a rate of zero.
+
+A parameter set is immutable: with returns a changed copy. Every parameter is named like its constant
+in Parameters, the entries of tables by the name of the table and the habitat or cohort separated by
+a dot, e.g. FEEDING_RATE.NYMPHS_QUESTING or DESICCATION_RATE.WOOD. A parameter file is a properties
+file which changes the given parameters of the defaults, e.g.
+
+    LATE_FEEDING_TIME = 240
+    FEEDING_RATE.NYMPHS_QUESTING = 0.04
+ */
+public final class ParameterSet {
+
+    public enum Day {
+        BEGIN_OF_DEVELOPMENT,
+        END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS,
+        END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS,
+        END_OF_DEVELOPMENT_ADULTS_TO_LARVAE,
+        START_LARVAE_QUESTING,
+        LATE_FEEDING_TIME,
+        BEGIN_SPRING,
+        BEGIN_SUMMER,
+        BEGIN_AUTUMN,
+        BEGIN_WINTER
+    }
+
+    public enum Value {
+        ACTIVATION_NECESSARY_MAXIMAL_MAX_TEMP,
+        ACTIVATION_NECESSARY_MINIMAL_MAX_TEMP,
+        ACTIVATION_NECESSARY_MINIMAL_MEAN_TEMP,
+        ACTIVATION_NECESSARY_MINIMAL_HUMIDITY,
+        ACTIVATION_OPTIMAL_MINIMAL_MAX_TEMP,
+        ACTIVATION_OPTIMAL_MAXIMAL_MAX_TEMP,
+        ACTIVATION_OPTIMAL_MINIMAL_MEAN_TEMP,
+        ACTIVATION_OPTIMAL_MAXIMAL_MEAN_TEMP,
+        SUBOPTIMAL_SHARE_OF_ACTIVATION_RATE,
+        FREEZING_MIN_TEMP_WITHOUT_SNOW,
+        DESICCATION_MINIMAL_HUMIDITY,
+        DESICCATION_MINIMAL_MEAN_TEMP,
+        REPLACEMENT_RATE_RODENTS,
+        INFECTION_PROBABILITY
+    }
+
+    static final Day[] DAYS = Day.values();
+    static final Value[] VALUES = Value.values();
+    static final Habitat.Type[] HABITATS = Habitat.Type.values();
+    static final CohortStateTicks[] COHORTS = CohortStateTicks.values();
+
+    public static final ParameterSet DEFAULTS = defaults();
+
+    final int[] days = new int[DAYS.length];
+    final float[] values = new float[VALUES.length];
+
+    final float[] localClimateSpringAutumn = new float[HABITATS.length];
+    final float[] localClimateSummer = new float[HABITATS.length];
+    final float[] localHumidity = new float[HABITATS.length];
+    final float[] desiccationRate = new float[HABITATS.length];
+
+    final float[] freezingRate = new float[TickAbundance.COHORTS];
+    final float[] feedingRate = new float[TickAbundance.COHORTS];
+
+    private ParameterSet() {
+    }
+
+    private static ParameterSet defaults() {
+        var parameters = new ParameterSet();
+
+        parameters.days[Day.BEGIN_OF_DEVELOPMENT.ordinal()] = Parameters.BEGIN_OF_DEVELOPMENT;
+        parameters.days[Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS.ordinal()] = Parameters.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS;
+        parameters.days[Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS.ordinal()] = Parameters.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS;
+        parameters.days[Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE.ordinal()] = Parameters.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE;
+        parameters.days[Day.START_LARVAE_QUESTING.ordinal()] = Parameters.START_LARVAE_QUESTING;
+        parameters.days[Day.LATE_FEEDING_TIME.ordinal()] = Parameters.LATE_FEEDING_TIME;
+        parameters.days[Day.BEGIN_SPRING.ordinal()] = Parameters.BEGIN_SPRING;
+        parameters.days[Day.BEGIN_SUMMER.ordinal()] = Parameters.BEGIN_SUMMER;
+        parameters.days[Day.BEGIN_AUTUMN.ordinal()] = Parameters.BEGIN_AUTUMN;
+        parameters.days[Day.BEGIN_WINTER.ordinal()] = Parameters.BEGIN_WINTER;
+
+        parameters.values[Value.ACTIVATION_NECESSARY_MAXIMAL_MAX_TEMP.ordinal()] = Parameters.ACTIVATION_NECESSARY_MAXIMAL_MAX_TEMP;
+        parameters.values[Value.ACTIVATION_NECESSARY_MINIMAL_MAX_TEMP.ordinal()] = Parameters.ACTIVATION_NECESSARY_MINIMAL_MAX_TEMP;
+        parameters.values[Value.ACTIVATION_NECESSARY_MINIMAL_MEAN_TEMP.ordinal()] = Parameters.ACTIVATION_NECESSARY_MINIMAL_MEAN_TEMP;
+        parameters.values[Value.ACTIVATION_NECESSARY_MINIMAL_HUMIDITY.ordinal()] = Parameters.ACTIVATION_NECESSARY_MINIMAL_HUMIDITY;
+        parameters.values[Value.ACTIVATION_OPTIMAL_MINIMAL_MAX_TEMP.ordinal()] = Parameters.ACTIVATION_OPTIMAL_MINIMAL_MAX_TEMP;
+        parameters.values[Value.ACTIVATION_OPTIMAL_MAXIMAL_MAX_TEMP.ordinal()] = Parameters.ACTIVATION_OPTIMAL_MAXIMAL_MAX_TEMP;
+        parameters.values[Value.ACTIVATION_OPTIMAL_MINIMAL_MEAN_TEMP.ordinal()] = Parameters.ACTIVATION_OPTIMAL_MINIMAL_MEAN_TEMP;
+        parameters.values[Value.ACTIVATION_OPTIMAL_MAXIMAL_MEAN_TEMP.ordinal()] = Parameters.ACTIVATION_OPTIMAL_MAXIMAL_MEAN_TEMP;
+        parameters.values[Value.SUBOPTIMAL_SHARE_OF_ACTIVATION_RATE.ordinal()] = Parameters.SUBOPTIMAL_SHARE_OF_ACTIVATION_RATE;
+        parameters.values[Value.FREEZING_MIN_TEMP_WITHOUT_SNOW.ordinal()] = Parameters.FREEZING_MIN_TEMP_WITHOUT_SNOW;
+        parameters.values[Value.DESICCATION_MINIMAL_HUMIDITY.ordinal()] = Parameters.DESICCATION_MINIMAL_HUMIDITY;
+        parameters.values[Value.DESICCATION_MINIMAL_MEAN_TEMP.ordinal()] = Parameters.DESICCATION_MINIMAL_MEAN_TEMP;
+        parameters.values[Value.REPLACEMENT_RATE_RODENTS.ordinal()] = Parameters.REPLACEMENT_RATE_RODENTS;
+        parameters.values[Value.INFECTION_PROBABILITY.ordinal()] = Parameters.INFECTION_PROBABILITY;
+
+        for (var habitat : HABITATS) {
+            parameters.localClimateSpringAutumn[habitat.ordinal()] = Parameters.LOCAL_CLIMATE_SPRING_AUTUMN.get(habitat);
+            parameters.localClimateSummer[habitat.ordinal()] = Parameters.LOCAL_CLIMATE_SUMMER.get(habitat);
+            parameters.localHumidity[habitat.ordinal()] = Parameters.LOCAL_HUMIDITY.get(habitat);
+            parameters.desiccationRate[habitat.ordinal()] = Parameters.DESICCATION_RATE.get(habitat);
+        }
+        for (var cohort : COHORTS) {
+            parameters.freezingRate[cohort.ordinal()] = Parameters.FREEZING_RATE.getOrDefault(cohort, 0f);
+            parameters.feedingRate[cohort.ordinal()] = Parameters.FEEDING_RATE.getOrDefault(cohort, 0f);
+        }
+
+        return parameters;
+    }
+
+    private ParameterSet copy() {
+        var copy = new ParameterSet();
+        System.arraycopy(days, 0, copy.days, 0, days.length);
+        System.arraycopy(values, 0, copy.values, 0, values.length);
+        System.arraycopy(localClimateSpringAutumn, 0, copy.localClimateSpringAutumn, 0, localClimateSpringAutumn.length);
+        System.arraycopy(localClimateSummer, 0, copy.localClimateSummer, 0, localClimateSummer.length);
+        System.arraycopy(localHumidity, 0, copy.localHumidity, 0, localHumidity.length);
+        System.arraycopy(desiccationRate, 0, copy.desiccationRate, 0, desiccationRate.length);
+        System.arraycopy(freezingRate, 0, copy.freezingRate, 0, freezingRate.length);
+        System.arraycopy(feedingRate, 0, copy.feedingRate, 0, feedingRate.length);
+        return copy;
+    }
+
+    /*
+    Copy of this parameter set with the given parameter changed. Days are rounded to the nearest day.
+     */
+    public ParameterSet with(String name, double value) {
+        var copy = copy();
+        copy.set(name.trim(), value);
+        return copy;
+    }
+
+    private void set(String name, double value) {
+        var separator = name.indexOf('.');
+        if (separator < 0) {
+            for (var day : DAYS) {
+                if (day.name().equals(name)) {
+                    days[day.ordinal()] = (int) Math.round(value);
+                    return;
+                }
+            }
+            for (var parameter : VALUES) {
+                if (parameter.name().equals(name)) {
+                    values[parameter.ordinal()] = (float) value;
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("Unknown parameter " + name);
+        }
+
+        var table = name.substring(0, separator);
+        var key = name.substring(separator + 1);
+
+        switch (table) {
+            case "LOCAL_CLIMATE_SPRING_AUTUMN" -> localClimateSpringAutumn[Habitat.Type.valueOf(key).ordinal()] = (float) value;
+            case "LOCAL_CLIMATE_SUMMER" -> localClimateSummer[Habitat.Type.valueOf(key).ordinal()] = (float) value;
+            case "LOCAL_HUMIDITY" -> localHumidity[Habitat.Type.valueOf(key).ordinal()] = (float) value;
+            case "DESICCATION_RATE" -> desiccationRate[Habitat.Type.valueOf(key).ordinal()] = (float) value;
+            case "FREEZING_RATE" -> freezingRate[CohortStateTicks.valueOf(key).ordinal()] = (float) value;
+            case "FEEDING_RATE" -> feedingRate[CohortStateTicks.valueOf(key).ordinal()] = (float) value;
+            default -> throw new IllegalArgumentException("Unexpected value: " + table +
+                    ". Possible values are: \n" +
+                    "1) 'LOCAL_CLIMATE_SPRING_AUTUMN' \n" +
+                    "2) 'LOCAL_CLIMATE_SUMMER' \n" +
+                    "3) 'LOCAL_HUMIDITY' \n" +
+                    "4) 'DESICCATION_RATE' \n" +
+                    "5) 'FREEZING_RATE' \n" +
+                    "6) 'FEEDING_RATE' \n");
+        }
+    }
+
+    /*
+    The defaults changed by the parameters given in the properties file at path.
+     */
+    public static ParameterSet read(Path path) throws IOException {
+        var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+
+        var parameters = DEFAULTS.copy();
+        for (var name : properties.stringPropertyNames()) {
+            try {
+                parameters.set(name.trim(), Double.parseDouble(properties.getProperty(name).trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid parameter " + name + " in " + path + ": " + e.getMessage(), e);
+            }
+        }
+        return parameters;
+    }
+
+    public int day(Day day) {
+        return days[day.ordinal()];
+    }
+
+    public float value(Value value) {
+        return values[value.ordinal()];
+    }
+
+    public float getFeedingRate(CohortStateTicks stage) {
+        return feedingRate[stage.ordinal()];
+    }
+
+    public float getFreezingRate(CohortStateTicks stage) {
+        return freezingRate[stage.ordinal()];
+    }
+
+    public float getDesiccationRate(Habitat.Type habitat) {
+        return desiccationRate[habitat.ordinal()];
+    }
+
+    /*
+    Microclimate offset applied to the mean and maximum temperature of a habitat.
+    The minimum temperature is not adjusted.
+     */
+    public float localTemperatureAdjustment(int dayOfYear, Habitat.Type habitat) {
+        if ((dayOfYear > day(Day.BEGIN_SPRING) && dayOfYear <= day(Day.BEGIN_SUMMER)) ||
+                (dayOfYear > day(Day.BEGIN_AUTUMN) && dayOfYear < day(Day.BEGIN_WINTER))) { // Spring or autumn
+            return localClimateSpringAutumn[habitat.ordinal()];
+
+        } else if (dayOfYear > day(Day.BEGIN_SUMMER) && dayOfYear <= day(Day.BEGIN_AUTUMN)) { // Summer
+            return localClimateSummer[habitat.ordinal()];
+
+        }
+        return 0f;
+    }
+
+    public float localHumidity(float relativeHumidity, Habitat.Type habitat) {
+        var adjustedRelativeHumidity = relativeHumidity * localHumidity[habitat.ordinal()];
+        if (adjustedRelativeHumidity > 100) {
+            adjustedRelativeHumidity = 100;
+        }
+        return adjustedRelativeHumidity;
+    }
+
+    public float shareOfActivationRate(double maxTemperature, double meanTemperature, double relativeHumidity) {
+        var shareOfActivationRate = 0.0f;
+
+        if (maxTemperature < value(Value.ACTIVATION_NECESSARY_MAXIMAL_MAX_TEMP) &&
+                maxTemperature > value(Value.ACTIVATION_NECESSARY_MINIMAL_MAX_TEMP) &&
+                meanTemperature > value(Value.ACTIVATION_NECESSARY_MINIMAL_MEAN_TEMP) &&
+                relativeHumidity > value(Value.ACTIVATION_NECESSARY_MINIMAL_HUMIDITY)
+        ) {
+
+            if (maxTemperature > value(Value.ACTIVATION_OPTIMAL_MINIMAL_MAX_TEMP) &&
+                    maxTemperature < value(Value.ACTIVATION_OPTIMAL_MAXIMAL_MAX_TEMP) &&
+                    meanTemperature > value(Value.ACTIVATION_OPTIMAL_MINIMAL_MEAN_TEMP) &&
+                    meanTemperature < value(Value.ACTIVATION_OPTIMAL_MAXIMAL_MEAN_TEMP)
+            ) {
+                shareOfActivationRate = 1.0f;
+            } else {
+                shareOfActivationRate = value(Value.SUBOPTIMAL_SHARE_OF_ACTIVATION_RATE);
+            }
+        }
+
+        return shareOfActivationRate;
+    }
+
+    public boolean isFreezing(double minTemperature) {
+        return minTemperature < value(Value.FREEZING_MIN_TEMP_WITHOUT_SNOW);
+    }
+
+    public boolean isDesiccating(double relativeHumidity, double meanTemperature) {
+        return relativeHumidity < value(Value.DESICCATION_MINIMAL_HUMIDITY) &&
+                meanTemperature > value(Value.DESICCATION_MINIMAL_MEAN_TEMP);
+    }
+
+    /*
+    Serialises the parameter set for a Worker, see Protocol.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        for (var day : days) {
+            out.writeInt(day);
+        }
+        for (var table : new float[][]{values, localClimateSpringAutumn, localClimateSummer, localHumidity, desiccationRate, freezingRate, feedingRate}) {
+            for (var value : table) {
+                out.writeFloat(value);
+            }
+        }
+    }
+
+    public static ParameterSet read(DataInputStream in) throws IOException {
+        var parameters = new ParameterSet();
+        for (int i = 0; i < parameters.days.length; ++i) {
+            parameters.days[i] = in.readInt();
+        }
+        for (var table : new float[][]{parameters.values, parameters.localClimateSpringAutumn, parameters.localClimateSummer,
+                parameters.localHumidity, parameters.desiccationRate, parameters.freezingRate, parameters.feedingRate}) {
+            for (int i = 0; i < table.length; ++i) {
+                table[i] = in.readFloat();
+            }
+        }
+        return parameters;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ParameterSet that = (ParameterSet) o;
+        return Arrays.equals(days, that.days) &&
+                Arrays.equals(values, that.values) &&
+                Arrays.equals(localClimateSpringAutumn, that.localClimateSpringAutumn) &&
+                Arrays.equals(localClimateSummer, that.localClimateSummer) &&
+                Arrays.equals(localHumidity, that.localHumidity) &&
+                Arrays.equals(desiccationRate, that.desiccationRate) &&
+                Arrays.equals(freezingRate, that.freezingRate) &&
+                Arrays.equals(feedingRate, that.feedingRate);
+    }
+
+    @Override
+    public int hashCode() {
+        var result = Arrays.hashCode(days);
+        result = 31 * result + Arrays.hashCode(values);
+        result = 31 * result + Arrays.hashCode(desiccationRate);
+        result = 31 * result + Arrays.hashCode(freezingRate);
+        result = 31 * result + Arrays.hashCode(feedingRate);
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package eu.ecoepi.iris.resources;
+
+import org.apache.commons.math3.random.AbstractRandomGenerator;
+
+/*
+Counter-based random number generator Philox4x32-10 (Salmon et al. 2011, "Parallel random numbers:
+as easy as 1, 2, 3").
+
+Every block of random numbers is a pure function of the key (derived from the seed) and a
+128 bit counter. The counter is made up of a stream, selected by seek(day, cell, process),
+and the index of the draw within that stream. Hence the numbers used to process a cell on a
+given day do not depend on which cells were processed before or on which thread.
+ */
+public class Philox extends AbstractRandomGenerator {
+
+    static final int M0 = 0xD2511F53;
+    static final int M1 = 0xCD9E8D57;
+    static final int W0 = 0x9E3779B9;
+    static final int W1 = 0xBB67AE85;
+
+    int key0;
+    int key1;
+
+    int draw;
+    int cell;
+    int day;
+    int process;
+
+    final int[] block = new int[4];
+    int used = block.length;
+
+    public Philox(long seed) {
+        setSeed(seed);
+    }
+
+    /*
+    New generator with the same key, i.e. the same streams, positioned at the start of stream (0, 0, 0).
+     */
+    public Philox copy() {
+        return new Philox((key1 & 0xFFFFFFFFL) << 32 | (key0 & 0xFFFFFFFFL));
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        key0 = (int) seed;
+        key1 = (int) (seed >>> 32);
+        seek(0, 0, 0);
+    }
+
+    /*
+    Selects the stream of the given cell and process on the given day and restarts it at its first draw.
+     */
+    public void seek(int day, int cell, int process) {
+        this.day = day;
+        this.cell = cell;
+        this.process = process;
+        this.draw = 0;
+        this.used = block.length;
+    }
+
+    @Override
+    public double nextDouble() {
+        if (used == block.length) {
+            generate(draw++, cell, day, process, key0, key1, block);
+            used = 0;
+        }
+
+        var high = (block[used++] & 0xFFFFFFFFL) >>> 5;
+        var low = (block[used++] & 0xFFFFFFFFL) >>> 6;
+        return ((high << 26) | low) * 0x1.0p-53;
+    }
+
+    /*
+    Computes the block of four 32 bit words for the given counter and key.
+     */
+    public static void generate(int counter0, int counter1, int counter2, int counter3, int key0, int key1, int[] out) {
+        var c0 = counter0;
+        var c1 = counter1;
+        var c2 = counter2;
+        var c3 = counter3;
+        var k0 = key0;
+        var k1 = key1;
+
+        for (int round = 0; round < 10; ++round) {
+            if (round > 0) {
+                k0 += W0;
+                k1 += W1;
+            }
+
+            var product0 = (M0 & 0xFFFFFFFFL) * (c0 & 0xFFFFFFFFL);
+            var product1 = (M1 & 0xFFFFFFFFL) * (c2 & 0xFFFFFFFFL);
+
+            var hi0 = (int) (product0 >>> 32);
+            var lo0 = (int) product0;
+            var hi1 = (int) (product1 >>> 32);
+            var lo1 = (int) product1;
+
+            c0 = hi1 ^ c1 ^ k0;
+            c1 = lo1;
+            c2 = hi0 ^ c3 ^ k1;
+            c3 = lo0;
+        }
+
+        out[0] = c0;
+        out[1] = c1;
+        out[2] = c2;
+        out[3] = c3;
+    }
+}
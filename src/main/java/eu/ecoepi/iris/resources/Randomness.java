@@ -1,17 +1,203 @@
 package eu.ecoepi.iris.resources;
 
+import org.apache.commons.math3.random.AbstractRandomGenerator;
 import org.apache.commons.math3.random.RandomGenerator;
 
 public class Randomness {
 
+    /*
+    How the number of ticks (or hosts) undergoing a transition is determined:
+    ROUNDED rounds the expected number stochastically (see roundRandom), BINOMIAL draws it
+    from the binomial distribution of the individual transitions.
+     */
+    public enum Mode {
+        ROUNDED,
+        BINOMIAL
+    }
+
+    /*
+    The processes drawing random numbers, each with its own streams in a counter-based generator.
+     */
+    public enum Process {
+        ACTIVITY,
+        FEEDING,
+        TICK_LIFE_CYCLE,
+        HOST_LIFE_CYCLE
+    }
+
+    /*
+    Uniform random numbers are taken from the generator in blocks of up to BUFFER_SIZE.
+    After seeking a counter-based generator, the blocks start small and grow, as a single cell
+    and process usually needs only a few numbers.
+     */
+    static final int BUFFER_SIZE = 1024;
+    static final int MIN_REFILL = 8;
+
     final RandomGenerator rng;
+    final Mode mode;
+
+    /*
+    If set, every thread draws from its own instance and all calls are delegated to it.
+     */
+    final ThreadLocal<Randomness> perThread;
+
+    final double[] buffer = new double[BUFFER_SIZE];
+    int position = 0;
+    int filled = 0;
+    int refill = BUFFER_SIZE;
 
     public Randomness(RandomGenerator rng) {
+        this(rng, Mode.ROUNDED);
+    }
+
+    public Randomness(RandomGenerator rng, Mode mode) {
         this.rng = rng;
+        this.mode = mode;
+        this.perThread = null;
+    }
+
+    private Randomness(Randomness template) {
+        this.rng = template.rng;
+        this.mode = template.mode;
+        this.perThread = ThreadLocal.withInitial(template::copy);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /*
+    Independent instance drawing from the same streams, for use by another thread.
+    Only possible with a counter-based generator, as otherwise the numbers would depend on
+    how the work is distributed among the threads.
+     */
+    public Randomness copy() {
+        requireCounterBased();
+        return new Randomness(((Philox) rng).copy(), mode);
+    }
+
+    /*
+    Instance which can be used by several threads at once, each drawing from its own copy
+    (see copy). Like copy, this requires a counter-based generator.
+     */
+    public Randomness shareBetweenThreads() {
+        requireCounterBased();
+        return new Randomness(this);
+    }
+
+    private void requireCounterBased() {
+        if (!(rng instanceof Philox)) {
+            throw new IllegalStateException("Parallel processing requires the counter-based generator 'philox'");
+        }
+    }
+
+    /*
+    View of the buffered random numbers as a RandomGenerator, e.g. for sampling distributions.
+    Everything drawn through it is consumed from the same sequence as random().
+     */
+    public RandomGenerator asGenerator() {
+        return new AbstractRandomGenerator() {
+            @Override
+            public void setSeed(long seed) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public double nextDouble() {
+                return random();
+            }
+        };
+    }
+
+    /*
+    Switches a counter-based generator to the stream of the given cell and process on the given day,
+    so that the random numbers do not depend on the order in which cells are processed.
+    For other generators this does nothing and the numbers are drawn sequentially.
+     */
+    public void seek(int day, int cell, Process process) {
+        if (perThread != null) {
+            perThread.get().seek(day, cell, process);
+            return;
+        }
+        if (rng instanceof Philox) {
+            ((Philox) rng).seek(day, cell, process.ordinal());
+
+            position = 0;
+            filled = 0;
+            refill = MIN_REFILL;
+        }
     }
 
     public double random() {
-        return this.rng.nextDouble();
+        if (perThread != null) {
+            return perThread.get().random();
+        }
+        if (position == filled) {
+            refill();
+        }
+        return buffer[position++];
+    }
+
+    /*
+    Fills out[0] to out[length - 1] with uniform random numbers.
+     */
+    public void random(double[] out, int length) {
+        if (perThread != null) {
+            perThread.get().random(out, length);
+            return;
+        }
+        for (int i = 0; i < length; ) {
+            if (position == filled) {
+                refill();
+            }
+            var count = Math.min(length - i, filled - position);
+            System.arraycopy(buffer, position, out, i, count);
+            position += count;
+            i += count;
+        }
+    }
+
+    private void refill() {
+        for (int i = 0; i < refill; ++i) {
+            buffer[i] = rng.nextDouble();
+        }
+        position = 0;
+        filled = refill;
+        refill = Math.min(2 * refill, BUFFER_SIZE);
+    }
+
+    /*
+    Number of individuals out of count undergoing a transition, where expected is the
+    expected number, i.e. count times the transition probability.
+     */
+    public int transition(int count, float expected) {
+        if (perThread != null) {
+            return perThread.get().transition(count, expected);
+        }
+        if (mode == Mode.BINOMIAL) {
+            if (count <= 0) {
+                return 0;
+            }
+            return binomial(count, (double) expected / count);
+        }
+        return roundRandom(expected);
+    }
+
+    /*
+    Batch version of transition: out[i] = transition(counts[offset + i], expected[i]) for i < length.
+     */
+    public void transition(int[] counts, int offset, float[] expected, int[] out, int length) {
+        if (perThread != null) {
+            perThread.get().transition(counts, offset, expected, out, length);
+            return;
+        }
+        if (mode == Mode.BINOMIAL) {
+            for (int i = 0; i < length; ++i) {
+                out[i] = transition(counts[offset + i], expected[i]);
+            }
+        } else {
+            roundRandom(expected, out, length);
+        }
     }
 
     /*
@@ -21,6 +207,9 @@ public class Randomness {
     This allows processes that statistically affect less than a single tick to still happen.
      */
     public int roundRandom(float value) {
+        if (perThread != null) {
+            return perThread.get().roundRandom(value);
+        }
         int base = (int) value;
         float remainder = value - base;
 
@@ -32,4 +221,187 @@ public class Randomness {
         }
         return base;
     }
+
+    /*
+    Batch version of roundRandom: out[i] = roundRandom(values[i]) for i < length.
+     */
+    public void roundRandom(float[] values, int[] out, int length) {
+        if (perThread != null) {
+            perThread.get().roundRandom(values, out, length);
+            return;
+        }
+        for (int i = 0; i < length; ++i) {
+            var base = (int) values[i];
+            var remainder = values[i] - base;
+
+            if (remainder != 0 && random() < remainder) {
+                out[i] = base + 1;
+            } else {
+                out[i] = base;
+            }
+        }
+    }
+
+    /*
+    Draws from the binomial distribution with n trials and success probability p.
+    Small means are sampled by inversion, large means by the BTPE algorithm of
+    Kachitvichyanukul and Schmeiser (1988), whose cost does not grow with n.
+     */
+    public int binomial(int n, double p) {
+        if (perThread != null) {
+            return perThread.get().binomial(n, p);
+        }
+        if (n <= 0 || !(p > 0)) {
+            return 0;
+        }
+        if (p >= 1) {
+            return n;
+        }
+        if (p > 0.5) {
+            return n - binomial(n, 1 - p);
+        }
+        if (n * p < 30) {
+            return binomialInversion(n, p);
+        }
+        return binomialBtpe(n, p);
+    }
+
+    private int binomialInversion(int n, double p) {
+        var q = 1 - p;
+        var qn = Math.exp(n * Math.log(q));
+        var np = n * p;
+        var bound = Math.min(n, np + 10 * Math.sqrt(np * q + 1));
+
+        var x = 0;
+        var px = qn;
+        var u = random();
+
+        while (u > px) {
+            x++;
+            if (x > bound) {
+                x = 0;
+                px = qn;
+                u = random();
+            } else {
+                u -= px;
+                px = ((n - x + 1) * p * px) / (x * q);
+            }
+        }
+
+        return x;
+    }
+
+    private int binomialBtpe(int n, double p) {
+        var r = p;
+        var q = 1 - r;
+        var fm = n * r + r;
+        var m = (int) Math.floor(fm);
+        var nrq = n * r * q;
+
+        var p1 = Math.floor(2.195 * Math.sqrt(nrq) - 4.6 * q) + 0.5;
+        var xm = m + 0.5;
+        var xl = xm - p1;
+        var xr = xm + p1;
+        var c = 0.134 + 20.5 / (15.3 + m);
+
+        var a = (fm - xl) / (fm - xl * r);
+        var laml = a * (1 + a / 2);
+        a = (xr - fm) / (xr * q);
+        var lamr = a * (1 + a / 2);
+
+        var p2 = p1 * (1 + 2 * c);
+        var p3 = p2 + c / laml;
+        var p4 = p3 + c / lamr;
+
+        while (true) {
+            var u = random() * p4;
+            var v = random();
+            int y;
+
+            if (u <= p1) {
+                // Triangular region, accepted immediately
+                return (int) Math.floor(xm - p1 * v + u);
+            } else if (u <= p2) {
+                // Parallelograms
+                var x = xl + (u - p1) / c;
+                v = v * c + 1 - Math.abs(m - x + 0.5) / p1;
+                if (v > 1) {
+                    continue;
+                }
+                y = (int) Math.floor(x);
+            } else if (u <= p3) {
+                // Left exponential tail
+                y = (int) Math.floor(xl + Math.log(v) / laml);
+                if (y < 0 || v == 0) {
+                    continue;
+                }
+                v = v * (u - p2) * laml;
+            } else {
+                // Right exponential tail
+                y = (int) Math.floor(xr - Math.log(v) / lamr);
+                if (y > n || v == 0) {
+                    continue;
+                }
+                v = v * (u - p3) * lamr;
+            }
+
+            var k = Math.abs(y - m);
+            if (k <= 20 || k >= nrq / 2 - 1) {
+                // Explicit evaluation of the ratio of probabilities
+                var s = r / q;
+                var b = s * (n + 1);
+                var f = 1.0;
+                if (m < y) {
+                    for (int i = m + 1; i <= y; ++i) {
+                        f *= b / i - s;
+                    }
+                } else if (m > y) {
+                    for (int i = y + 1; i <= m; ++i) {
+                        f /= b / i - s;
+                    }
+                }
+                if (v <= f) {
+                    return y;
+                }
+                continue;
+            }
+
+            // Squeeze using upper and lower bounds on log(f(y))
+            var rho = (k / nrq) * ((k * (k / 3.0 + 0.625) + 1.0 / 6.0) / nrq + 0.5);
+            var t = -(double) k * k / (2 * nrq);
+            var logV = Math.log(v);
+            if (logV < t - rho) {
+                return y;
+            }
+            if (logV > t + rho) {
+                continue;
+            }
+
+            // Final acceptance test with Stirling's formula
+            double x1 = y + 1;
+            double f1 = m + 1;
+            double z = n + 1 - m;
+            double w = n - y + 1;
+            var x2 = x1 * x1;
+            var f2 = f1 * f1;
+            var z2 = z * z;
+            var w2 = w * w;
+
+            var bound = xm * Math.log(f1 / x1)
+                    + (n - m + 0.5) * Math.log(z / w)
+                    + (y - m) * Math.log(w * r / (x1 * q))
+                    + stirlingCorrection(f1, f2)
+                    + stirlingCorrection(z, z2)
+                    + stirlingCorrection(x1, x2)
+                    + stirlingCorrection(w, w2);
+
+            if (logV <= bound) {
+                return y;
+            }
+        }
+    }
+
+    private static double stirlingCorrection(double x, double x2) {
+        return (13680. - (462. - (132. - (99. - 140. / x2) / x2) / x2) / x2) / x / 166320.;
+    }
 }
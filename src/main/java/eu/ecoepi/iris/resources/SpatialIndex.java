@@ -2,19 +2,82 @@ package eu.ecoepi.iris.resources;
 
 import eu.ecoepi.iris.components.Position;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Optional;
 
+/*
+Maps grid positions to the entities of the cells at these positions.
+
+The entities are stored in a flat table indexed by x * height + y, so that looking up a
+neighbour on the torus is a few integer operations and does not allocate.
+ */
 public class SpatialIndex {
 
-    final Map<Position, Integer> map = new HashMap<>();
+    public static final int NONE = -1;
+
+    final int width;
+    final int height;
+    final int[] entities;
+
+    public SpatialIndex() {
+        this(Parameters.GRID_WIDTH, Parameters.GRID_HEIGHT);
+    }
+
+    public SpatialIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.entities = new int[width * height];
+        Arrays.fill(entities, NONE);
+    }
 
     public void insert(Position position, int entityId) {
-        map.put(position, entityId);
+        if (!contains(position.getX(), position.getY())) {
+            throw new IllegalArgumentException("Position (" + position.getX() + ", " + position.getY() +
+                    ") is outside of the " + width + "x" + height + " grid");
+        }
+        entities[position.getX() * height + position.getY()] = entityId;
     }
 
     public Optional<Integer> lookUp(Position position) {
-        return Optional.ofNullable(map.get(position));
+        if (!contains(position.getX(), position.getY())) {
+            return Optional.empty();
+        }
+        var entityId = entities[position.getX() * height + position.getY()];
+        return entityId != NONE ? Optional.of(entityId) : Optional.empty();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /*
+    Position displaced by (dx, dy) from the given one on the torus of this grid.
+     */
+    public Position moveBy(Position position, int dx, int dy) {
+        return position.moveBy(dx, dy, width, height);
+    }
+
+    /*
+    Entity of the cell displaced by (dx, dy) from the cell at (x, y), wrapping around the edges
+    of the grid, or NONE if no entity has been inserted there.
+     */
+    public int lookUp(int x, int y, int dx, int dy) {
+        var neighbourX = (x + dx) % width;
+        var neighbourY = (y + dy) % height;
+        if (neighbourX < 0) {
+            neighbourX += width;
+        }
+        if (neighbourY < 0) {
+            neighbourY += height;
+        }
+        return entities[neighbourX * height + neighbourY];
+    }
+
+    private boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
     }
 }
@@ -1,12 +1,30 @@
 package eu.ecoepi.iris.resources;
 
+/*
+Clock of the simulation. The current time step counts the days since the start of the run, while
+the seasonal thresholds in Parameters refer to the day of the year, which the calendar of the
+weather input provides (see WeatherData.getDayOfYear). Without a calendar, both are the same.
+ */
 public class TimeStep {
     private int current;
+    private final WeatherData calendar;
+
+    public TimeStep() {
+        this(null);
+    }
+
+    public TimeStep(WeatherData calendar) {
+        this.calendar = calendar;
+    }
 
     public int getCurrent() {
         return current;
     }
 
+    public int getDayOfYear() {
+        return calendar == null ? current : calendar.getDayOfYear(current);
+    }
+
     public void increment() {
         ++current;
     }
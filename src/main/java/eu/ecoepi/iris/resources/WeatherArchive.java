@@ -0,0 +1,187 @@
+package eu.ecoepi.iris.resources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+Many weather series, e.g. all years of several stations and climate models, packed into a single
+binary file which is memory-mapped instead of parsed. The WeatherData of an entry are views of the
+mapped file, so opening an archive only reads its index.
+
+All values are little-endian. The file starts with the header
+
+    int MAGIC, int VERSION, int number of entries
+
+followed by the index with one record per entry
+
+    int length of the name, UTF-8 bytes of the name, int number of days, long offset of the series
+
+and the series of all entries. The series of an entry are the mean temperature, minimum temperature,
+maximum temperature and humidity of all days, one float per day, starting at the offset given in
+the index, which is a multiple of four.
+
+An entry of an archive is addressed by the path of the archive and the name of the entry separated
+by SEPARATOR, e.g. input/weather.iwa#weather/dwd_regensburg/weather_2009 (see WeatherRepository).
+ */
+public class WeatherArchive {
+
+    public static final int MAGIC = 0x49524957;
+    public static final int VERSION = 1;
+    public static final char SEPARATOR = '#';
+
+    private static class Entry {
+        final int days;
+        final long offset;
+
+        Entry(int days, long offset) {
+            this.days = days;
+            this.offset = offset;
+        }
+    }
+
+    final ByteBuffer mapped;
+    final Map<String, Entry> entries;
+
+    private WeatherArchive(ByteBuffer mapped, Map<String, Entry> entries) {
+        this.mapped = mapped;
+        this.entries = entries;
+    }
+
+    public static WeatherArchive open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Weather archive " + path + " is larger than 2 GiB");
+            }
+
+            var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+            try {
+                if (mapped.getInt() != MAGIC) {
+                    throw new IOException(path + " is not a weather archive");
+                }
+                var version = mapped.getInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported weather archive version " + version + ", expected " + VERSION);
+                }
+
+                var count = mapped.getInt();
+                var entries = new LinkedHashMap<String, Entry>(2 * count);
+                for (int i = 0; i < count; ++i) {
+                    var name = new byte[mapped.getInt()];
+                    mapped.get(name);
+                    var days = mapped.getInt();
+                    var offset = mapped.getLong();
+
+                    if (offset % Float.BYTES != 0 || offset + 4L * days * Float.BYTES > mapped.capacity()) {
+                        throw new IOException("Corrupt index entry " + i + " in weather archive " + path);
+                    }
+                    entries.put(new String(name, StandardCharsets.UTF_8), new Entry(days, offset));
+                }
+
+                return new WeatherArchive(mapped, entries);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt weather archive " + path, e);
+            }
+        }
+    }
+
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    public WeatherData get(String name) {
+        var entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("No weather series " + name + " in archive");
+        }
+
+        var bytes = entry.days * Float.BYTES;
+        var offset = (int) entry.offset;
+
+        return new WeatherData(
+                series(offset, bytes),
+                series(offset + bytes, bytes),
+                series(offset + 2 * bytes, bytes),
+                series(offset + 3 * bytes, bytes)
+        );
+    }
+
+    private FloatBuffer series(int offset, int bytes) {
+        return mapped.slice(offset, bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /*
+    Writes the given weather series into a new archive, keeping the order of the map.
+     */
+    public static void write(Path path, Map<String, WeatherData> series) throws IOException {
+        var names = new ArrayList<byte[]>(series.size());
+        var indexSize = 3L * Integer.BYTES;
+        for (var name : series.keySet()) {
+            var bytes = name.getBytes(StandardCharsets.UTF_8);
+            names.add(bytes);
+            indexSize += Integer.BYTES + bytes.length + Integer.BYTES + Long.BYTES;
+        }
+
+        var offset = (indexSize + Float.BYTES - 1) / Float.BYTES * Float.BYTES;
+        var size = offset;
+        for (var weather : series.values()) {
+            size += 4L * weather.getDays() * Float.BYTES;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Weather archive would be larger than 2 GiB");
+        }
+
+        var buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(series.size());
+
+        var i = 0;
+        for (var weather : series.values()) {
+            var name = names.get(i++);
+            buffer.putInt(name.length);
+            buffer.put(name);
+            buffer.putInt(weather.getDays());
+            buffer.putLong(offset);
+            offset += 4L * weather.getDays() * Float.BYTES;
+        }
+
+        buffer.position((int) ((indexSize + Float.BYTES - 1) / Float.BYTES * Float.BYTES));
+        for (var weather : series.values()) {
+            for (int day = 0; day < weather.getDays(); ++day) {
+                buffer.putFloat(weather.getMeanTemperature(day));
+            }
+            for (int day = 0; day < weather.getDays(); ++day) {
+                buffer.putFloat(weather.getMinTemperature(day));
+            }
+            for (int day = 0; day < weather.getDays(); ++day) {
+                buffer.putFloat(weather.getMaxTemperature(day));
+            }
+            for (int day = 0; day < weather.getDays(); ++day) {
+                buffer.putFloat(weather.getHumidity(day));
+            }
+        }
+
+        buffer.flip();
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
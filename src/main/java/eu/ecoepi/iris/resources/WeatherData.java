@@ -0,0 +1,104 @@
+package eu.ecoepi.iris.resources;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/*
+Daily weather time series of a single year as read from a weather input file.
+The columns are mean temperature, minimum temperature, maximum temperature and relative humidity.
+
+The series are read-only buffers, either wrapping arrays parsed from a CSV file or views of a
+memory-mapped WeatherArchive, whose values are then read directly from the mapped file.
+
+The days are counted from the first day of the series. A single series covers a single year, so its
+days are also the days of the year. Series spanning several years, like WeatherStream, override
+getDayOfYear accordingly.
+ */
+public class WeatherData {
+
+    final FloatBuffer meanTemperature;
+    final FloatBuffer minTemperature;
+    final FloatBuffer maxTemperature;
+    final FloatBuffer humidity;
+
+    public WeatherData(float[] meanTemperature, float[] minTemperature, float[] maxTemperature, float[] humidity) {
+        this(FloatBuffer.wrap(meanTemperature), FloatBuffer.wrap(minTemperature), FloatBuffer.wrap(maxTemperature), FloatBuffer.wrap(humidity));
+    }
+
+    protected WeatherData() {
+        this(new float[0], new float[0], new float[0], new float[0]);
+    }
+
+    public WeatherData(FloatBuffer meanTemperature, FloatBuffer minTemperature, FloatBuffer maxTemperature, FloatBuffer humidity) {
+        this.meanTemperature = meanTemperature.asReadOnlyBuffer();
+        this.minTemperature = minTemperature.asReadOnlyBuffer();
+        this.maxTemperature = maxTemperature.asReadOnlyBuffer();
+        this.humidity = humidity.asReadOnlyBuffer();
+    }
+
+    public static WeatherData read(String path) throws IOException, CsvException {
+        var meanTemperature = new float[Parameters.TIME_STEPS + 1];
+        var minTemperature = new float[Parameters.TIME_STEPS + 1];
+        var maxTemperature = new float[Parameters.TIME_STEPS + 1];
+        var humidity = new float[Parameters.TIME_STEPS + 1];
+        var days = 0;
+
+        try (CSVReader reader = new CSVReaderBuilder(new FileReader(path))
+                .withSkipLines(1)
+                .build()) {
+            String[] nextLine;
+
+            while ((nextLine = reader.readNext()) != null) {
+                if (days == meanTemperature.length) {
+                    meanTemperature = Arrays.copyOf(meanTemperature, 2 * days);
+                    minTemperature = Arrays.copyOf(minTemperature, 2 * days);
+                    maxTemperature = Arrays.copyOf(maxTemperature, 2 * days);
+                    humidity = Arrays.copyOf(humidity, 2 * days);
+                }
+
+                meanTemperature[days] = Float.parseFloat(nextLine[0]);
+                minTemperature[days] = Float.parseFloat(nextLine[1]);
+                maxTemperature[days] = Float.parseFloat(nextLine[2]);
+                humidity[days] = Float.parseFloat(nextLine[3]);
+                days++;
+            }
+        }
+
+        return new WeatherData(
+                Arrays.copyOf(meanTemperature, days),
+                Arrays.copyOf(minTemperature, days),
+                Arrays.copyOf(maxTemperature, days),
+                Arrays.copyOf(humidity, days)
+        );
+    }
+
+    public int getDays() {
+        return meanTemperature.limit();
+    }
+
+    public int getDayOfYear(int day) {
+        return day;
+    }
+
+    public float getMeanTemperature(int day) {
+        return meanTemperature.get(day);
+    }
+
+    public float getMinTemperature(int day) {
+        return minTemperature.get(day);
+    }
+
+    public float getMaxTemperature(int day) {
+        return maxTemperature.get(day);
+    }
+
+    public float getHumidity(int day) {
+        return humidity.get(day);
+    }
+}
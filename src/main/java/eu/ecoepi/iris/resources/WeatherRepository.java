@@ -0,0 +1,157 @@
+package eu.ecoepi.iris.resources;
+
+import com.opencsv.exceptions.CsvException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/*
+Cache of parsed weather input files shared by all runs in the process, e.g. by the runs of a sweep,
+which would otherwise parse the same few files again for every run.
+
+WeatherData is immutable, so the same instance is handed out to every run. Every file is parsed only
+once, even if several threads ask for it at the same time, and the least recently used files are
+evicted once more than capacity files are cached. A file is parsed again if it changed since it was
+cached, as determined by its modification time and size.
+
+A path of the form archive#name, which is not a file itself, refers to the entry name of a WeatherArchive. Archives are only
+opened once and their entries are views of the mapped file, so they need no parsing at all.
+ */
+public class WeatherRepository {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final WeatherRepository SHARED = new WeatherRepository(DEFAULT_CAPACITY);
+
+    private static class Key {
+        final Path path;
+        final long modified;
+        final long size;
+
+        Key(Path path) throws IOException {
+            this.path = path.toAbsolutePath().normalize();
+            this.modified = Files.getLastModifiedTime(this.path).toMillis();
+            this.size = Files.size(this.path);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            var key = (Key) other;
+            return path.equals(key.path) && modified == key.modified && size == key.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * path.hashCode() + Long.hashCode(modified)) + Long.hashCode(size);
+        }
+    }
+
+    final int capacity;
+    final LinkedHashMap<Key, FutureTask<WeatherData>> entries;
+    final LinkedHashMap<Key, WeatherArchive> archives;
+
+    public WeatherRepository(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FutureTask<WeatherData>> eldest) {
+                return size() > WeatherRepository.this.capacity;
+            }
+        };
+        this.archives = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, WeatherArchive> eldest) {
+                return size() > WeatherRepository.this.capacity;
+            }
+        };
+    }
+
+    public static WeatherRepository shared() {
+        return SHARED;
+    }
+
+    public WeatherData get(String path) throws IOException, CsvException {
+        var separator = path.lastIndexOf(WeatherArchive.SEPARATOR);
+        if (separator >= 0 && !Files.exists(Paths.get(path))) {
+            return archive(path.substring(0, separator)).get(path.substring(separator + 1));
+        }
+
+        var key = new Key(Paths.get(path));
+
+        FutureTask<WeatherData> entry;
+        boolean owner = false;
+
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new FutureTask<>(() -> WeatherData.read(key.path.toString()));
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            entry.run();
+        }
+
+        try {
+            return entry.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + path, e);
+        } catch (ExecutionException e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+
+            var cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CsvException) {
+                throw (CsvException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Reading " + path + " failed", cause);
+        }
+    }
+
+    public WeatherArchive archive(String path) throws IOException {
+        var key = new Key(Paths.get(path));
+
+        synchronized (archives) {
+            var archive = archives.get(key);
+            if (archive == null) {
+                archive = WeatherArchive.open(key.path);
+                archives.put(key, archive);
+            }
+            return archive;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        synchronized (archives) {
+            archives.clear();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package eu.ecoepi.iris.resources;
+
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+Weather of a continuous run over the consecutive years firstYear up to lastYear, whose weather is
+given by one input per year, e.g. input/climate/<model>/csv_regensburg/weather_%d.csv.
+
+Every year has 365 or 366 days according to the Gregorian calendar and takes the first days of its
+input, so the day of the year starts again at zero on every first of January. The inputs are only
+read when needed: the year of the current day and the next readAhead years are loaded in the
+background, and earlier years are dropped, so at most readAhead + 1 years are held in memory,
+whatever the number of years. For this reason the years are not read through the shared
+WeatherRepository, which would keep up to its capacity of years, but through one of the stream's
+own holding no more years than the stream itself.
+The days have to be accessed in non-decreasing order, apart from the current year.
+
+Reading the weather of a day is safe from several threads.
+ */
+public class WeatherStream extends WeatherData {
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "weather-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Year {
+        final int start;
+        final int end;
+        final WeatherData weather;
+
+        Year(int start, int end, WeatherData weather) {
+            this.start = start;
+            this.end = end;
+            this.weather = weather;
+        }
+    }
+
+    final String pattern;
+    final int firstYear;
+    final int lastYear;
+    final int readAhead;
+
+    /*
+    The first day of the i-th year is yearStart[i], the end of the last year is yearStart[years].
+     */
+    final int[] yearStart;
+
+    final WeatherRepository repository;
+    final TreeMap<Integer, Future<WeatherData>> loading = new TreeMap<>();
+    private volatile Year current;
+
+    public WeatherStream(String pattern, int firstYear, int lastYear, int readAhead) {
+        if (lastYear < firstYear) {
+            throw new IllegalArgumentException("Last year " + lastYear + " is before first year " + firstYear);
+        }
+
+        this.pattern = pattern;
+        this.firstYear = firstYear;
+        this.lastYear = lastYear;
+        this.readAhead = readAhead;
+        this.repository = new WeatherRepository(readAhead + 1);
+
+        yearStart = new int[lastYear - firstYear + 2];
+        for (int year = firstYear; year <= lastYear; ++year) {
+            var index = year - firstYear;
+            yearStart[index + 1] = yearStart[index] + java.time.Year.of(year).length();
+        }
+    }
+
+    /*
+    Parses years given as first:last or as a single year.
+     */
+    public static WeatherStream of(String pattern, String years, int readAhead) {
+        var separator = years.indexOf(':');
+        if (separator < 0) {
+            var year = Integer.parseInt(years);
+            return new WeatherStream(pattern, year, year, readAhead);
+        }
+        return new WeatherStream(pattern, Integer.parseInt(years.substring(0, separator)),
+                Integer.parseInt(years.substring(separator + 1)), readAhead);
+    }
+
+    @Override
+    public int getDays() {
+        return yearStart[yearStart.length - 1];
+    }
+
+    @Override
+    public int getDayOfYear(int day) {
+        return day - year(day).start;
+    }
+
+    @Override
+    public float getMeanTemperature(int day) {
+        var year = year(day);
+        return year.weather.getMeanTemperature(day - year.start);
+    }
+
+    @Override
+    public float getMinTemperature(int day) {
+        var year = year(day);
+        return year.weather.getMinTemperature(day - year.start);
+    }
+
+    @Override
+    public float getMaxTemperature(int day) {
+        var year = year(day);
+        return year.weather.getMaxTemperature(day - year.start);
+    }
+
+    @Override
+    public float getHumidity(int day) {
+        var year = year(day);
+        return year.weather.getHumidity(day - year.start);
+    }
+
+    private Year year(int day) {
+        var year = current;
+        if (year != null && day >= year.start && day < year.end) {
+            return year;
+        }
+        return advance(day);
+    }
+
+    private synchronized Year advance(int day) {
+        var year = current;
+        if (year != null && day >= year.start && day < year.end) {
+            return year;
+        }
+        if (day < 0 || day >= getDays()) {
+            throw new IndexOutOfBoundsException("Day " + day + " is outside of the years " + firstYear + " to " + lastYear);
+        }
+        if (year != null && day < year.start) {
+            throw new IllegalStateException("Day " + day + " was already dropped from the weather stream");
+        }
+
+        var index = 0;
+        while (yearStart[index + 1] <= day) {
+            ++index;
+        }
+
+        loading.headMap(index).clear();
+        for (int ahead = index; ahead <= Math.min(index + readAhead, lastYear - firstYear); ++ahead) {
+            if (!loading.containsKey(ahead)) {
+                var path = String.format(pattern, firstYear + ahead);
+                loading.put(ahead, LOADER.submit(() -> repository.get(path)));
+            }
+        }
+
+        WeatherData weather;
+        try {
+            weather = loading.get(index).get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Reading the weather of " + (firstYear + index) + " failed", e);
+        }
+
+        var days = yearStart[index + 1] - yearStart[index];
+        if (weather.getDays() < days) {
+            throw new IllegalStateException("The weather of " + (firstYear + index) + " only has " + weather.getDays() +
+                    " days, but the year has " + days);
+        }
+
+        current = new Year(yearStart[index], yearStart[index + 1], weather);
+        return current;
+    }
+}
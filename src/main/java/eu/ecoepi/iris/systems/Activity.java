@@ -3,22 +3,20 @@ package eu.ecoepi.iris.systems;
 import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
 import com.artemis.annotations.Wire;
-import com.artemis.systems.IteratingSystem;
 import eu.ecoepi.iris.CohortStateTicks;
-import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.ParameterSet;
 import eu.ecoepi.iris.resources.Randomness;
 import eu.ecoepi.iris.resources.TimeStep;
-import eu.ecoepi.iris.components.Humidity;
-import eu.ecoepi.iris.components.Temperature;
+import eu.ecoepi.iris.components.Habitat;
 import eu.ecoepi.iris.components.TickAbundance;
 
-@All({TickAbundance.class, Temperature.class, Humidity.class})
-public class Activity extends IteratingSystem {
+@All({TickAbundance.class, Habitat.class})
+public class Activity extends ParallelIteratingSystem {
 
     private final float activationRate;
     ComponentMapper<TickAbundance> abundanceMapper;
-    ComponentMapper<Temperature> temperatureMapper;
-    ComponentMapper<Humidity> humidityMapper;
+    ComponentMapper<Habitat> habitatMapper;
 
     @Wire
     Randomness randomness;
@@ -26,50 +24,45 @@ public class Activity extends IteratingSystem {
     @Wire
     TimeStep timestep;
 
+    @Wire
+    ParameterSet parameters;
+
+    @Wire
+    Environment environment;
+
     public Activity(float activationRate) {
+        this(activationRate, 1);
+    }
+
+    public Activity(float activationRate, int threads) {
+        super(threads);
         this.activationRate = activationRate;
     }
 
     @Override
     protected void process(int entityId) {
         var abundance = abundanceMapper.get(entityId);
-        var temperature = temperatureMapper.get(entityId);
-        var humidity = humidityMapper.get(entityId);
-
-        var shareOfActivationRate = 0.0f;
-
-        if (temperature.getMaxTemperature() < Parameters.ACTIVATION_NECESSARY_MAXIMAL_MAX_TEMP &&
-                temperature.getMaxTemperature() > Parameters.ACTIVATION_NECESSARY_MINIMAL_MAX_TEMP &&
-                temperature.getMeanTemperature() > Parameters.ACTIVATION_NECESSARY_MINIMAL_MEAN_TEMP &&
-                humidity.getRelativeHumidity() > Parameters.ACTIVATION_NECESSARY_MINIMAL_HUMIDITY
-        ) {
-
-            if (temperature.getMaxTemperature() > Parameters.ACTIVATION_OPTIMAL_MINIMAL_MAX_TEMP &&
-                    temperature.getMaxTemperature() < Parameters.ACTIVATION_OPTIMAL_MAXIMAL_MAX_TEMP &&
-                    temperature.getMeanTemperature() > Parameters.ACTIVATION_OPTIMAL_MINIMAL_MEAN_TEMP &&
-                    temperature.getMeanTemperature() < Parameters.ACTIVATION_OPTIMAL_MAXIMAL_MEAN_TEMP
-            ) {
-                shareOfActivationRate = 1.0f;
-            } else {
-                shareOfActivationRate = Parameters.SUBOPTIMAL_SHARE_OF_ACTIVATION_RATE;
-            }
-        }
+        var habitat = habitatMapper.get(entityId);
+
+        randomness.seek(timestep.getCurrent(), entityId, Randomness.Process.ACTIVITY);
+
+        var shareOfActivationRate = environment.getShareOfActivationRate(habitat.getType().ordinal());
 
         var newQuestingLarvae = 0;
         var newInfectedQuestingLarvae = 0;
-        if (timestep.getCurrent() > Parameters.START_LARVAE_QUESTING) {
-            newQuestingLarvae = randomness.roundRandom(abundance.getStage(CohortStateTicks.LARVAE_INACTIVE) * activationRate * shareOfActivationRate);
-            newInfectedQuestingLarvae = randomness.roundRandom(abundance.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED) * activationRate * shareOfActivationRate);
+        if (timestep.getDayOfYear() > parameters.day(ParameterSet.Day.START_LARVAE_QUESTING)) {
+            newQuestingLarvae = randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_INACTIVE), abundance.getStage(CohortStateTicks.LARVAE_INACTIVE) * activationRate * shareOfActivationRate);
+            newInfectedQuestingLarvae = randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED), abundance.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED) * activationRate * shareOfActivationRate);
         }
-        var newQuestingNymphs = randomness.roundRandom(abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE) * activationRate * shareOfActivationRate);
-        var newQuestingAdults = randomness.roundRandom(abundance.getStage(CohortStateTicks.ADULTS_INACTIVE) * activationRate * shareOfActivationRate);
-        var newInactiveLarvae = randomness.roundRandom(abundance.getStage(CohortStateTicks.LARVAE_QUESTING) * activationRate * (1 - shareOfActivationRate));
-        var newInactiveNymphs = randomness.roundRandom(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING) * activationRate * (1 - shareOfActivationRate));
-        var newInactiveAdults = randomness.roundRandom(abundance.getStage(CohortStateTicks.ADULTS_QUESTING) * activationRate * (1 - shareOfActivationRate));
-
-        var newInfectedQuestingNymphs = randomness.roundRandom(abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED) * activationRate * shareOfActivationRate);
-        var newInfectedInactiveLarvae = randomness.roundRandom(abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED) * activationRate * (1 - shareOfActivationRate));
-        var newInfectedInactiveNymphs = randomness.roundRandom(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED) * activationRate * (1 - shareOfActivationRate));
+        var newQuestingNymphs = randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE), abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE) * activationRate * shareOfActivationRate);
+        var newQuestingAdults = randomness.transition(abundance.getStage(CohortStateTicks.ADULTS_INACTIVE), abundance.getStage(CohortStateTicks.ADULTS_INACTIVE) * activationRate * shareOfActivationRate);
+        var newInactiveLarvae = randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_QUESTING), abundance.getStage(CohortStateTicks.LARVAE_QUESTING) * activationRate * (1 - shareOfActivationRate));
+        var newInactiveNymphs = randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING), abundance.getStage(CohortStateTicks.NYMPHS_QUESTING) * activationRate * (1 - shareOfActivationRate));
+        var newInactiveAdults = randomness.transition(abundance.getStage(CohortStateTicks.ADULTS_QUESTING), abundance.getStage(CohortStateTicks.ADULTS_QUESTING) * activationRate * (1 - shareOfActivationRate));
+
+        var newInfectedQuestingNymphs = randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED), abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED) * activationRate * shareOfActivationRate);
+        var newInfectedInactiveLarvae = randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED), abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED) * activationRate * (1 - shareOfActivationRate));
+        var newInfectedInactiveNymphs = randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED), abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED) * activationRate * (1 - shareOfActivationRate));
 
         abundance.addToStage(CohortStateTicks.LARVAE_QUESTING, newQuestingLarvae - newInactiveLarvae);
         abundance.addToStage(CohortStateTicks.NYMPHS_QUESTING, newQuestingNymphs - newInactiveNymphs);
@@ -3,30 +3,34 @@ package eu.ecoepi.iris.systems;
 import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
 import com.artemis.annotations.Wire;
-import com.artemis.systems.IteratingSystem;
 import eu.ecoepi.iris.*;
 import eu.ecoepi.iris.components.HostAbundance;
 import eu.ecoepi.iris.components.Position;
 import eu.ecoepi.iris.components.TickAbundance;
-import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.DispersalKernel;
+import eu.ecoepi.iris.resources.ParameterSet;
 import eu.ecoepi.iris.resources.Randomness;
 import eu.ecoepi.iris.resources.SpatialIndex;
 import eu.ecoepi.iris.resources.TimeStep;
-import org.apache.commons.math3.distribution.EnumeratedDistribution;
-import org.apache.commons.math3.random.RandomGenerator;
-import org.apache.commons.math3.util.Pair;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
+/*
+Questing ticks of every cell feed on hosts and drop off engorged at a random neighbouring cell.
+
+With more than one thread, every chunk of cells only changes its own cells and collects the engorged
+ticks dropped off anywhere in its own Deposits. Afterwards the deposits of all chunks are added to
+the cells, again in parallel but for disjoint cells, so the results do not depend on the number of
+threads either.
+ */
 @All({TickAbundance.class, HostAbundance.class, Position.class})
-public class Feeding extends IteratingSystem {
+public class Feeding extends ParallelIteratingSystem {
 
     ComponentMapper<TickAbundance> tickAbundanceMapper;
     ComponentMapper<HostAbundance> hostAbundanceMapper;
     ComponentMapper<Position> positionMapper;
 
-    final EnumeratedDistribution<Integer> distribution;
+    final DispersalKernel dispersal = new DispersalKernel();
 
     @Wire
     TimeStep timestep;
@@ -37,49 +41,122 @@ public class Feeding extends IteratingSystem {
     @Wire
     Randomness randomness;
 
-    public Feeding(RandomGenerator rng) {
-        final List<Pair<Integer, Double>> distanceProbabilities = new ArrayList<>();
+    @Wire
+    ParameterSet parameters;
+
+    static final CohortStateTicks[] STAGES = CohortStateTicks.values();
+
+    Deposits[] chunkDeposits;
+
+    public Feeding() {
+        this(1);
+    }
 
-        for (int i = 0, n = Parameters.DISTANCE_PROB.length; i < n; ++i) {
-            distanceProbabilities.add(new Pair<>(i + 1, Parameters.DISTANCE_PROB[i]));
+    public Feeding(int threads) {
+        super(threads);
+    }
+
+    @Override
+    protected void initialize() {
+        super.initialize();
+
+        chunkDeposits = new Deposits[threads];
+        for (int i = 0; i < threads; ++i) {
+            chunkDeposits[i] = new Deposits();
         }
+    }
 
-        for (int i = 0, n = distanceProbabilities.size(); i < n; ++i) {
-            var distance = distanceProbabilities.get(i);
-            distanceProbabilities.add(new Pair<>(-distance.getFirst(), distance.getSecond()));
+    @Override
+    protected void processSystem() {
+        if (!isParallel()) {
+            super.processSystem();
+            return;
+        }
+
+        var entities = subscription.getEntities();
+        var ids = entities.getData();
+        var capacity = 0;
+        for (int i = 0, n = entities.size(); i < n; ++i) {
+            capacity = Math.max(capacity, ids[i] + 1);
         }
+        for (var deposits : chunkDeposits) {
+            deposits.ensureCapacity(capacity);
+        }
+
+        forEachChunk((chunk, chunkIds, start, end) -> {
+            for (int i = start; i < end; ++i) {
+                feed(chunkIds[i], chunkDeposits[chunk]);
+            }
+        });
 
-        distribution = new EnumeratedDistribution<>(rng, distanceProbabilities);
+        forEachChunk((chunk, chunkIds, start, end) -> {
+            for (int i = start; i < end; ++i) {
+                collectDeposits(chunkIds[i]);
+            }
+        });
     }
 
     @Override
     protected void process(int entityId) {
+        feed(entityId, null);
+    }
+
+    /*
+    Adds the ticks dropped off at the given cell by all chunks, in the order of the chunks.
+     */
+    private void collectDeposits(int entityId) {
+        var tickAbundance = tickAbundanceMapper.get(entityId);
+
+        for (var stage : STAGES) {
+            var number = 0;
+            for (var deposits : chunkDeposits) {
+                number += deposits.take(stage, entityId);
+            }
+            if (number != 0) {
+                tickAbundance.addToStage(stage, number);
+            }
+        }
+    }
+
+    /*
+    Engorged ticks dropped off at the target cell, either added to it directly or,
+    if deposits are given, collected to be added later.
+     */
+    private void deposit(Deposits deposits, int target, CohortStateTicks stage, int number) {
+        if (deposits == null) {
+            tickAbundanceMapper.get(target).addToStage(stage, number);
+        } else {
+            deposits.add(target, stage, number);
+        }
+    }
+
+    private void feed(int entityId, Deposits deposits) {
         var tickAbundance = tickAbundanceMapper.get(entityId);
         var hostAbundance = hostAbundanceMapper.get(entityId);
         var position = positionMapper.get(entityId);
 
-        var lateFeeding = timestep.getCurrent() >= Parameters.LATE_FEEDING_TIME;
+        randomness.seek(timestep.getCurrent(), entityId, Randomness.Process.FEEDING);
+
+        var lateFeeding = timestep.getDayOfYear() >= parameters.day(ParameterSet.Day.LATE_FEEDING_TIME);
         var rodentPrevalence = hostAbundance.getRodentsInfected() / (float) (hostAbundance.getRodentsSusceptible() + hostAbundance.getRodentsInfected());
 
         {
-            var x = distribution.sample();
-            var y = distribution.sample();
-            var neighbourToRandom = index.lookUp(position.moveBy(x, y));
-            var abundanceToRandom = tickAbundanceMapper.get(neighbourToRandom.get());
+            var displacement = dispersal.sample(randomness);
+            var target = index.lookUp(position.getX(), position.getY(), dispersal.getX(displacement), dispersal.getY(displacement));
 
-            var feedingLarvae = tickAbundance.removeFromStage(CohortStateTicks.LARVAE_QUESTING, Parameters.FEEDING_RATE.get(CohortStateTicks.LARVAE_QUESTING), randomness);
-            var feedingInfectedLarvae = tickAbundance.removeFromStage(CohortStateTicks.LARVAE_QUESTING_INFECTED, Parameters.FEEDING_RATE.get(CohortStateTicks.LARVAE_QUESTING_INFECTED), randomness);
-            var newInfectedLarvae = randomness.roundRandom(Parameters.INFECTION_PROBABILITY * feedingLarvae * rodentPrevalence);
+            var feedingLarvae = tickAbundance.removeFromStage(CohortStateTicks.LARVAE_QUESTING, parameters.getFeedingRate(CohortStateTicks.LARVAE_QUESTING), randomness);
+            var feedingInfectedLarvae = tickAbundance.removeFromStage(CohortStateTicks.LARVAE_QUESTING_INFECTED, parameters.getFeedingRate(CohortStateTicks.LARVAE_QUESTING_INFECTED), randomness);
+            var newInfectedLarvae = randomness.transition(feedingLarvae, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingLarvae * rodentPrevalence);
 
             feedingLarvae -= newInfectedLarvae;
             feedingInfectedLarvae += newInfectedLarvae;
 
             if (lateFeeding) {
-                abundanceToRandom.addToStage(CohortStateTicks.LARVAE_LATE_ENGORGED, feedingLarvae);
-                abundanceToRandom.addToStage(CohortStateTicks.LARVAE_LATE_ENGORGED_INFECTED, feedingInfectedLarvae);
+                deposit(deposits, target, CohortStateTicks.LARVAE_LATE_ENGORGED, feedingLarvae);
+                deposit(deposits, target, CohortStateTicks.LARVAE_LATE_ENGORGED_INFECTED, feedingInfectedLarvae);
             } else {
-                abundanceToRandom.addToStage(CohortStateTicks.LARVAE_ENGORGED, feedingLarvae);
-                abundanceToRandom.addToStage(CohortStateTicks.LARVAE_ENGORGED_INFECTED, feedingInfectedLarvae);
+                deposit(deposits, target, CohortStateTicks.LARVAE_ENGORGED, feedingLarvae);
+                deposit(deposits, target, CohortStateTicks.LARVAE_ENGORGED_INFECTED, feedingInfectedLarvae);
             }
             tickAbundance.addFeedingEvents(CohortStateTicks.LARVAE_QUESTING, feedingLarvae);
             tickAbundance.addFeedingEvents(CohortStateTicks.LARVAE_QUESTING_INFECTED, feedingInfectedLarvae);
@@ -87,44 +164,78 @@ public class Feeding extends IteratingSystem {
         }
 
         {
-            var x = distribution.sample();
-            var y = distribution.sample();
-            var neighbourToRandom = index.lookUp(position.moveBy(x, y));
-            var abundanceToRandom = tickAbundanceMapper.get(neighbourToRandom.get());
+            var displacement = dispersal.sample(randomness);
+            var target = index.lookUp(position.getX(), position.getY(), dispersal.getX(displacement), dispersal.getY(displacement));
 
-            var feedingNymphs = tickAbundance.removeFromStage(CohortStateTicks.NYMPHS_QUESTING, Parameters.FEEDING_RATE.get(CohortStateTicks.NYMPHS_QUESTING), randomness);
-            var feedingInfectedNymphs = tickAbundance.removeFromStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED, Parameters.FEEDING_RATE.get(CohortStateTicks.NYMPHS_QUESTING_INFECTED), randomness);
-            var newInfectedNymphs = randomness.roundRandom(Parameters.INFECTION_PROBABILITY * feedingNymphs * rodentPrevalence);
+            var feedingNymphs = tickAbundance.removeFromStage(CohortStateTicks.NYMPHS_QUESTING, parameters.getFeedingRate(CohortStateTicks.NYMPHS_QUESTING), randomness);
+            var feedingInfectedNymphs = tickAbundance.removeFromStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED, parameters.getFeedingRate(CohortStateTicks.NYMPHS_QUESTING_INFECTED), randomness);
+            var newInfectedNymphs = randomness.transition(feedingNymphs, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingNymphs * rodentPrevalence);
 
             feedingNymphs -= newInfectedNymphs;
             feedingInfectedNymphs += newInfectedNymphs;
 
             if (lateFeeding) {
-                abundanceToRandom.addToStage(CohortStateTicks.NYMPHS_LATE_ENGORGED, feedingNymphs);
-                abundanceToRandom.addToStage(CohortStateTicks.NYMPHS_LATE_ENGORGED_INFECTED, feedingInfectedNymphs);
+                deposit(deposits, target, CohortStateTicks.NYMPHS_LATE_ENGORGED, feedingNymphs);
+                deposit(deposits, target, CohortStateTicks.NYMPHS_LATE_ENGORGED_INFECTED, feedingInfectedNymphs);
             } else {
-                abundanceToRandom.addToStage(CohortStateTicks.NYMPHS_ENGORGED, feedingNymphs);
-                abundanceToRandom.addToStage(CohortStateTicks.NYMPHS_ENGORGED_INFECTED, feedingInfectedNymphs);
+                deposit(deposits, target, CohortStateTicks.NYMPHS_ENGORGED, feedingNymphs);
+                deposit(deposits, target, CohortStateTicks.NYMPHS_ENGORGED_INFECTED, feedingInfectedNymphs);
             }
             tickAbundance.addFeedingEvents(CohortStateTicks.NYMPHS_QUESTING, feedingNymphs);
             tickAbundance.addFeedingEvents(CohortStateTicks.NYMPHS_QUESTING_INFECTED, feedingInfectedNymphs);
             tickAbundance.addFeedingEventNewInfectedNymphs(newInfectedNymphs);
 
-            var newInfectedRodents = randomness.roundRandom(Parameters.INFECTION_PROBABILITY * feedingInfectedNymphs * (1.0f - rodentPrevalence));
+            var newInfectedRodents = randomness.transition(feedingInfectedNymphs, parameters.value(ParameterSet.Value.INFECTION_PROBABILITY) * feedingInfectedNymphs * (1.0f - rodentPrevalence));
             hostAbundance.addRodentsSusceptible(-newInfectedRodents);
             hostAbundance.addRodentsInfected(newInfectedRodents);
         }
 
         {
-            var x = distribution.sample();
-            var y = distribution.sample();
-            var neighbourToRandom = index.lookUp(position.moveBy(x, y));
-            var abundanceToRandom = tickAbundanceMapper.get(neighbourToRandom.get());
-            var feedingAdults = randomness.roundRandom(tickAbundance.getStage(CohortStateTicks.ADULTS_QUESTING) * Parameters.FEEDING_RATE.get(CohortStateTicks.ADULTS_QUESTING));
+            var displacement = dispersal.sample(randomness);
+            var target = index.lookUp(position.getX(), position.getY(), dispersal.getX(displacement), dispersal.getY(displacement));
+            var feedingAdults = randomness.transition(tickAbundance.getStage(CohortStateTicks.ADULTS_QUESTING), tickAbundance.getStage(CohortStateTicks.ADULTS_QUESTING) * parameters.getFeedingRate(CohortStateTicks.ADULTS_QUESTING));
 
             tickAbundance.addToStage(CohortStateTicks.ADULTS_QUESTING, -feedingAdults);
-            abundanceToRandom.addToStage(CohortStateTicks.ADULTS_ENGORGED, feedingAdults);
+            deposit(deposits, target, CohortStateTicks.ADULTS_ENGORGED, feedingAdults);
             tickAbundance.addFeedingEvents(CohortStateTicks.ADULTS_QUESTING, feedingAdults);
         }
     }
+
+    /*
+    Numbers of engorged ticks per stage and target cell, which are collected by one chunk.
+    The array of a stage is only allocated once ticks of this stage are dropped off.
+     */
+    static class Deposits {
+        final int[][] numbers = new int[TickAbundance.COHORTS][];
+        int capacity = 0;
+
+        void ensureCapacity(int capacity) {
+            if (capacity > this.capacity) {
+                for (int stage = 0; stage < numbers.length; ++stage) {
+                    if (numbers[stage] != null) {
+                        numbers[stage] = Arrays.copyOf(numbers[stage], capacity);
+                    }
+                }
+                this.capacity = capacity;
+            }
+        }
+
+        void add(int target, CohortStateTicks stage, int number) {
+            var stageNumbers = numbers[stage.ordinal()];
+            if (stageNumbers == null) {
+                stageNumbers = numbers[stage.ordinal()] = new int[capacity];
+            }
+            stageNumbers[target] += number;
+        }
+
+        int take(CohortStateTicks stage, int target) {
+            var stageNumbers = numbers[stage.ordinal()];
+            if (stageNumbers == null) {
+                return 0;
+            }
+            var number = stageNumbers[target];
+            stageNumbers[target] = 0;
+            return number;
+        }
+    }
 }
@@ -0,0 +1,169 @@
+package eu.ecoepi.iris.systems;
+
+import com.artemis.BaseEntitySystem;
+import com.artemis.ComponentMapper;
+import com.artemis.annotations.All;
+import com.artemis.annotations.Wire;
+import com.artemis.utils.IntBag;
+import eu.ecoepi.iris.components.*;
+import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.SpatialIndex;
+
+import java.util.Arrays;
+
+/*
+Runs Weather, Activity, Feeding, TickLifeCycle and HostLifeCycle in a single sweep over all cells
+instead of one sweep per system. The separate systems have to be registered in the same world;
+they are disabled here and their per-cell processing is invoked from this system.
+
+Weather, Activity, Feeding and HostLifeCycle only depend on the state of the visited cell, so they
+run in one visit. Feeding additionally scatters engorged ticks into neighbouring cells, whose
+development has to see these ticks. Therefore TickLifeCycle trails behind: a cell's life cycle is
+processed as soon as every cell that can drop engorged ticks into it has fed. For a grid created
+column by column, this is a window of a few columns behind the sweep; only the cells reached by
+wrapping around the edges of the landscape wait until the end of the sweep.
+
+Every cell sees exactly the same state as with the separate systems, only the random numbers are
+drawn in a different order. With a counter-based generator (Philox), where every cell and process
+has its own random stream, the results are identical.
+ */
+@All({TickAbundance.class, HostAbundance.class, Position.class, Habitat.class, Temperature.class, Humidity.class})
+public class FusedDailyUpdate extends BaseEntitySystem {
+
+    static final int MAX_DISTANCE = Parameters.DISTANCE_PROB.length;
+
+    ComponentMapper<Position> positionMapper;
+
+    Weather weather;
+    Activity activity;
+    Feeding feeding;
+    TickLifeCycle tickLifeCycle;
+    HostLifeCycle hostLifeCycle;
+
+    @Wire
+    SpatialIndex index;
+
+    /*
+    The life cycles to process after visiting the i-th entity are schedule[scheduleStart[i]] up to
+    schedule[scheduleStart[i + 1]] (exclusive).
+     */
+    int[] scheduleStart;
+    int[] schedule;
+    boolean scheduleValid = false;
+
+    @Override
+    protected void initialize() {
+        weather.setEnabled(false);
+        activity.setEnabled(false);
+        feeding.setEnabled(false);
+        tickLifeCycle.setEnabled(false);
+        hostLifeCycle.setEnabled(false);
+    }
+
+    @Override
+    protected void inserted(int entityId) {
+        scheduleValid = false;
+    }
+
+    @Override
+    protected void removed(int entityId) {
+        scheduleValid = false;
+    }
+
+    @Override
+    protected void processSystem() {
+        var entities = subscription.getEntities();
+        if (!scheduleValid) {
+            buildSchedule(entities);
+            scheduleValid = true;
+        }
+
+        weather.updateEnvironment();
+
+        var ids = entities.getData();
+        for (int i = 0, n = entities.size(); i < n; ++i) {
+            visit(ids[i]);
+
+            for (int j = scheduleStart[i]; j < scheduleStart[i + 1]; ++j) {
+                tickLifeCycle.process(schedule[j]);
+            }
+        }
+    }
+
+    private void visit(int entityId) {
+        weather.process(entityId);
+        activity.process(entityId);
+        feeding.process(entityId);
+        hostLifeCycle.process(entityId);
+    }
+
+    private void buildSchedule(IntBag entities) {
+        var ids = entities.getData();
+        var n = entities.size();
+
+        var maxId = -1;
+        for (int i = 0; i < n; ++i) {
+            maxId = Math.max(maxId, ids[i]);
+        }
+        var order = new int[maxId + 1];
+        Arrays.fill(order, -1);
+        for (int i = 0; i < n; ++i) {
+            order[ids[i]] = i;
+        }
+
+        /*
+        The sources of a cell form the product of the possible x and y displacements,
+        so the latest source is found by taking the maximum along y first, then along x.
+         */
+        var latestAlongY = new int[n];
+        for (int i = 0; i < n; ++i) {
+            var position = positionMapper.get(ids[i]);
+            latestAlongY[i] = latestSource(order, position, 0, 1, null);
+        }
+
+        var ready = new int[n];
+        var scheduleStart = new int[n + 1];
+        for (int i = 0; i < n; ++i) {
+            var position = positionMapper.get(ids[i]);
+            ready[i] = Math.max(i, latestSource(order, position, 1, 0, latestAlongY));
+            scheduleStart[ready[i] + 1]++;
+        }
+        for (int i = 0; i < n; ++i) {
+            scheduleStart[i + 1] += scheduleStart[i];
+        }
+
+        var schedule = new int[n];
+        var next = Arrays.copyOf(scheduleStart, n);
+        for (int i = 0; i < n; ++i) {
+            schedule[next[ready[i]]++] = ids[i];
+        }
+
+        this.scheduleStart = scheduleStart;
+        this.schedule = schedule;
+    }
+
+    /*
+    Latest position in the sweep among the cells displaced from the given position by
+    -MAX_DISTANCE to MAX_DISTANCE (excluding zero) along the given axis.
+    If latest is given, the value stored for the displaced cell is used instead of its own position.
+     */
+    private int latestSource(int[] order, Position position, int dx, int dy, int[] latest) {
+        var result = -1;
+
+        for (int distance = -MAX_DISTANCE; distance <= MAX_DISTANCE; ++distance) {
+            if (distance == 0) {
+                continue;
+            }
+
+            var source = index.lookUp(position.getX(), position.getY(), distance * dx, distance * dy);
+            if (source == SpatialIndex.NONE || source >= order.length || order[source] < 0) {
+                continue;
+            }
+
+            var i = order[source];
+            result = Math.max(result, latest != null ? latest[i] : i);
+        }
+
+        return result;
+    }
+}
@@ -3,24 +3,40 @@ package eu.ecoepi.iris.systems;
 import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
 import com.artemis.annotations.Wire;
-import com.artemis.systems.IteratingSystem;
 import eu.ecoepi.iris.components.HostAbundance;
-import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.ParameterSet;
 import eu.ecoepi.iris.resources.Randomness;
+import eu.ecoepi.iris.resources.TimeStep;
 
 @All({HostAbundance.class})
-public class HostLifeCycle extends IteratingSystem {
+public class HostLifeCycle extends ParallelIteratingSystem {
 
     ComponentMapper<HostAbundance> abundanceMapper;
 
     @Wire
     Randomness randomness;
 
+    @Wire
+    TimeStep timestep;
+
+    @Wire
+    ParameterSet parameters;
+
+    public HostLifeCycle() {
+        this(1);
+    }
+
+    public HostLifeCycle(int threads) {
+        super(threads);
+    }
+
     @Override
     protected void process(int entityId) {
         var abundance = abundanceMapper.get(entityId);
 
-        var replacedInfectedRodents = randomness.roundRandom((float) abundance.getRodentsInfected() * Parameters.REPLACEMENT_RATE_RODENTS);
+        randomness.seek(timestep.getCurrent(), entityId, Randomness.Process.HOST_LIFE_CYCLE);
+
+        var replacedInfectedRodents = randomness.transition(abundance.getRodentsInfected(), (float) abundance.getRodentsInfected() * parameters.value(ParameterSet.Value.REPLACEMENT_RATE_RODENTS));
 
         abundance.addRodentsSusceptible(replacedInfectedRodents);
         abundance.addRodentsInfected(-replacedInfectedRodents);
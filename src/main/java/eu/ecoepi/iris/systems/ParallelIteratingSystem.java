@@ -0,0 +1,104 @@
+package eu.ecoepi.iris.systems;
+
+import com.artemis.BaseEntitySystem;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+Like IteratingSystem, but with more than one thread the subscribed entities are split into one
+contiguous chunk per thread and the chunks are processed concurrently on a ForkJoinPool.
+
+This is only correct for systems whose process(entityId) reads and writes nothing but the components
+of the given entity. Random numbers have to be drawn from a Randomness shared between threads
+(see Randomness.shareBetweenThreads), where every thread has its own generator and every entity seeks
+its own stream, so that the results do not depend on the number of threads.
+ */
+public abstract class ParallelIteratingSystem extends BaseEntitySystem {
+
+    /*
+    Processes the entities ids[start] up to ids[end] (exclusive), which make up the given chunk.
+     */
+    protected interface Chunk {
+        void process(int chunk, int[] ids, int start, int end);
+    }
+
+    final int threads;
+    ForkJoinPool pool;
+
+    protected ParallelIteratingSystem(int threads) {
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    protected boolean isParallel() {
+        return pool != null;
+    }
+
+    @Override
+    protected void initialize() {
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    @Override
+    protected void dispose() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    protected abstract void process(int entityId);
+
+    @Override
+    protected void processSystem() {
+        if (pool == null) {
+            var entities = subscription.getEntities();
+            var ids = entities.getData();
+            for (int i = 0, n = entities.size(); i < n; ++i) {
+                process(ids[i]);
+            }
+        } else {
+            forEachChunk((chunk, ids, start, end) -> {
+                for (int i = start; i < end; ++i) {
+                    process(ids[i]);
+                }
+            });
+        }
+    }
+
+    /*
+    Runs the action for every chunk of the subscribed entities on the pool and waits for all of them.
+     */
+    protected void forEachChunk(Chunk action) {
+        var entities = subscription.getEntities();
+        var ids = entities.getData();
+        var size = entities.size();
+
+        var tasks = new ArrayList<Callable<Void>>(threads);
+        for (int chunk = 0; chunk < threads; ++chunk) {
+            var start = (int) ((long) size * chunk / threads);
+            var end = (int) ((long) size * (chunk + 1) / threads);
+            var index = chunk;
+
+            tasks.add(() -> {
+                action.process(index, ids, start, end);
+                return null;
+            });
+        }
+
+        for (var future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Processing of " + getClass().getSimpleName() + " failed", e);
+            }
+        }
+    }
+}
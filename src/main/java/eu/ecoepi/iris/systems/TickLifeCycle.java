@@ -3,20 +3,18 @@ package eu.ecoepi.iris.systems;
 import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
 import com.artemis.annotations.Wire;
-import com.artemis.systems.IteratingSystem;
 import eu.ecoepi.iris.CohortStateTicks;
-import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.ParameterSet;
 import eu.ecoepi.iris.resources.Randomness;
 import eu.ecoepi.iris.resources.TimeStep;
 import eu.ecoepi.iris.components.*;
 
-@All({TickAbundance.class, Habitat.class, Temperature.class, Humidity.class})
-public class TickLifeCycle extends IteratingSystem {
+@All({TickAbundance.class, Habitat.class})
+public class TickLifeCycle extends ParallelIteratingSystem {
 
     ComponentMapper<TickAbundance> abundanceMapper;
     ComponentMapper<Habitat> habitatMapper;
-    ComponentMapper<Temperature> temperatureMapper;
-    ComponentMapper<Humidity> humidityMapper;
 
     @Wire
     TimeStep timestep;
@@ -24,28 +22,44 @@ public class TickLifeCycle extends IteratingSystem {
     @Wire
     Randomness randomness;
 
+    @Wire
+    ParameterSet parameters;
+
+    @Wire
+    Environment environment;
+
+    static final Habitat.Type[] HABITATS = Habitat.Type.values();
+
+    public TickLifeCycle() {
+        this(1);
+    }
+
+    public TickLifeCycle(int threads) {
+        super(threads);
+    }
+
     @Override
     protected void process(int entityId) {
         var abundance = abundanceMapper.get(entityId);
-        var habitat = habitatMapper.get(entityId);
-        var temperature = temperatureMapper.get(entityId);
-        var humidity = humidityMapper.get(entityId);
+        var habitat = habitatMapper.get(entityId).getType().ordinal();
+
+        randomness.seek(timestep.getCurrent(), entityId, Randomness.Process.TICK_LIFE_CYCLE);
 
         development(abundance);
-        desiccation(abundance, habitat, temperature, humidity);
-        freezing(abundance, temperature);
+        desiccation(abundance, habitat);
+        freezing(abundance, habitat);
 
     }
 
     private void development(TickAbundance abundance) {
-        var currentTimeStep = timestep.getCurrent();
+        var currentTimeStep = timestep.getDayOfYear();
 
-        if (currentTimeStep >= Parameters.BEGIN_OF_DEVELOPMENT) {
+        if (currentTimeStep >= parameters.day(ParameterSet.Day.BEGIN_OF_DEVELOPMENT)) {
 
-            if (currentTimeStep < Parameters.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS) {
-                var remainingDays = Parameters.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS - currentTimeStep;
-                var nextStageNymphs = randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_ENGORGED) / (float) remainingDays);
-                var nextStageInfectedNymphs = randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_ENGORGED_INFECTED) / (float) remainingDays);
+            if (currentTimeStep < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS)) {
+                var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_LARVAE_TO_NYMPHS) - currentTimeStep;
+                var nextStageNymphs = randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_ENGORGED), (float) abundance.getStage(CohortStateTicks.LARVAE_ENGORGED) / (float) remainingDays);
+                var nextStageInfectedNymphs = randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_ENGORGED_INFECTED), (float) abundance.getStage(CohortStateTicks.LARVAE_ENGORGED_INFECTED) / (float) remainingDays);
                 abundance.addToStage(CohortStateTicks.NYMPHS_INACTIVE, nextStageNymphs);
                 abundance.addToStage(CohortStateTicks.LARVAE_ENGORGED, -nextStageNymphs);
                 abundance.addToStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED, nextStageInfectedNymphs);
@@ -56,51 +70,51 @@ public class TickLifeCycle extends IteratingSystem {
             The infection dynamics is currently not applied to adult ticks as the model only
             simulates a single year and we are primarily interested in infected nymphs.
             */
-            if (currentTimeStep < Parameters.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS) {
-                var remainingDays = Parameters.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS - currentTimeStep;
-                var nextStageAdults = randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED) / (float) remainingDays);
+            if (currentTimeStep < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS)) {
+                var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_NYMPHS_TO_ADULTS) - currentTimeStep;
+                var nextStageAdults = randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED), (float) abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED) / (float) remainingDays);
                 var nextStageAdultsFromInfectedEngorgedNymphs =
-                        randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED_INFECTED) / (float) remainingDays);
+                        randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED_INFECTED), (float) abundance.getStage(CohortStateTicks.NYMPHS_ENGORGED_INFECTED) / (float) remainingDays);
                 abundance.addToStage(CohortStateTicks.ADULTS_INACTIVE, nextStageAdults + nextStageAdultsFromInfectedEngorgedNymphs);
                 abundance.addToStage(CohortStateTicks.NYMPHS_ENGORGED, -nextStageAdults);
                 abundance.addToStage(CohortStateTicks.NYMPHS_ENGORGED_INFECTED, -nextStageAdultsFromInfectedEngorgedNymphs);
             }
 
-            if (currentTimeStep < Parameters.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE) {
-                var remainingDays = Parameters.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE - currentTimeStep;
-                var nextStageLarvae = randomness.roundRandom((float) abundance.getStage(CohortStateTicks.ADULTS_ENGORGED) / (float) remainingDays);
+            if (currentTimeStep < parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE)) {
+                var remainingDays = parameters.day(ParameterSet.Day.END_OF_DEVELOPMENT_ADULTS_TO_LARVAE) - currentTimeStep;
+                var nextStageLarvae = randomness.transition(abundance.getStage(CohortStateTicks.ADULTS_ENGORGED), (float) abundance.getStage(CohortStateTicks.ADULTS_ENGORGED) / (float) remainingDays);
                 abundance.addToStage(CohortStateTicks.LARVAE_INACTIVE, nextStageLarvae);
                 abundance.addToStage(CohortStateTicks.ADULTS_ENGORGED, -nextStageLarvae);
             }
         }
     }
 
-    private void freezing(TickAbundance abundance, Temperature temperature) {
-        if (temperature.getMinTemperature() < Parameters.FREEZING_MIN_TEMP_WITHOUT_SNOW) {
+    private void freezing(TickAbundance abundance, int habitat) {
+        if (environment.isFreezing(habitat)) {
 
             var frozenInactiveLarvae =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_INACTIVE) * Parameters.FREEZING_RATE.get(CohortStateTicks.LARVAE_INACTIVE));
+                    randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_INACTIVE), (float) abundance.getStage(CohortStateTicks.LARVAE_INACTIVE) * parameters.getFreezingRate(CohortStateTicks.LARVAE_INACTIVE));
             var frozenInactiveNymphs =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE) * Parameters.FREEZING_RATE.get(CohortStateTicks.NYMPHS_INACTIVE));
+                    randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE), (float) abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE) * parameters.getFreezingRate(CohortStateTicks.NYMPHS_INACTIVE));
             var frozenInactiveAdults =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.ADULTS_INACTIVE) * Parameters.FREEZING_RATE.get(CohortStateTicks.ADULTS_INACTIVE));
+                    randomness.transition(abundance.getStage(CohortStateTicks.ADULTS_INACTIVE), (float) abundance.getStage(CohortStateTicks.ADULTS_INACTIVE) * parameters.getFreezingRate(CohortStateTicks.ADULTS_INACTIVE));
 
             var frozenQuestingLarvae =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING) * Parameters.FREEZING_RATE.get(CohortStateTicks.LARVAE_QUESTING));
+                    randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_QUESTING), (float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING) * parameters.getFreezingRate(CohortStateTicks.LARVAE_QUESTING));
             var frozenQuestingNymphs =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING) * Parameters.FREEZING_RATE.get(CohortStateTicks.NYMPHS_QUESTING));
+                    randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING), (float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING) * parameters.getFreezingRate(CohortStateTicks.NYMPHS_QUESTING));
             var frozenQuestingAdults =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.ADULTS_QUESTING) * Parameters.FREEZING_RATE.get(CohortStateTicks.ADULTS_QUESTING));
+                    randomness.transition(abundance.getStage(CohortStateTicks.ADULTS_QUESTING), (float) abundance.getStage(CohortStateTicks.ADULTS_QUESTING) * parameters.getFreezingRate(CohortStateTicks.ADULTS_QUESTING));
 
             var frozenInfectedInactiveLarvae =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED) * Parameters.FREEZING_RATE.get(CohortStateTicks.LARVAE_INACTIVE_INFECTED));
+                    randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED), (float) abundance.getStage(CohortStateTicks.LARVAE_INACTIVE_INFECTED) * parameters.getFreezingRate(CohortStateTicks.LARVAE_INACTIVE_INFECTED));
             var frozenInfectedInactiveNymphs =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED) * Parameters.FREEZING_RATE.get(CohortStateTicks.NYMPHS_INACTIVE_INFECTED));
+                    randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED), (float) abundance.getStage(CohortStateTicks.NYMPHS_INACTIVE_INFECTED) * parameters.getFreezingRate(CohortStateTicks.NYMPHS_INACTIVE_INFECTED));
 
             var frozenInfectedQuestingLarvae =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED) * Parameters.FREEZING_RATE.get(CohortStateTicks.LARVAE_QUESTING_INFECTED));
+                    randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED), (float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED) * parameters.getFreezingRate(CohortStateTicks.LARVAE_QUESTING_INFECTED));
             var frozenInfectedQuestingNymphs =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED) * Parameters.FREEZING_RATE.get(CohortStateTicks.NYMPHS_QUESTING_INFECTED));
+                    randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED), (float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED) * parameters.getFreezingRate(CohortStateTicks.NYMPHS_QUESTING_INFECTED));
 
             abundance.addToStage(CohortStateTicks.LARVAE_INACTIVE, -frozenInactiveLarvae);
             abundance.addToStage(CohortStateTicks.NYMPHS_INACTIVE, -frozenInactiveNymphs);
@@ -118,18 +132,18 @@ public class TickLifeCycle extends IteratingSystem {
         }
     }
 
-    private void desiccation(TickAbundance abundance, Habitat habitat, Temperature temperature, Humidity humidity) {
-        if (humidity.getRelativeHumidity() < Parameters.DESICCATION_MINIMAL_HUMIDITY &&
-                temperature.getMeanTemperature() > Parameters.DESICCATION_MINIMAL_MEAN_TEMP) {
+    private void desiccation(TickAbundance abundance, int habitat) {
+        if (environment.isDesiccating(habitat)) {
+            var rate = parameters.getDesiccationRate(HABITATS[habitat]);
 
-            var desiccatedLarvae = randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING) * Parameters.DESICCATION_RATE.get(habitat.getType()));
-            var desiccatedNymphs = randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING) * Parameters.DESICCATION_RATE.get(habitat.getType()));
-            var desiccatedAdults = randomness.roundRandom((float) abundance.getStage(CohortStateTicks.ADULTS_QUESTING) * Parameters.DESICCATION_RATE.get(habitat.getType()));
+            var desiccatedLarvae = randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_QUESTING), (float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING) * rate);
+            var desiccatedNymphs = randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING), (float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING) * rate);
+            var desiccatedAdults = randomness.transition(abundance.getStage(CohortStateTicks.ADULTS_QUESTING), (float) abundance.getStage(CohortStateTicks.ADULTS_QUESTING) * rate);
 
             var desiccatedInfectedLarvae =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED) * Parameters.DESICCATION_RATE.get(habitat.getType()));
+                    randomness.transition(abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED), (float) abundance.getStage(CohortStateTicks.LARVAE_QUESTING_INFECTED) * rate);
             var desiccatedInfectedNymphs =
-                    randomness.roundRandom((float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED) * Parameters.DESICCATION_RATE.get(habitat.getType()));
+                    randomness.transition(abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED), (float) abundance.getStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED) * rate);
 
             abundance.addToStage(CohortStateTicks.LARVAE_QUESTING, -desiccatedLarvae);
             abundance.addToStage(CohortStateTicks.NYMPHS_QUESTING, -desiccatedNymphs);
@@ -139,4 +153,4 @@ public class TickLifeCycle extends IteratingSystem {
             abundance.addToStage(CohortStateTicks.NYMPHS_QUESTING_INFECTED, -desiccatedInfectedNymphs);
         }
     }
-}
\ No newline at end of file
+}
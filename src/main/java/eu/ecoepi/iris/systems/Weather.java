@@ -3,81 +3,73 @@ package eu.ecoepi.iris.systems;
 import com.artemis.ComponentMapper;
 import com.artemis.annotations.All;
 import com.artemis.annotations.Wire;
-import com.artemis.systems.IteratingSystem;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvException;
-import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.ParameterSet;
 import eu.ecoepi.iris.components.*;
 import eu.ecoepi.iris.resources.TimeStep;
+import eu.ecoepi.iris.resources.WeatherData;
+import eu.ecoepi.iris.resources.WeatherRepository;
 
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 @All({Habitat.class})
-public class Weather extends IteratingSystem {
+public class Weather extends ParallelIteratingSystem {
 
     ComponentMapper<Temperature> temperatureMapper;
     ComponentMapper<Humidity> humidityMapper;
     ComponentMapper<Habitat> habitatMapper;
 
-    final List<Float> meanTempTimeSeries = new ArrayList<>();
-    final List<Float> minTempTimeSeries = new ArrayList<>();
-    final List<Float> maxTempTimeSeries = new ArrayList<>();
-    final List<Float> humidityTimeSeries = new ArrayList<>();
+    final WeatherData weather;
 
     @Wire
     TimeStep timestep;
 
+    @Wire
+    ParameterSet parameters;
+
+    @Wire
+    Environment environment;
+
     public Weather(String path) throws IOException, CsvException {
-        CSVReader reader = new CSVReaderBuilder(new FileReader(path))
-                .withSkipLines(1)
-                .build();
-        String[] nextLine;
-
-        while ((nextLine = reader.readNext()) != null) {
-            meanTempTimeSeries.add(Float.parseFloat(nextLine[0]));
-            minTempTimeSeries.add(Float.parseFloat(nextLine[1]));
-            maxTempTimeSeries.add(Float.parseFloat(nextLine[2]));
-            humidityTimeSeries.add(Float.parseFloat(nextLine[3]));
-        }
+        this(WeatherRepository.shared().get(path));
     }
 
-    @Override
-    protected void process(int entityId) {
-        var temperature = temperatureMapper.get(entityId);
-        var humidity = humidityMapper.get(entityId);
-        var habitat = habitatMapper.get(entityId);
+    public Weather(WeatherData weather) {
+        this(weather, 1);
+    }
 
-        var currentTimeStep = timestep.getCurrent();
-        var adjustedMeanTemperature = 0f;
-        var adjustedMinTemperature = 0f;
-        var adjustedMaxTemperature = 0f;
+    public Weather(String path, int threads) throws IOException, CsvException {
+        this(WeatherRepository.shared().get(path), threads);
+    }
 
-        if ((currentTimeStep > Parameters.BEGIN_SPRING && currentTimeStep <= Parameters.BEGIN_SUMMER) ||
-                (currentTimeStep > Parameters.BEGIN_AUTUMN && currentTimeStep < Parameters.BEGIN_WINTER)) { // Spring or autumn
+    public Weather(WeatherData weather, int threads) {
+        super(threads);
+        this.weather = weather;
+    }
 
-            var microTempSpringAutumn = Parameters.LOCAL_CLIMATE_SPRING_AUTUMN.get(habitat.getType());
-            adjustedMeanTemperature = microTempSpringAutumn;
-            adjustedMaxTemperature = microTempSpringAutumn;
+    @Override
+    protected void begin() {
+        updateEnvironment();
+    }
 
-        } else if (currentTimeStep > Parameters.BEGIN_SUMMER && currentTimeStep <= Parameters.BEGIN_AUTUMN) { // Summer
-            var microTempSummer = Parameters.LOCAL_CLIMATE_SUMMER.get(habitat.getType());
-            adjustedMeanTemperature = microTempSummer;
-            adjustedMaxTemperature = microTempSummer;
+    /*
+    Computes the local weather of every habitat for the current day, see Environment.
+     */
+    void updateEnvironment() {
+        environment.update(parameters, weather, timestep.getCurrent());
+    }
 
-        }
+    @Override
+    protected void process(int entityId) {
+        var temperature = temperatureMapper.get(entityId);
+        var humidity = humidityMapper.get(entityId);
+        var habitat = habitatMapper.get(entityId).getType().ordinal();
 
-        temperature.setMeanTemperature(meanTempTimeSeries.get(currentTimeStep) + adjustedMeanTemperature);
-        temperature.setMinTemperature(minTempTimeSeries.get(currentTimeStep) + adjustedMinTemperature);
-        temperature.setMaxTemperature(maxTempTimeSeries.get(currentTimeStep) + adjustedMaxTemperature);
+        temperature.setMeanTemperature(environment.getMeanTemperature(habitat));
+        temperature.setMinTemperature(environment.getMinTemperature(habitat));
+        temperature.setMaxTemperature(environment.getMaxTemperature(habitat));
 
-        var adjustedRelativeHumidity = humidityTimeSeries.get(currentTimeStep) * Parameters.LOCAL_HUMIDITY.get(habitat.getType());
-        if (adjustedRelativeHumidity > 100) {
-            adjustedRelativeHumidity = 100;
-        }
-        humidity.setRelativeHumidity(adjustedRelativeHumidity);
+        humidity.setRelativeHumidity(environment.getHumidity(habitat));
     }
 }
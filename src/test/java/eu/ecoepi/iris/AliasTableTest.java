@@ -0,0 +1,57 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.resources.AliasTable;
+import eu.ecoepi.iris.resources.DispersalKernel;
+import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.Randomness;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AliasTableTest {
+
+    @Test
+    public void sampleFrequencies() {
+        var weights = new double[]{0.5, 0.0, 2.0, 1.0, 0.5};
+        var table = new AliasTable(weights);
+        var randomness = new Randomness(new MersenneTwister(42));
+
+        var samples = 400_000;
+        var counts = new int[weights.length];
+        for (int i = 0; i < samples; ++i) {
+            counts[table.sample(randomness)]++;
+        }
+
+        assertEquals(0, counts[1]);
+        for (int i = 0; i < weights.length; ++i) {
+            assertEquals(weights[i] / 4.0, counts[i] / (double) samples, 0.005);
+        }
+    }
+
+    @Test
+    public void dispersalMarginals() {
+        var kernel = new DispersalKernel();
+        var randomness = new Randomness(new MersenneTwister(42));
+        var n = Parameters.DISTANCE_PROB.length;
+
+        var samples = 400_000;
+        var countsX = new int[2 * n + 1];
+        var countsY = new int[2 * n + 1];
+        for (int i = 0; i < samples; ++i) {
+            var displacement = kernel.sample(randomness);
+            countsX[kernel.getX(displacement) + n]++;
+            countsY[kernel.getY(displacement) + n]++;
+        }
+
+        assertEquals(0, countsX[n]);
+        assertEquals(0, countsY[n]);
+        for (int d = 1; d <= n; ++d) {
+            var expected = Parameters.DISTANCE_PROB[d - 1] / 2;
+            assertEquals(expected, countsX[n + d] / (double) samples, 0.005);
+            assertEquals(expected, countsX[n - d] / (double) samples, 0.005);
+            assertEquals(expected, countsY[n + d] / (double) samples, 0.005);
+            assertEquals(expected, countsY[n - d] / (double) samples, 0.005);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.observers.AsyncTableWriter;
+import eu.ecoepi.iris.observers.Column;
+import eu.ecoepi.iris.observers.TableWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncTableWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameOutputAsSynchronousWriter() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        for (var outputMode : new String[]{"csv_timeseries", "csv_timeseries_summary_habitats"}) {
+            var synchronous = run(outputMode, 0, weather);
+
+            assertTrue(synchronous.size() > 1);
+            assertEquals(outputMode, synchronous, run(outputMode, 1, weather));
+            assertEquals(outputMode, synchronous, run(outputMode, 8, weather));
+        }
+    }
+
+    @Test
+    public void failureOfTargetIsReported() {
+        var columns = new Column[]{Column.integer("tick")};
+        var writer = new AsyncTableWriter(new FailingTableWriter(), columns, 2);
+
+        try {
+            for (int tick = 0; tick < 10 * AsyncTableWriter.BATCH; ++tick) {
+                writer.writeInteger(tick);
+                writer.endRow();
+            }
+            writer.close();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void closingTwiceDoesNothing() throws Exception {
+        var output = folder.getRoot().toPath().resolve("twice.csv");
+        var columns = new Column[]{Column.integer("tick")};
+        var writer = TableWriter.open(output.toString(), "csv", 2, columns);
+
+        writer.writeInteger(1);
+        writer.endRow();
+        writer.close();
+        writer.close();
+
+        assertEquals(List.of("tick", "1"), Files.readAllLines(output));
+    }
+
+    private List<String> run(String outputMode, int outputBuffers, String weather) throws Exception {
+        var output = folder.getRoot().toPath().resolve(outputMode + "_" + outputBuffers + ".csv");
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output.toString();
+        options.outputMode = outputMode;
+        options.outputBuffers = outputBuffers;
+        options.engine = "dense";
+
+        Model.run(options);
+
+        return Files.readAllLines(output);
+    }
+
+    private static class FailingTableWriter implements TableWriter {
+
+        @Override
+        public void writeInteger(int value) {
+        }
+
+        @Override
+        public void writeReal(double value) {
+        }
+
+        @Override
+        public void writeCategory(int ordinal) {
+        }
+
+        @Override
+        public void endRow() {
+            throw new IllegalStateException("disk full");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.observers.Column;
+import eu.ecoepi.iris.observers.ColumnarReader;
+import eu.ecoepi.iris.observers.ColumnarTableWriter;
+import eu.ecoepi.iris.observers.TableWriter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarOutputTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameValuesAsCsv() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        for (var outputMode : new String[]{
+                "csv_timeseries",
+                "csv_timeseries_summary",
+                "csv_timeseries_summary_habitats",
+                "csv_timeseries_nymphs",
+                "csv_timeseries_nymphs_habitats",
+                "csv_timeseries_infection"}) {
+            var csv = run(outputMode, "csv", weather);
+            var columnar = run(outputMode, "columnar", weather);
+
+            var lines = Files.readAllLines(csv);
+            var table = ColumnarReader.read(columnar);
+            var columns = table.getColumns();
+
+            assertEquals(outputMode, lines.size() - 1, table.getRows());
+            assertEquals(outputMode, lines.get(0).split(",").length, columns.length);
+            assertTrue(outputMode, Files.size(columnar) < Files.size(csv));
+
+            for (int row = 0; row < table.getRows(); ++row) {
+                var values = lines.get(row + 1).split(",");
+                for (int column = 0; column < columns.length; ++column) {
+                    var message = outputMode + " " + columns[column].getName() + " " + row;
+                    switch (columns[column].getType()) {
+                        case INTEGER -> assertEquals(message, Integer.parseInt(values[column]), table.getInteger(column, row));
+                        case REAL -> assertEquals(message, Double.parseDouble(values[column]), table.getReal(column, row), 1e-6);
+                        case CATEGORY -> assertEquals(message, values[column], table.getCategory(column, row));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void spansSeveralRowGroups() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+        var columnar = run("csv_timeseries", "columnar", weather);
+
+        var table = ColumnarReader.read(columnar);
+        assertTrue(table.getRows() > ColumnarTableWriter.ROW_GROUP);
+
+        var tick = table.indexOf("tick");
+        var x = table.indexOf("x");
+        assertEquals(Column.Type.INTEGER, table.getColumns()[x].getType());
+        assertEquals(table.getRows() - 1, table.getInteger(tick, table.getRows() - 1) * 144 + 143);
+    }
+
+    @Test
+    public void infectionValuesMatchHeader() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+        var table = ColumnarReader.read(run("csv_timeseries_infection", "columnar", weather));
+
+        for (var stage : new String[]{"nymphs", "larvae"}) {
+            var all = table.indexOf(stage + "_questing");
+            var susceptible = table.indexOf(stage + "_questing_sus");
+            var infected = table.indexOf(stage + "_questing_inf");
+            var prevalence = table.indexOf(stage + "_prevalence_inf");
+
+            for (int row = 0; row < table.getRows(); ++row) {
+                var message = stage + " " + row;
+                assertEquals(message, table.getReal(all, row), table.getReal(susceptible, row) + table.getReal(infected, row), 0.0);
+                if (table.getReal(all, row) != 0) {
+                    assertEquals(message, table.getReal(infected, row) / table.getReal(all, row), table.getReal(prevalence, row), 1e-6);
+                }
+            }
+        }
+
+        var infectedLarvae = table.indexOf("larvae_questing_inf");
+        var infectedNymphs = table.indexOf("nymphs_questing_inf");
+        var differ = false;
+        for (int row = 0; row < table.getRows(); ++row) {
+            differ |= table.getReal(infectedLarvae, row) != table.getReal(infectedNymphs, row);
+        }
+        assertTrue(differ);
+    }
+
+    @Test
+    public void realsAboveFloatPrecision() throws Exception {
+        var output = folder.getRoot().toPath().resolve("reals.columnar");
+        var values = new double[]{16777217.0, 1.5e8 + 0.25, 0.1, -2.0e9 - 1.0};
+
+        var writer = TableWriter.open(output.toString(), "columnar", Column.integer("tick"), Column.real("sum"));
+        for (int tick = 0; tick < values.length; ++tick) {
+            writer.writeInteger(tick);
+            writer.writeReal(values[tick]);
+            writer.endRow();
+        }
+        writer.close();
+
+        var table = ColumnarReader.read(output);
+        var sum = table.indexOf("sum");
+        assertEquals(values.length, table.getRows());
+        for (int row = 0; row < values.length; ++row) {
+            assertEquals(values[row], table.getReal(sum, row), 0.0);
+        }
+    }
+
+    private Path run(String outputMode, String format, String weather) throws Exception {
+        var output = folder.getRoot().toPath().resolve(outputMode + "." + format);
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output.toString();
+        options.outputMode = outputMode;
+        options.outputFormat = format;
+        options.engine = "dense";
+        options.initialInfectedRodents = 3;
+        options.initialInfectedInactiveLarvae = 20;
+        options.initialInfectedInactiveNymphs = 20;
+
+        Model.run(options);
+
+        return output;
+    }
+}
@@ -0,0 +1,234 @@
+package eu.ecoepi.iris;
+
+import com.artemis.annotations.All;
+import eu.ecoepi.iris.components.TickAbundance;
+import eu.ecoepi.iris.dense.DenseEngine;
+import eu.ecoepi.iris.dense.LockstepEngine;
+import eu.ecoepi.iris.dense.MeanFieldEngine;
+import eu.ecoepi.iris.dense.TiledEngine;
+import eu.ecoepi.iris.observers.CellObserver;
+import eu.ecoepi.iris.observers.CellView;
+import eu.ecoepi.iris.resources.WeatherData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DenseEngineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameResultsAsArtemis() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        var configurations = new String[][]{
+                {"rounded", "mersenne_twister"},
+                {"binomial", "mersenne_twister"},
+                {"rounded", "philox"}
+        };
+
+        for (var configuration : configurations) {
+            for (var outputMode : new String[]{"csv_timeseries", "csv_timeseries_infection"}) {
+                var artemis = run("artemis", outputMode, configuration, weather);
+                var dense = run("dense", outputMode, configuration, weather);
+
+                assertTrue(artemis.size() > 1);
+                assertEquals(artemis.size(), dense.size());
+                for (int i = 0; i < artemis.size(); ++i) {
+                    assertEquals(String.join(" ", configuration) + " " + outputMode + " line " + i, artemis.get(i), dense.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void vectorisedCloseToDense() throws Exception {
+        var weather = WeatherData.read(SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv"));
+
+        var dense = new QuestingNymphs();
+        new DenseEngine(new Model.Options(), weather, 40, 40, dense, false).run();
+
+        var vectorised = new QuestingNymphs();
+        new DenseEngine(new Model.Options(), weather, 40, 40, vectorised, true).run();
+
+        assertTrue(dense.total > 0);
+        assertEquals(0, vectorised.negative);
+        assertEquals(1.0, (double) vectorised.total / dense.total, 0.05);
+    }
+
+    @Test
+    public void meanFieldCloseToDense() throws Exception {
+        var weather = WeatherData.read(SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv"));
+
+        var dense = new QuestingNymphs();
+        new DenseEngine(new Model.Options(), weather, 40, 40, dense, false).run();
+
+        var meanField = new QuestingNymphs();
+        new MeanFieldEngine(new Model.Options(), weather, 40, 40, meanField).run();
+
+        var repeated = new QuestingNymphs();
+        new MeanFieldEngine(new Model.Options(), weather, 40, 40, repeated).run();
+
+        assertEquals(0, meanField.negative);
+        assertEquals(meanField.total, repeated.total);
+        assertEquals(1.0, (double) meanField.total / dense.total, 0.1);
+    }
+
+    @Test
+    public void tiledSameAsDense() throws Exception {
+        var weather = WeatherData.read(SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv"));
+
+        var options = new Model.Options();
+        options.generator = "philox";
+        options.initialInfectedRodents = 3;
+        options.initialInfectedInactiveNymphs = 20;
+
+        var dense = new Checksum();
+        new DenseEngine(options, weather, 40, 30, dense, false).run();
+
+        for (var tileSize : new int[]{7, 16, 40}) {
+            for (var threads : new int[]{1, 3}) {
+                options.threads = threads;
+
+                var tiled = new Checksum();
+                new TiledEngine(options, weather, 40, 30, tileSize, tiled).run();
+
+                assertEquals("tile size " + tileSize + ", threads " + threads, dense.value, tiled.value);
+            }
+        }
+    }
+
+    @Test
+    public void lockstepSameAsDense() throws Exception {
+        var weather = WeatherData.read(SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv"));
+
+        var scenarios = new ArrayList<Model.Options>();
+        var lockstep = new ArrayList<CellObserver>();
+        for (var transitions : new String[]{"rounded", "binomial"}) {
+            for (var activationRate : new float[]{0.01f, 0.03f}) {
+                var options = new Model.Options();
+                options.transitions = transitions;
+                options.generator = transitions.equals("rounded") ? "mersenne_twister" : "philox";
+                options.activationRate = activationRate;
+                options.initialInactiveNymphs = scenarios.size() * 50;
+                options.initialInfectedRodents = 3;
+                options.initialInfectedInactiveNymphs = 20;
+
+                scenarios.add(options);
+                lockstep.add(new Checksum());
+            }
+        }
+
+        new LockstepEngine(scenarios, weather, 20, 15, lockstep).run();
+
+        for (int i = 0; i < scenarios.size(); ++i) {
+            var dense = new Checksum();
+            new DenseEngine(scenarios.get(i), weather, 20, 15, dense, false).run();
+
+            assertEquals("scenario " + i, dense.value, ((Checksum) lockstep.get(i)).value);
+        }
+    }
+
+    @Test
+    public void observerClosedWhenRunFails() throws Exception {
+        var weather = WeatherData.read(SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv"));
+
+        var observer = new FailingObserver();
+        try {
+            new DenseEngine(new Model.Options(), weather, 10, 10, observer, false).run();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("failed on day 3", e.getMessage());
+        }
+        assertTrue(observer.closed);
+    }
+
+    @All({TickAbundance.class})
+    static class Checksum extends CellObserver {
+        long value = 0;
+
+        @Override
+        public void observe(int timeStep, CellView cell) {
+            value = 31 * value + cell.getX();
+            value = 31 * value + cell.getY();
+            for (var stage : CohortStateTicks.values()) {
+                value = 31 * value + cell.getStage(stage);
+                value = 31 * value + cell.getFeedingEvents(stage);
+            }
+            value = 31 * value + cell.getRodentsInfected();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @All({TickAbundance.class})
+    static class QuestingNymphs extends CellObserver {
+        long total = 0;
+        int negative = 0;
+
+        @Override
+        public void observe(int timeStep, CellView cell) {
+            total += cell.getStage(CohortStateTicks.NYMPHS_QUESTING);
+
+            for (var stage : CohortStateTicks.values()) {
+                if (cell.getStage(stage) < 0) {
+                    negative++;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @All({TickAbundance.class})
+    static class FailingObserver extends CellObserver {
+        boolean closed = false;
+
+        @Override
+        public void observe(int timeStep, CellView cell) {
+        }
+
+        @Override
+        public void endTimeStep(int timeStep) {
+            if (timeStep == 3) {
+                throw new IllegalStateException("failed on day " + timeStep);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private java.util.List<String> run(String engine, String outputMode, String[] configuration, String weather) throws Exception {
+        var output = folder.getRoot().toPath().resolve(engine + "_" + outputMode + "_" + String.join("_", configuration) + ".csv");
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output.toString();
+        options.outputMode = outputMode;
+        options.engine = engine;
+        options.transitions = configuration[0];
+        options.generator = configuration[1];
+        options.initialInfectedRodents = 3;
+        options.initialInfectedInactiveNymphs = 20;
+
+        Model.run(options);
+
+        return Files.readAllLines(output);
+    }
+}
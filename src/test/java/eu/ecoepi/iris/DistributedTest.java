@@ -0,0 +1,73 @@
+package eu.ecoepi.iris;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistributedTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameResultsAsSingleProcess() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        for (var outputMode : new String[]{"csv_timeseries", "csv_timeseries_infection", "csv_timeseries_summary_habitats"}) {
+            var dense = run("dense", outputMode, weather);
+            var distributed = run("distributed", outputMode, weather);
+
+            assertTrue(dense.size() > 1);
+            assertEquals(outputMode, dense, distributed);
+        }
+    }
+
+    @Test
+    public void groupOfAggregatesSameAsSingleProcess() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+        var outputModes = new String[]{"csv_timeseries_nymphs_habitats", "csv_timeseries_summary"};
+
+        for (var engine : new String[]{"dense", "distributed"}) {
+            var outputs = new String[outputModes.length];
+            for (int i = 0; i < outputModes.length; ++i) {
+                outputs[i] = folder.getRoot().toPath().resolve(engine + "_group_" + outputModes[i] + ".csv").toString();
+            }
+            run(engine, String.join(",", outputModes), String.join(",", outputs), weather);
+        }
+
+        for (var outputMode : outputModes) {
+            var dense = Files.readAllLines(folder.getRoot().toPath().resolve("dense_group_" + outputMode + ".csv"));
+            var distributed = Files.readAllLines(folder.getRoot().toPath().resolve("distributed_group_" + outputMode + ".csv"));
+
+            assertTrue(dense.size() > 1);
+            assertEquals(outputMode, dense, distributed);
+        }
+    }
+
+    private List<String> run(String engine, String outputMode, String weather) throws Exception {
+        var output = folder.getRoot().toPath().resolve(engine + "_" + outputMode + ".csv");
+        run(engine, outputMode, output.toString(), weather);
+        return Files.readAllLines(output);
+    }
+
+    private void run(String engine, String outputMode, String output, String weather) throws Exception {
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output;
+        options.outputMode = outputMode;
+        options.engine = engine;
+        options.generator = "philox";
+        options.tileSize = 4;
+        options.workers = 2;
+        options.initialInfectedRodents = 3;
+        options.initialInfectedInactiveNymphs = 20;
+
+        Model.run(options);
+    }
+}
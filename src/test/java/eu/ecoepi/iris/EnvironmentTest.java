@@ -0,0 +1,39 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.resources.Environment;
+import eu.ecoepi.iris.resources.ParameterSet;
+import eu.ecoepi.iris.resources.WeatherData;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class EnvironmentTest {
+
+    @Test
+    public void rowsMatchParameterSetPerHabitat() {
+        var parameters = ParameterSet.DEFAULTS;
+        var weather = new WeatherData(new float[]{1.5f, 18f}, new float[]{-8f, 9f}, new float[]{3f, 26f}, new float[]{90f, 40f});
+        var environment = new Environment();
+
+        for (int timeStep = 0; timeStep < 2; ++timeStep) {
+            environment.update(parameters, weather, timeStep);
+
+            for (var type : Habitat.Type.values()) {
+                var habitat = type.ordinal();
+                var adjustment = parameters.localTemperatureAdjustment(weather.getDayOfYear(timeStep), type);
+                var mean = weather.getMeanTemperature(timeStep) + adjustment;
+                var max = weather.getMaxTemperature(timeStep) + adjustment;
+                var humidity = parameters.localHumidity(weather.getHumidity(timeStep), type);
+
+                assertEquals(mean, environment.getMeanTemperature(habitat), 0f);
+                assertEquals(weather.getMinTemperature(timeStep), environment.getMinTemperature(habitat), 0f);
+                assertEquals(max, environment.getMaxTemperature(habitat), 0f);
+                assertEquals(humidity, environment.getHumidity(habitat), 0f);
+                assertEquals(parameters.shareOfActivationRate(max, mean, humidity), environment.getShareOfActivationRate(habitat), 0f);
+                assertEquals(parameters.isDesiccating(humidity, mean), environment.isDesiccating(habitat));
+                assertEquals(parameters.isFreezing(weather.getMinTemperature(timeStep)), environment.isFreezing(habitat));
+            }
+        }
+    }
+}
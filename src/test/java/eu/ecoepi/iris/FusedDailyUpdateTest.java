@@ -0,0 +1,64 @@
+package eu.ecoepi.iris;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FusedDailyUpdateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void closeToSeparateSystems() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        var separate = questingNymphs("artemis", weather);
+        var fused = questingNymphs("artemis_fused", weather);
+
+        assertTrue(separate > 0);
+        assertEquals(1.0, (double) fused / separate, 0.05);
+    }
+
+    @Test
+    public void identicalWithCounterBasedGenerator() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        var separate = run("artemis", "philox", weather);
+        var fused = run("artemis_fused", "philox", weather);
+
+        assertEquals(separate, fused);
+    }
+
+    private long questingNymphs(String engine, String weather) throws Exception {
+        var lines = run(engine, "mersenne_twister", weather);
+        var total = 0L;
+        for (var line : lines.subList(1, lines.size())) {
+            var questingNymphs = Long.parseLong(line.split(",")[6]);
+            assertTrue(questingNymphs >= 0);
+            total += questingNymphs;
+        }
+        return total;
+    }
+
+    private List<String> run(String engine, String generator, String weather) throws Exception {
+        var output = folder.getRoot().toPath().resolve(engine + "_" + generator + ".csv");
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output.toString();
+        options.outputMode = "csv_timeseries";
+        options.engine = engine;
+        options.generator = generator;
+
+        Model.run(options);
+
+        return Files.readAllLines(output);
+    }
+}
@@ -0,0 +1,105 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.resources.HabitatMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HabitatMapTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readAsciiGrid() throws IOException {
+        var path = folder.getRoot().toPath().resolve("landscape.asc");
+        Files.writeString(path, "ncols 4\nnrows 2\nxllcorner 0\nyllcorner 0\ncellsize 100\nNODATA_value -9999\n" +
+                "1 2 3 3\n1.0 1 2 3\n");
+
+        var map = HabitatMap.read(path);
+
+        assertEquals(4, map.getWidth());
+        assertEquals(2, map.getHeight());
+        assertEquals(Habitat.Type.MEADOW, map.get(0, 0));
+        assertEquals(Habitat.Type.ECOTONE, map.get(1, 0));
+        assertEquals(Habitat.Type.WOOD, map.get(2, 0));
+        assertEquals(Habitat.Type.MEADOW, map.get(1, 1));
+        assertEquals(Habitat.Type.ECOTONE, map.get(2, 1));
+        assertEquals(Habitat.Type.WOOD, map.get(3, 1));
+    }
+
+    @Test
+    public void binaryRoundTrip() throws IOException {
+        var stripes = HabitatMap.stripes(13, 7);
+        var path = folder.getRoot().toPath().resolve("landscape.bin");
+        stripes.write(path);
+
+        var map = HabitatMap.read(path);
+
+        assertEquals(13, map.getWidth());
+        assertEquals(7, map.getHeight());
+        for (int x = 0; x < 13; ++x) {
+            for (int y = 0; y < 7; ++y) {
+                assertEquals(stripes.get(x, y), map.get(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void rejectsMissingData() throws IOException {
+        var path = folder.getRoot().toPath().resolve("landscape.asc");
+        Files.writeString(path, "ncols 2\nnrows 2\nxllcorner 0\nyllcorner 0\ncellsize 100\nNODATA_value -9999\n" +
+                "1 2\n-9999 3\n");
+
+        try {
+            HabitatMap.read(path);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("(0, 1)"));
+        }
+    }
+
+    @Test
+    public void rasterLandscapeSameForArtemisAndDense() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        var raster = folder.getRoot().toPath().resolve("landscape.asc");
+        var text = new StringBuilder("ncols 9\nnrows 5\nxllcorner 0\nyllcorner 0\ncellsize 100\n");
+        for (int y = 0; y < 5; ++y) {
+            for (int x = 0; x < 9; ++x) {
+                text.append((x * 7 + y * 3) % 3 + 1).append(' ');
+            }
+            text.append('\n');
+        }
+        Files.writeString(raster, text);
+
+        var artemis = run("artemis", weather, raster.toString());
+        var dense = run("dense", weather, raster.toString());
+
+        assertEquals(1 + 9 * 5 * 365, artemis.size());
+        assertEquals(artemis, dense);
+    }
+
+    private java.util.List<String> run(String engine, String weather, String habitat) throws Exception {
+        var output = folder.getRoot().toPath().resolve(engine + ".csv");
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output.toString();
+        options.outputMode = "csv_timeseries";
+        options.engine = engine;
+        options.habitat = habitat;
+
+        Model.run(options);
+
+        return Files.readAllLines(output);
+    }
+}
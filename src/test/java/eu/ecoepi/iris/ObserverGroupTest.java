@@ -0,0 +1,68 @@
+package eu.ecoepi.iris;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ObserverGroupTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] OUTPUT_MODES = {
+            "csv_timeseries_summary_habitats",
+            "csv_timeseries_infection",
+            "csv_timeseries",
+            "csv_timeseries_nymphs"
+    };
+
+    @Test
+    public void sameOutputsAsSeparateRuns() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        for (var engine : new String[]{"artemis", "dense", "mean_field"}) {
+            var outputs = new String[OUTPUT_MODES.length];
+            for (int i = 0; i < OUTPUT_MODES.length; ++i) {
+                outputs[i] = output(engine + "_group_" + OUTPUT_MODES[i]).toString();
+            }
+            run(engine, String.join(",", OUTPUT_MODES), String.join(",", outputs), weather);
+
+            for (int i = 0; i < OUTPUT_MODES.length; ++i) {
+                var separate = output(engine + "_" + OUTPUT_MODES[i]);
+                run(engine, OUTPUT_MODES[i], separate.toString(), weather);
+
+                var expected = Files.readAllLines(separate);
+                assertTrue(expected.size() > 1);
+                assertEquals(engine + " " + OUTPUT_MODES[i], expected, Files.readAllLines(Path.of(outputs[i])));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void outputsMustMatchOutputModes() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+        run("dense", "csv_timeseries_summary,csv_timeseries_infection", output("summary").toString(), weather);
+    }
+
+    private Path output(String name) {
+        return folder.getRoot().toPath().resolve(name + ".csv");
+    }
+
+    private void run(String engine, String outputMode, String output, String weather) throws Exception {
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output;
+        options.outputMode = outputMode;
+        options.engine = engine;
+        options.initialInfectedRodents = 3;
+        options.initialInfectedInactiveNymphs = 20;
+
+        Model.run(options);
+    }
+}
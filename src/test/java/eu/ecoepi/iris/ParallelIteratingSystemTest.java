@@ -0,0 +1,50 @@
+package eu.ecoepi.iris;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelIteratingSystemTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void identicalToSequential() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        var sequential = run(1, "philox", weather);
+        var parallel = run(4, "philox", weather);
+
+        assertTrue(sequential.size() > 1);
+        assertEquals(sequential, parallel);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requiresCounterBasedGenerator() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+
+        run(4, "mersenne_twister", weather);
+    }
+
+    private List<String> run(int threads, String generator, String weather) throws Exception {
+        var output = folder.getRoot().toPath().resolve(threads + "_" + generator + ".csv");
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output.toString();
+        options.outputMode = "csv_timeseries";
+        options.generator = generator;
+        options.threads = threads;
+
+        Model.run(options);
+
+        return Files.readAllLines(output);
+    }
+}
@@ -0,0 +1,94 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.components.Habitat;
+import eu.ecoepi.iris.resources.ParameterSet;
+import eu.ecoepi.iris.resources.Parameters;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+public class ParameterSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void defaultsAreParameters() {
+        var defaults = ParameterSet.DEFAULTS;
+
+        assertEquals(Parameters.LATE_FEEDING_TIME, defaults.day(ParameterSet.Day.LATE_FEEDING_TIME));
+        assertEquals(Parameters.INFECTION_PROBABILITY, defaults.value(ParameterSet.Value.INFECTION_PROBABILITY), 0f);
+        assertEquals(Parameters.FEEDING_RATE.get(CohortStateTicks.NYMPHS_QUESTING), defaults.getFeedingRate(CohortStateTicks.NYMPHS_QUESTING), 0f);
+        assertEquals(0f, defaults.getFeedingRate(CohortStateTicks.NYMPHS_INACTIVE), 0f);
+        assertEquals(Parameters.DESICCATION_RATE.get(Habitat.Type.WOOD), defaults.getDesiccationRate(Habitat.Type.WOOD), 0f);
+    }
+
+    @Test
+    public void withChangesOnlyTheCopy() {
+        var changed = ParameterSet.DEFAULTS
+                .with("FEEDING_RATE.NYMPHS_QUESTING", 0.04)
+                .with("LATE_FEEDING_TIME", 240);
+
+        assertEquals(0.04f, changed.getFeedingRate(CohortStateTicks.NYMPHS_QUESTING), 0f);
+        assertEquals(240, changed.day(ParameterSet.Day.LATE_FEEDING_TIME));
+        assertEquals(Parameters.LATE_FEEDING_TIME, ParameterSet.DEFAULTS.day(ParameterSet.Day.LATE_FEEDING_TIME));
+        assertNotEquals(ParameterSet.DEFAULTS, changed);
+        assertEquals(ParameterSet.DEFAULTS, ParameterSet.DEFAULTS.with("LATE_FEEDING_TIME", Parameters.LATE_FEEDING_TIME));
+    }
+
+    @Test
+    public void readParameterFile() throws IOException {
+        var path = folder.getRoot().toPath().resolve("parameters.properties");
+        Files.write(path, List.of("# Wetter wood", "DESICCATION_RATE.WOOD = 0.01", "REPLACEMENT_RATE_RODENTS=0.02"));
+
+        var parameters = ParameterSet.read(path);
+
+        assertEquals(ParameterSet.DEFAULTS.with("DESICCATION_RATE.WOOD", 0.01).with("REPLACEMENT_RATE_RODENTS", 0.02), parameters);
+
+        Files.write(path, List.of("FEEDING_RATE.SQUIRRELS = 0.1"));
+        try {
+            ParameterSet.read(path);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void changedParametersSameForArtemisAndDense() throws Exception {
+        var weather = SyntheticWeather.write(folder.getRoot().toPath(), "weather.csv");
+        var parameters = ParameterSet.DEFAULTS
+                .with("FEEDING_RATE.LARVAE_QUESTING", 0.05)
+                .with("DESICCATION_MINIMAL_HUMIDITY", 95)
+                .with("BEGIN_OF_DEVELOPMENT", 150);
+
+        var artemis = run("artemis", weather, parameters);
+        var dense = run("dense", weather, parameters);
+        var defaults = run("dense", weather, ParameterSet.DEFAULTS);
+
+        assertEquals(artemis, dense);
+        assertNotEquals(defaults, dense);
+    }
+
+    private List<String> run(String engine, String weather, ParameterSet parameters) throws Exception {
+        var output = folder.newFile();
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = output.toString();
+        options.outputMode = "csv_timeseries";
+        options.engine = engine;
+        options.parameters = parameters;
+
+        Model.run(options);
+
+        return Files.readAllLines(output.toPath());
+    }
+}
@@ -0,0 +1,138 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.resources.Philox;
+import eu.ecoepi.iris.resources.Randomness;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RandomnessTest {
+
+    @Test
+    public void philoxKnownAnswers() {
+        var out = new int[4];
+
+        Philox.generate(0, 0, 0, 0, 0, 0, out);
+        assertArrayEquals(new int[]{0x6627e8d5, 0xe169c58d, 0xbc57ac4c, 0x9b00dbd8}, out);
+
+        Philox.generate(-1, -1, -1, -1, -1, -1, out);
+        assertArrayEquals(new int[]{0x408f276d, 0x41c83b0e, 0xa20bc7c6, 0x6d5451fd}, out);
+
+        Philox.generate(0x243f6a88, 0x85a308d3, 0x13198a2e, 0x03707344, 0xa4093822, 0x299f31d0, out);
+        assertArrayEquals(new int[]{0xd16cfe09, 0x94fdcceb, 0x5001e420, 0x24126ea1}, out);
+    }
+
+    @Test
+    public void philoxStreamsIndependentOfOrder() {
+        var philox = new Philox(42);
+
+        philox.seek(10, 7, 1);
+        var first = philox.nextDouble();
+        var second = philox.nextDouble();
+
+        philox.seek(3, 2, 0);
+        philox.nextDouble();
+
+        philox.seek(10, 7, 1);
+        assertEquals(first, philox.nextDouble(), 0.0);
+        assertEquals(second, philox.nextDouble(), 0.0);
+
+        philox.seek(10, 8, 1);
+        assertNotEquals(first, philox.nextDouble(), 0.0);
+    }
+
+    @Test
+    public void bufferKeepsSequence() {
+        var generator = new MersenneTwister(42);
+        var randomness = new Randomness(new MersenneTwister(42));
+
+        var bulk = new double[3000];
+        randomness.random(bulk, 1500);
+        for (int i = 0; i < 1500; ++i) {
+            assertEquals(generator.nextDouble(), bulk[i], 0.0);
+        }
+        for (int i = 0; i < 1500; ++i) {
+            assertEquals(generator.nextDouble(), randomness.asGenerator().nextDouble(), 0.0);
+        }
+    }
+
+    @Test
+    public void batchSameAsScalar() {
+        var scalar = new Randomness(new MersenneTwister(42));
+        var batch = new Randomness(new MersenneTwister(42));
+
+        var values = new float[]{0f, 1.5f, 2f, 0.25f, 7.75f, 0f, 3.1f};
+        var out = new int[values.length];
+        batch.roundRandom(values, out, values.length);
+
+        for (int i = 0; i < values.length; ++i) {
+            assertEquals(scalar.roundRandom(values[i]), out[i]);
+        }
+    }
+
+    @Test
+    public void binomialEdgeCases() {
+        var randomness = new Randomness(new MersenneTwister(42), Randomness.Mode.BINOMIAL);
+
+        assertEquals(0, randomness.binomial(0, 0.5));
+        assertEquals(0, randomness.binomial(100, 0.0));
+        assertEquals(0, randomness.binomial(100, Double.NaN));
+        assertEquals(100, randomness.binomial(100, 1.0));
+        assertEquals(100, randomness.binomial(100, 1.5));
+        assertEquals(0, randomness.transition(0, 0.0f));
+    }
+
+    @Test
+    public void binomialMoments() {
+        // Inversion
+        assertMoments(10, 0.3);
+        assertMoments(1000, 0.01);
+        // BTPE
+        assertMoments(1000, 0.2);
+        assertMoments(1_000_000, 0.022);
+        // Symmetry
+        assertMoments(1000, 0.7);
+    }
+
+    @Test
+    public void roundedTransitionKeepsExpectedValue() {
+        var randomness = new Randomness(new MersenneTwister(42));
+
+        assertEquals(3, randomness.transition(10, 3.0f));
+
+        var sum = 0L;
+        for (int i = 0; i < 100_000; ++i) {
+            var value = randomness.transition(10, 2.5f);
+            assertTrue(value == 2 || value == 3);
+            sum += value;
+        }
+        assertEquals(2.5, sum / 100_000.0, 0.01);
+    }
+
+    private static void assertMoments(int n, double p) {
+        var randomness = new Randomness(new MersenneTwister(42), Randomness.Mode.BINOMIAL);
+        var samples = 100_000;
+
+        var sum = 0.0;
+        var sumOfSquares = 0.0;
+        for (int i = 0; i < samples; ++i) {
+            var value = randomness.binomial(n, p);
+            assertTrue(value >= 0 && value <= n);
+            sum += value;
+            sumOfSquares += (double) value * value;
+        }
+
+        var mean = sum / samples;
+        var variance = sumOfSquares / samples - mean * mean;
+
+        var expectedMean = n * p;
+        var expectedVariance = n * p * (1 - p);
+
+        assertEquals(expectedMean, mean, 5 * Math.sqrt(expectedVariance / samples));
+        assertEquals(expectedVariance, variance, 0.03 * expectedVariance);
+    }
+}
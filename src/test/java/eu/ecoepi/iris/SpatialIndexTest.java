@@ -22,4 +22,26 @@ public class SpatialIndexTest {
 
     }
 
+    @Test
+    public void lookUpNeighbourWrapsAround() {
+        var index = new SpatialIndex(5, 3);
+        index.insert(new Position(0, 0), 1);
+        index.insert(new Position(4, 2), 2);
+        index.insert(new Position(1, 2), 3);
+
+        assertEquals(2, index.lookUp(0, 0, -1, -1));
+        assertEquals(1, index.lookUp(4, 2, 1, 1));
+        assertEquals(3, index.lookUp(0, 0, 6, -4));
+        assertEquals(SpatialIndex.NONE, index.lookUp(0, 0, 2, 1));
+        assertEquals(Optional.empty(), index.lookUp(new Position(7, 1)));
+    }
+
+    @Test
+    public void moveByWrapsAroundConfiguredGrid() {
+        var index = new SpatialIndex(5, 3);
+
+        assertEquals(new Position(4, 2), index.moveBy(new Position(0, 0), -1, -1));
+        assertEquals(new Position(1, 0), index.moveBy(new Position(4, 2), 2, 1));
+        assertEquals(new Position(2, 1), index.moveBy(new Position(1, 1), 6, 3));
+    }
 }
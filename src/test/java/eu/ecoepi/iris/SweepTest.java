@@ -0,0 +1,147 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.experiments.Sweep;
+import eu.ecoepi.iris.experiments.SweepEngine;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SweepTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void enumeratesLikeNestedLoops() {
+        var sweep = new Sweep()
+                .range("a", 1, 2)
+                .range("b", 0, 25, 10)
+                .derive("twice", run -> 2 * run.get("a"));
+
+        var names = new ArrayList<String>();
+        for (var run : sweep) {
+            names.add(run.getName());
+            assertEquals(2 * run.get("a"), run.derived("twice"), 0.0);
+        }
+
+        assertEquals(6, sweep.size());
+        assertEquals(List.of("1_0", "1_10", "1_20", "2_0", "2_10", "2_20"), names);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void laterDerivedValueIsNotAvailable() {
+        var sweep = new Sweep()
+                .range("a", 1, 2)
+                .derive("half", run -> run.derived("twice") / 4)
+                .derive("twice", run -> 2 * run.get("a"));
+
+        sweep.iterator().next();
+    }
+
+    @Test
+    public void skipsCompletedRuns() throws Exception {
+        var root = folder.getRoot().toPath();
+        var weather = SyntheticWeather.write(root, "weather.csv");
+
+        var sweep = new Sweep()
+                .range("nymphs", 10, 30, 10)
+                .range("adults", 5, 10, 5)
+                .output(root.resolve("run_%s.csv").toString())
+                .configure((run, options) -> {
+                    options.weather = weather;
+                    options.engine = "dense";
+                    options.initialInactiveNymphs = run.get("nymphs");
+                    options.initialInactiveAdults = run.get("adults");
+                });
+
+        var first = new SweepEngine(2, 1, Long.MAX_VALUE);
+        first.run(sweep);
+        assertEquals(6, first.getCompleted());
+
+        for (var run : sweep) {
+            assertTrue(Files.exists(root.resolve("run_" + run.getName() + ".csv")));
+            assertFalse(Files.exists(root.resolve("run_" + run.getName() + ".csv.partial")));
+        }
+
+        Files.delete(root.resolve("run_20_10.csv"));
+
+        var second = new SweepEngine(2, 4, Long.MAX_VALUE);
+        second.run(sweep);
+        assertEquals(1, second.getCompleted());
+        assertEquals(5, second.getSkipped());
+    }
+
+    @Test
+    public void writesSeveralOutputsPerRun() throws Exception {
+        var root = folder.getRoot().toPath();
+        var weather = SyntheticWeather.write(root, "weather.csv");
+
+        var sweep = new Sweep()
+                .range("nymphs", 10, 30, 10)
+                .output(root.resolve("summary_%s.csv") + "," + root.resolve("infection_%s.csv"))
+                .configure((run, options) -> {
+                    options.weather = weather;
+                    options.engine = "dense";
+                    options.outputMode = "csv_timeseries_summary,csv_timeseries_infection";
+                    options.initialInactiveNymphs = run.get("nymphs");
+                });
+
+        var first = new SweepEngine(2, 1, Long.MAX_VALUE);
+        first.run(sweep);
+        assertEquals(3, first.getCompleted());
+        assertEquals(0, first.getFailed());
+
+        for (var run : sweep) {
+            for (var prefix : new String[]{"summary_", "infection_"}) {
+                assertTrue(Files.exists(root.resolve(prefix + run.getName() + ".csv")));
+                assertFalse(Files.exists(root.resolve(prefix + run.getName() + ".csv.partial")));
+            }
+        }
+
+        Files.delete(root.resolve("infection_20.csv"));
+
+        var second = new SweepEngine(2, 2, Long.MAX_VALUE);
+        second.run(sweep);
+        assertEquals(1, second.getCompleted());
+        assertEquals(2, second.getSkipped());
+        assertTrue(Files.exists(root.resolve("infection_20.csv")));
+    }
+
+    @Test
+    public void lockstepSameAsSeparateRuns() throws Exception {
+        var root = folder.getRoot().toPath();
+        var weather = SyntheticWeather.write(root, "weather.csv");
+
+        for (var lanes : new int[]{1, 4}) {
+            var sweep = new Sweep()
+                    .range("nymphs", 10, 30, 10)
+                    .range("activationRate", 10, 30, 10)
+                    .output(root.resolve(lanes + "_%s.csv").toString())
+                    .configure((run, options) -> {
+                        options.weather = weather;
+                        options.engine = "dense";
+                        options.outputMode = "csv_timeseries";
+                        options.initialInactiveNymphs = run.get("nymphs");
+                        options.activationRate = run.get("activationRate") / 1000.0f;
+                    });
+
+            new SweepEngine(2, lanes, Long.MAX_VALUE).run(sweep);
+        }
+
+        for (var name : new String[]{"10_10", "20_30", "30_20"}) {
+            var separate = Files.readAllLines(root.resolve("1_" + name + ".csv"));
+            var lockstep = Files.readAllLines(root.resolve("4_" + name + ".csv"));
+
+            assertTrue(separate.size() > 1);
+            assertEquals(name, separate, lockstep);
+        }
+    }
+}
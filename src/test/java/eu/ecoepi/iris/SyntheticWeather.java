@@ -0,0 +1,37 @@
+package eu.ecoepi.iris;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/*
+The weather input files are stored with Git LFS, so tests generate a plausible year of weather instead.
+It contains frost below the freezing threshold in winter and dry, warm days in summer.
+ */
+final class SyntheticWeather {
+
+    private SyntheticWeather() {
+    }
+
+    static String write(Path directory, String name) throws IOException {
+        var path = directory.resolve(name);
+
+        try (var writer = new PrintWriter(path.toFile())) {
+            writer.print("meanTemp,minTemp,maxTemp,humidity\n");
+
+            for (int day = 0; day < 366; ++day) {
+                var season = Math.cos(2.0 * Math.PI * (day - 200) / 365.0);
+                var meanTemperature = 9.0 + 12.0 * season + 3.0 * Math.sin(day * 0.7);
+                var minTemperature = meanTemperature - 6.0 - (day % 31 == 5 ? 14.0 : 0.0);
+                var maxTemperature = meanTemperature + 7.0;
+                var humidity = 75.0 - 15.0 * season + 10.0 * Math.sin(day * 1.3);
+
+                writer.print(String.format(Locale.ROOT, "%.1f,%.1f,%.1f,%.1f\n",
+                        meanTemperature, minTemperature, maxTemperature, humidity));
+            }
+        }
+
+        return path.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.components.TickAbundance;
+import eu.ecoepi.iris.resources.Randomness;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TickAbundanceTest {
+
+    @Test
+    public void addThenRemove() {
+        var abundance = new TickAbundance(100, 50, 20, 0, 0);
+        var randomness = new Randomness(new MersenneTwister(42));
+
+        abundance.addToStage(CohortStateTicks.LARVAE_QUESTING, 7);
+        assertEquals(7, abundance.getStage(CohortStateTicks.LARVAE_QUESTING));
+
+        var removed = abundance.removeFromStage(CohortStateTicks.LARVAE_INACTIVE, 0.5f, randomness);
+        assertEquals(50, removed);
+        assertEquals(50, abundance.getStage(CohortStateTicks.LARVAE_INACTIVE));
+
+        abundance.addFeedingEvents(CohortStateTicks.NYMPHS_QUESTING, 3);
+        assertEquals(3, abundance.getFeedingEvents(CohortStateTicks.NYMPHS_QUESTING));
+    }
+
+    @Test
+    public void bulkAccessors() {
+        var abundance = new TickAbundance(1, 2, 3, 4, 5);
+        var stages = new int[TickAbundance.COHORTS];
+        abundance.getStages(stages);
+        assertEquals(2, stages[CohortStateTicks.NYMPHS_INACTIVE.ordinal()]);
+
+        stages[CohortStateTicks.ADULTS_ENGORGED.ordinal()] = 9;
+        var copy = new TickAbundance();
+        copy.setStages(stages);
+        assertEquals(9, copy.getStage(CohortStateTicks.ADULTS_ENGORGED));
+
+        var roundTrip = new int[TickAbundance.COHORTS];
+        copy.getStages(roundTrip);
+        assertArrayEquals(stages, roundTrip);
+    }
+
+    @Test
+    public void simulatedDayDoesNotAllocate() {
+        var threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        var allocation = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocation.isThreadAllocatedMemorySupported());
+        allocation.setThreadAllocatedMemoryEnabled(true);
+
+        var abundance = new TickAbundance(150, 150, 150, 0, 0);
+        var randomness = new Randomness(new MersenneTwister(42));
+
+        // Warm up so that the measured loop runs compiled code.
+        for (int i = 0; i < 20_000; ++i) {
+            simulateDay(abundance, randomness);
+        }
+
+        var threadId = Thread.currentThread().getId();
+        var before = allocation.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10_000; ++i) {
+            simulateDay(abundance, randomness);
+        }
+        var after = allocation.getThreadAllocatedBytes(threadId);
+
+        // Allow for the measurement itself; boxing would cost hundreds of kilobytes here.
+        assertEquals(0, after - before, 1024);
+    }
+
+    private static void simulateDay(TickAbundance abundance, Randomness randomness) {
+        var activated = randomness.roundRandom(abundance.getStage(CohortStateTicks.LARVAE_INACTIVE) * 0.02f);
+        abundance.addToStage(CohortStateTicks.LARVAE_INACTIVE, -activated);
+        abundance.addToStage(CohortStateTicks.LARVAE_QUESTING, activated);
+
+        var feeding = abundance.removeFromStage(CohortStateTicks.LARVAE_QUESTING, 0.01f, randomness);
+        abundance.addToStage(CohortStateTicks.LARVAE_ENGORGED, feeding);
+        abundance.addFeedingEvents(CohortStateTicks.LARVAE_QUESTING, feeding);
+
+        var developed = abundance.removeFromStage(CohortStateTicks.LARVAE_ENGORGED, 0.1f, randomness);
+        abundance.addToStage(CohortStateTicks.LARVAE_INACTIVE, developed);
+    }
+}
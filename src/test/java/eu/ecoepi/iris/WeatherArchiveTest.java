@@ -0,0 +1,81 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.resources.WeatherArchive;
+import eu.ecoepi.iris.resources.WeatherData;
+import eu.ecoepi.iris.resources.WeatherRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WeatherArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameSeriesAsCsv() throws Exception {
+        var root = folder.getRoot().toPath();
+        var csv = WeatherData.read(SyntheticWeather.write(root, "weather.csv"));
+        var shortYear = new WeatherData(new float[]{1.5f, -2f}, new float[]{0f, -8f}, new float[]{3f, 1f}, new float[]{80f, 90f});
+
+        var series = new LinkedHashMap<String, WeatherData>();
+        series.put("station/weather_2009", csv);
+        series.put("model/weather_2099", shortYear);
+
+        var path = root.resolve("weather.iwa");
+        WeatherArchive.write(path, series);
+
+        var archive = WeatherArchive.open(path);
+        assertEquals(series.keySet(), archive.getNames());
+        assertSameSeries(csv, archive.get("station/weather_2009"));
+        assertSameSeries(shortYear, archive.get("model/weather_2099"));
+
+        var repository = new WeatherRepository(4);
+        assertSameSeries(csv, repository.get(path + "#station/weather_2009"));
+    }
+
+    @Test
+    public void sameResultsAsCsv() throws Exception {
+        var root = folder.getRoot().toPath();
+        var weather = SyntheticWeather.write(root, "weather.csv");
+
+        var series = new LinkedHashMap<String, WeatherData>();
+        series.put("synthetic", WeatherData.read(weather));
+        WeatherArchive.write(root.resolve("weather.iwa"), series);
+
+        var fromCsv = run(weather, "csv.csv");
+        var fromArchive = run(root.resolve("weather.iwa") + "#synthetic", "archive.csv");
+
+        assertTrue(fromCsv.size() > 1);
+        assertEquals(fromCsv, fromArchive);
+    }
+
+    private List<String> run(String weather, String name) throws Exception {
+        var options = new Model.Options();
+        options.weather = weather;
+        options.output = folder.getRoot().toPath().resolve(name).toString();
+        options.outputMode = "csv_timeseries";
+        options.engine = "dense";
+
+        Model.run(options);
+
+        return Files.readAllLines(folder.getRoot().toPath().resolve(name));
+    }
+
+    private static void assertSameSeries(WeatherData expected, WeatherData actual) {
+        assertEquals(expected.getDays(), actual.getDays());
+        for (int day = 0; day < expected.getDays(); ++day) {
+            assertEquals(expected.getMeanTemperature(day), actual.getMeanTemperature(day), 0f);
+            assertEquals(expected.getMinTemperature(day), actual.getMinTemperature(day), 0f);
+            assertEquals(expected.getMaxTemperature(day), actual.getMaxTemperature(day), 0f);
+            assertEquals(expected.getHumidity(day), actual.getHumidity(day), 0f);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.resources.WeatherRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class WeatherRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parsesEveryFileOnceAndEvictsLeastRecentlyUsed() throws Exception {
+        var root = folder.getRoot().toPath();
+        var first = SyntheticWeather.write(root, "first.csv");
+        var second = SyntheticWeather.write(root, "second.csv");
+        var third = SyntheticWeather.write(root, "third.csv");
+
+        var repository = new WeatherRepository(2);
+
+        var weather = repository.get(first);
+        assertSame(weather, repository.get(first));
+
+        var evicted = repository.get(second);
+        repository.get(first);
+        repository.get(third);
+        assertEquals(2, repository.size());
+
+        assertSame(weather, repository.get(first));
+        assertNotSame(evicted, repository.get(second));
+    }
+}
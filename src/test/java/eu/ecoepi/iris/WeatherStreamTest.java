@@ -0,0 +1,89 @@
+package eu.ecoepi.iris;
+
+import eu.ecoepi.iris.resources.Parameters;
+import eu.ecoepi.iris.resources.WeatherRepository;
+import eu.ecoepi.iris.resources.WeatherStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class WeatherStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void dayOfYearRestartsEveryYear() throws Exception {
+        var pattern = writeYears();
+        var stream = new WeatherStream(pattern, 2019, 2020, 1);
+
+        assertEquals(365 + 366, stream.getDays());
+        assertEquals(364, stream.getDayOfYear(364));
+        assertEquals(0, stream.getDayOfYear(365));
+        assertEquals(365, stream.getDayOfYear(365 + 365));
+    }
+
+    @Test
+    public void singleYearSameAsWeatherFile() throws Exception {
+        var pattern = writeYears();
+
+        var file = run("dense", String.format(pattern, 2019), null, "file.csv");
+        var stream = run("dense", pattern, "2019", "stream.csv");
+
+        assertEquals(Parameters.TIME_STEPS + 1, file.size());
+        assertEquals(file, stream);
+    }
+
+    @Test
+    public void continuousRunSameForArtemisAndDense() throws Exception {
+        var pattern = writeYears();
+
+        var artemis = run("artemis", pattern, "2019:2020", "artemis.csv");
+        var dense = run("dense", pattern, "2019:2020", "dense.csv");
+
+        assertEquals(365 + 366 + 1, dense.size());
+        assertEquals(artemis, dense);
+    }
+
+    @Test
+    public void yearsAreNotKeptInSharedRepository() throws Exception {
+        var root = folder.getRoot().toPath();
+        for (int year = 2019; year <= 2022; ++year) {
+            SyntheticWeather.write(root, "weather_" + year + ".csv");
+        }
+        var stream = new WeatherStream(root.resolve("weather_%d.csv").toString(), 2019, 2022, 1);
+        var cached = WeatherRepository.shared().size();
+
+        for (int day = 0; day < stream.getDays(); day += 100) {
+            stream.getMeanTemperature(day);
+        }
+
+        assertEquals(cached, WeatherRepository.shared().size());
+    }
+
+    private String writeYears() throws Exception {
+        var root = folder.getRoot().toPath();
+        SyntheticWeather.write(root, "weather_2019.csv");
+        SyntheticWeather.write(root, "weather_2020.csv");
+        return root.resolve("weather_%d.csv").toString();
+    }
+
+    private List<String> run(String engine, String weather, String years, String name) throws Exception {
+        var output = folder.getRoot().toPath().resolve(name);
+
+        var options = new Model.Options();
+        options.weather = weather;
+        options.years = years;
+        options.output = output.toString();
+        options.engine = engine;
+
+        Model.run(options);
+
+        return Files.readAllLines(output);
+    }
+}